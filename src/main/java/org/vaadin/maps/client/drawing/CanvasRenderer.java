@@ -0,0 +1,182 @@
+package org.vaadin.maps.client.drawing;
+
+import com.google.gwt.canvas.dom.client.Context2d;
+import org.vaadin.maps.client.drawing.Utils.PointShape;
+import org.vaadin.maps.client.geometry.*;
+import org.vaadin.maps.shared.ui.Style;
+
+/**
+ * Paints geometries into a canvas in immediate mode. Shapes, point shapes and
+ * style semantics follow the SVG drawings of {@link Utils}: lines are not
+ * filled, polygons are filled by the even-odd rule, empty colors and zero
+ * stroke width paint nothing.
+ *
+ * @author Kamil Morong
+ */
+public class CanvasRenderer {
+
+    /**
+     * Paints the geometry.
+     *
+     * @param context    canvas context
+     * @param geometry   geometry in view coordinates
+     * @param style      style of the geometry
+     * @param pointShape shape of points
+     * @param scale      point shape scale
+     * @param shiftX     horizontal shift in pixels
+     * @param shiftY     vertical shift in pixels
+     */
+    public static void drawGeometry(Context2d context, Geometry geometry, Style style, PointShape pointShape,
+                                    double scale, int shiftX, int shiftY) {
+        if (geometry instanceof GeometryCollection) {
+            for (int i = 0; i < geometry.getNumGeometries(); ++i) {
+                drawGeometry(context, geometry.getGeometry(i), style, pointShape, scale, shiftX, shiftY);
+            }
+        } else if (geometry instanceof Polygon) {
+            drawPolygon(context, (Polygon) geometry, style, shiftX, shiftY);
+        } else if (geometry instanceof LinearRing) {
+            if (geometry.getNumPoints() > 3) {
+                context.beginPath();
+                addPath(context, geometry.getCoordinates(), shiftX, shiftY);
+                context.closePath();
+                fill(context, style, false);
+                stroke(context, style);
+            }
+        } else if (geometry instanceof LineString) {
+            context.beginPath();
+            addPath(context, geometry.getCoordinates(), shiftX, shiftY);
+            stroke(context, style);
+        } else if (geometry instanceof Point && !geometry.isEmpty()) {
+            drawPoint(context, (Point) geometry, style, pointShape, scale, shiftX, shiftY);
+        }
+    }
+
+    private static void drawPolygon(Context2d context, Polygon polygon, Style style, int shiftX, int shiftY) {
+        if (polygon.getShell().getNumPoints() > 3) {
+            context.beginPath();
+            addPath(context, polygon.getShell().getCoordinates(), shiftX, shiftY);
+            context.closePath();
+            for (int i = 0; i < polygon.getNumHoles(); ++i) {
+                addPath(context, polygon.getHole(i).getCoordinates(), shiftX, shiftY);
+                context.closePath();
+            }
+            fill(context, style, true);
+            stroke(context, style);
+        }
+    }
+
+    private static void addPath(Context2d context, Coordinate[] coordinates, int shiftX, int shiftY) {
+        for (int i = 0; i < coordinates.length; ++i) {
+            int x = round(coordinates[i].x) + shiftX;
+            int y = round(coordinates[i].y) + shiftY;
+            if (0 == i) {
+                context.moveTo(x, y);
+            } else {
+                context.lineTo(x, y);
+            }
+        }
+    }
+
+    private static void drawPoint(Context2d context, Point point, Style style, PointShape pointShape, double scale,
+                                  int shiftX, int shiftY) {
+        int x = round(point.getX()) + shiftX;
+        int y = round(point.getY()) + shiftY;
+        int d = Math.max(1, round(scale));
+
+        context.beginPath();
+        switch (pointShape) {
+            case Square:
+                context.rect(x - d, y - d, 2 * d + 1, 2 * d + 1);
+                break;
+            case Diamond:
+                context.moveTo(x - d, y);
+                context.lineTo(x, y + d);
+                context.lineTo(x + d, y);
+                context.lineTo(x, y - d);
+                context.closePath();
+                break;
+            case TriangleUp:
+            case TriangleDown: {
+                boolean down = PointShape.TriangleDown == pointShape;
+                int b = Math.max(2, round(2 * scale));
+                int c = Math.max(2, round((d + 1) * Math.sqrt(3)) - 1);
+                int top = down ? y + b : y - b;
+                int base = down ? top - d - b : top + d + b;
+                context.moveTo(x, top);
+                context.lineTo(x + c, base);
+                context.lineTo(x - c, base);
+                context.closePath();
+                break;
+            }
+            case Asterisk: {
+                int e = Math.max(1, round(Math.sqrt(2 * Math.pow(scale + 1, 2))) - 1);
+                addXCross(context, x, y, d);
+                context.moveTo(x - e, y);
+                context.lineTo(x + e, y);
+                context.moveTo(x, y + e);
+                context.lineTo(x, y - e);
+                // strokes only
+                stroke(context, style);
+                return;
+            }
+            case XCross:
+                addXCross(context, x, y, d);
+                stroke(context, style);
+                return;
+            case Cross:
+                context.moveTo(x - d, y);
+                context.lineTo(x + d, y);
+                context.moveTo(x, y + d);
+                context.lineTo(x, y - d);
+                stroke(context, style);
+                return;
+            default:
+                context.arc(x, y, style.pointRadius, 0, 2 * Math.PI);
+                break;
+        }
+        fill(context, style, false);
+        stroke(context, style);
+    }
+
+    private static void addXCross(Context2d context, int x, int y, int d) {
+        context.moveTo(x - d, y - d);
+        context.lineTo(x + d, y + d);
+        context.moveTo(x - d, y + d);
+        context.lineTo(x + d, y - d);
+    }
+
+    private static void fill(Context2d context, Style style, boolean evenOdd) {
+        if (!style.fillColor.isEmpty()) {
+            context.setGlobalAlpha(getOpacity(style) * Math.min(1, style.fillOpacity));
+            context.setFillStyle(style.fillColor);
+            if (evenOdd) {
+                fillEvenOdd(context);
+            } else {
+                context.fill();
+            }
+        }
+    }
+
+    private static void stroke(Context2d context, Style style) {
+        if (!style.strokeColor.isEmpty() && style.strokeWidth > 0) {
+            context.setGlobalAlpha(getOpacity(style) * Math.min(1, style.strokeOpacity));
+            context.setStrokeStyle(style.strokeColor);
+            context.setLineWidth(style.strokeWidth);
+            context.stroke();
+        }
+    }
+
+    private static double getOpacity(Style style) {
+        return Math.min(1, style.opacity);
+    }
+
+    private static int round(double value) {
+        return Math.round((float) value);
+    }
+
+    private static native void fillEvenOdd(Context2d context)
+    /*-{
+        context.fill("evenodd");
+    }-*/;
+
+}
@@ -0,0 +1,135 @@
+package org.vaadin.maps.client.drawing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Uniform grid index of items by their bounds in view coordinates. An item is
+ * listed in every cell its bounds overlap, items overlapping too many cells
+ * are tested at any position.
+ * <p>
+ * Cell keys wrap around far from the origin, so a query returns candidates
+ * only, which must be tested exactly.
+ *
+ * @author Kamil Morong
+ */
+public class GridIndex<T> {
+
+    public static final double DEFAULT_CELL_SIZE = 64;
+
+    private static final int MAX_ITEM_CELLS = 256;
+
+    private final double cellSize;
+    private final HashMap<Integer, ArrayList<T>> cells = new HashMap<>();
+    private final ArrayList<T> largeItems = new ArrayList<>();
+
+    public GridIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public GridIndex(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    private static int getKey(int column, int row) {
+        return (column & 0xFFFF) << 16 | (row & 0xFFFF);
+    }
+
+    private int getCell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Inserts the item.
+     *
+     * @param item the item
+     * @param minX left of item bounds
+     * @param minY top of item bounds
+     * @param maxX right of item bounds
+     * @param maxY bottom of item bounds
+     */
+    public void insert(T item, double minX, double minY, double maxX, double maxY) {
+        int left = getCell(minX);
+        int top = getCell(minY);
+        int right = getCell(maxX);
+        int bottom = getCell(maxY);
+
+        if ((double) (right - left + 1) * (bottom - top + 1) > MAX_ITEM_CELLS) {
+            largeItems.add(item);
+            return;
+        }
+
+        for (int column = left; column <= right; ++column) {
+            for (int row = top; row <= bottom; ++row) {
+                int key = getKey(column, row);
+                ArrayList<T> cell = cells.get(key);
+                if (null == cell) {
+                    cell = new ArrayList<>();
+                    cells.put(key, cell);
+                }
+                cell.add(item);
+            }
+        }
+    }
+
+    /**
+     * Gets candidate items at the position.
+     *
+     * @param x x coordinate of the position
+     * @param y y coordinate of the position
+     * @return items which bounds may contain the position
+     */
+    public List<T> query(double x, double y) {
+        ArrayList<T> result = new ArrayList<>(largeItems);
+        ArrayList<T> cell = cells.get(getKey(getCell(x), getCell(y)));
+        if (cell != null) {
+            result.addAll(cell);
+        }
+        return result;
+    }
+
+    /**
+     * Gets candidate items in the rectangle.
+     *
+     * @param minX left of the rectangle
+     * @param minY top of the rectangle
+     * @param maxX right of the rectangle
+     * @param maxY bottom of the rectangle
+     * @return items which bounds may overlap the rectangle, each once
+     */
+    public List<T> query(double minX, double minY, double maxX, double maxY) {
+        int left = getCell(minX);
+        int top = getCell(minY);
+        int right = getCell(maxX);
+        int bottom = getCell(maxY);
+
+        HashSet<T> result = new HashSet<>(largeItems);
+        if ((double) (right - left + 1) * (bottom - top + 1) > cells.size()) {
+            // fewer occupied cells than queried
+            for (ArrayList<T> cell : cells.values()) {
+                result.addAll(cell);
+            }
+        } else {
+            for (int column = left; column <= right; ++column) {
+                for (int row = top; row <= bottom; ++row) {
+                    ArrayList<T> cell = cells.get(getKey(column, row));
+                    if (cell != null) {
+                        result.addAll(cell);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    public void clear() {
+        cells.clear();
+        largeItems.clear();
+    }
+
+}
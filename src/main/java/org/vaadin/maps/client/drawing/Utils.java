@@ -461,6 +461,145 @@ public class Utils {
         }
     }
 
+    /**
+     * Transforms world geometry to view coordinates from top left corner.
+     *
+     * @param geometry world geometry, not changed
+     * @param ratio    view world ratio, the geometry is returned as it is when 0
+     * @param originX  world x coordinate of the view origin
+     * @param originY  world y coordinate of the view origin
+     * @return transformed copy of the geometry
+     */
+    public static Geometry transformWorldToView(Geometry geometry, double ratio, double originX, double originY) {
+        if (null == geometry || 0 == ratio) {
+            return geometry;
+        }
+
+        Geometry clone = Geometry.clone(geometry);
+        for (Coordinate coordinate : clone.getCoordinates()) {
+            coordinate.x = (coordinate.x - originX) * ratio;
+            coordinate.y = (originY - coordinate.y) * ratio;
+        }
+        return clone;
+    }
+
+    /**
+     * Gets radius of the point shape drawing, the distance from the point
+     * to the farthest edge of the shape.
+     *
+     * @param pointShape  point shape
+     * @param scale       point shape scale
+     * @param pointRadius radius of circle points
+     * @return radius in pixels
+     */
+    public static double getPointShapeRadius(PointShape pointShape, double scale, int pointRadius) {
+        if (PointShape.Circle == pointShape) {
+            return pointRadius;
+        }
+        // triangles reach the farthest
+        return 3 * Math.max(1, Math.round((float) scale));
+    }
+
+    /**
+     * Gets bounds of the geometry.
+     *
+     * @param geometry the geometry
+     * @return min x, min y, max x and max y or null when the geometry is empty
+     */
+    public static double[] getBounds(Geometry geometry) {
+        if (null == geometry || geometry.isEmpty()) {
+            return null;
+        }
+
+        double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+        for (Coordinate coordinate : geometry.getCoordinates()) {
+            bounds[0] = Math.min(bounds[0], coordinate.x);
+            bounds[1] = Math.min(bounds[1], coordinate.y);
+            bounds[2] = Math.max(bounds[2], coordinate.x);
+            bounds[3] = Math.max(bounds[3], coordinate.y);
+        }
+        return bounds;
+    }
+
+    /**
+     * Tests whether the geometry drawing is hit at the position. Polygons are
+     * hit inside, lines and points within the tolerance.
+     *
+     * @param geometry    geometry in view coordinates
+     * @param x           x coordinate of the position
+     * @param y           y coordinate of the position
+     * @param tolerance   distance from lines and points in pixels
+     * @param pointRadius radius of drawn points in pixels
+     * @return true when the geometry is hit
+     */
+    public static boolean hitTest(Geometry geometry, double x, double y, double tolerance, double pointRadius) {
+        // line string is a subclass of point
+        if (geometry instanceof LineString) {
+            return isNear(geometry.getCoordinates(), x, y, tolerance);
+        } else if (geometry instanceof Point) {
+            Coordinate coordinate = geometry.getCoordinate();
+            double distance = tolerance + pointRadius;
+            return coordinate != null && getDistanceSq(coordinate.x, coordinate.y, x, y) <= distance * distance;
+        } else if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            if (polygon.isEmpty()) {
+                return false;
+            }
+            // even-odd rule of all rings, like drawn path
+            boolean inside = isInside(polygon.getShell().getCoordinates(), x, y);
+            boolean near = isNear(polygon.getShell().getCoordinates(), x, y, tolerance);
+            for (int i = 0; i < polygon.getNumHoles(); ++i) {
+                Coordinate[] hole = polygon.getHole(i).getCoordinates();
+                inside ^= isInside(hole, x, y);
+                near |= isNear(hole, x, y, tolerance);
+            }
+            return inside || near;
+        } else if (geometry instanceof GeometryCollection) {
+            for (int i = 0; i < geometry.getNumGeometries(); ++i) {
+                if (hitTest(geometry.getGeometry(i), x, y, tolerance, pointRadius)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isInside(Coordinate[] ring, double x, double y) {
+        boolean inside = false;
+        for (int i = 0, j = ring.length - 1; i < ring.length; j = i++) {
+            Coordinate a = ring[i];
+            Coordinate b = ring[j];
+            if ((a.y > y) != (b.y > y) && x < (b.x - a.x) * (y - a.y) / (b.y - a.y) + a.x) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    private static boolean isNear(Coordinate[] coordinates, double x, double y, double tolerance) {
+        double toleranceSq = tolerance * tolerance;
+        if (1 == coordinates.length) {
+            return getDistanceSq(coordinates[0].x, coordinates[0].y, x, y) <= toleranceSq;
+        }
+        for (int i = 1; i < coordinates.length; ++i) {
+            Coordinate a = coordinates[i - 1];
+            Coordinate b = coordinates[i];
+            double dx = b.x - a.x;
+            double dy = b.y - a.y;
+            double length = dx * dx + dy * dy;
+            // parameter of the nearest point of the segment
+            double t = length > 0 ? Math.max(0, Math.min(1, ((x - a.x) * dx + (y - a.y) * dy) / length)) : 0;
+            if (getDistanceSq(a.x + t * dx, a.y + t * dy, x, y) <= toleranceSq) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double getDistanceSq(double x1, double y1, double x2, double y2) {
+        return (x2 - x1) * (x2 - x1) + (y2 - y1) * (y2 - y1);
+    }
+
     public enum PointShape {
         Circle, Square, Cross, XCross, Asterisk, TriangleUp, TriangleDown, Diamond //, Star
     }
@@ -0,0 +1,182 @@
+package org.vaadin.maps.client.geometry.compact;
+
+import org.vaadin.maps.client.geometry.*;
+import org.vaadin.maps.client.io.ParseException;
+import org.vaadin.maps.shared.geometry.CompactGeometryConstants;
+
+/**
+ * Reads geometries in the compact format, see
+ * {@link CompactGeometryConstants}. The base64 string is decoded in one pass
+ * and varints are read by double arithmetic, so no emulated long or stream is
+ * involved.
+ *
+ * @author Kamil Morong
+ */
+public class CompactGeometryReader {
+
+    private static final int[] BASE64_VALUES = new int[128];
+
+    static {
+        for (int i = 0; i < BASE64_VALUES.length; ++i) {
+            BASE64_VALUES[i] = -1;
+        }
+        for (int i = 0; i < CompactGeometryConstants.BASE64_ALPHABET.length(); ++i) {
+            BASE64_VALUES[CompactGeometryConstants.BASE64_ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    private int[] bytes;
+    private int length;
+    private int position;
+    private double scale;
+    private double lastX;
+    private double lastY;
+
+    private static int decodeChar(char c) throws ParseException {
+        int value = c < 128 ? BASE64_VALUES[c] : -1;
+        if (value < 0) {
+            throw new ParseException("Invalid base64 character " + c);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the geometry.
+     *
+     * @param compact base64 encoded geometry
+     * @return the geometry or null when the string is null
+     * @throws ParseException when the string is not a valid geometry
+     */
+    public Geometry read(String compact) throws ParseException {
+        if (null == compact) {
+            return null;
+        }
+
+        decode(compact);
+        position = 0;
+        lastX = 0;
+        lastY = 0;
+        scale = Math.pow(2, readSigned());
+
+        Geometry geometry = readGeometry();
+        bytes = null;
+        return geometry;
+    }
+
+    private void decode(String compact) throws ParseException {
+        int end = compact.length();
+        while (end > 0 && compact.charAt(end - 1) == '=') {
+            --end;
+        }
+
+        bytes = new int[end * 3 / 4];
+        length = 0;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < end; ++i) {
+            buffer = (buffer << 6) | decodeChar(compact.charAt(i));
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes[length++] = (buffer >> bits) & 0xFF;
+            }
+        }
+    }
+
+    private Geometry readGeometry() throws ParseException {
+        int type = (int) readUnsigned();
+        switch (type) {
+            case CompactGeometryConstants.POINT:
+                return new Point(readCoordinates());
+            case CompactGeometryConstants.LINE_STRING:
+                return new LineString(readCoordinates());
+            case CompactGeometryConstants.POLYGON:
+                return readPolygon();
+            case CompactGeometryConstants.MULTI_POINT: {
+                Point[] points = new Point[(int) readUnsigned()];
+                for (int i = 0; i < points.length; ++i) {
+                    points[i] = (Point) readGeometry(Point.class);
+                }
+                return new MultiPoint(points);
+            }
+            case CompactGeometryConstants.MULTI_LINE_STRING: {
+                LineString[] lineStrings = new LineString[(int) readUnsigned()];
+                for (int i = 0; i < lineStrings.length; ++i) {
+                    lineStrings[i] = (LineString) readGeometry(LineString.class);
+                }
+                return new MultiLineString(lineStrings);
+            }
+            case CompactGeometryConstants.MULTI_POLYGON: {
+                Polygon[] polygons = new Polygon[(int) readUnsigned()];
+                for (int i = 0; i < polygons.length; ++i) {
+                    polygons[i] = (Polygon) readGeometry(Polygon.class);
+                }
+                return new MultiPolygon(polygons);
+            }
+            case CompactGeometryConstants.GEOMETRY_COLLECTION: {
+                Geometry[] geometries = new Geometry[(int) readUnsigned()];
+                for (int i = 0; i < geometries.length; ++i) {
+                    geometries[i] = readGeometry();
+                }
+                return new GeometryCollection(geometries);
+            }
+        }
+        throw new ParseException("Unknown geometry type " + type);
+    }
+
+    private Geometry readGeometry(Class<? extends Geometry> type) throws ParseException {
+        Geometry geometry = readGeometry();
+        if (geometry.getClass() != type) {
+            throw new ParseException("Invalid geometry type in collection");
+        }
+        return geometry;
+    }
+
+    private Polygon readPolygon() throws ParseException {
+        int rings = (int) readUnsigned();
+        if (0 == rings) {
+            return new Polygon(new LinearRing(new CoordinateSequence(0)), null);
+        }
+
+        LinearRing shell = new LinearRing(readCoordinates());
+        LinearRing[] holes = rings > 1 ? new LinearRing[rings - 1] : null;
+        for (int i = 0; i < rings - 1; ++i) {
+            holes[i] = new LinearRing(readCoordinates());
+        }
+        return new Polygon(shell, holes);
+    }
+
+    private CoordinateSequence readCoordinates() throws ParseException {
+        int size = (int) readUnsigned();
+        // appended, indexed access of the sequence is linear
+        CoordinateSequence coordinates = new CoordinateSequence(0);
+        for (int i = 0; i < size; ++i) {
+            lastX += readSigned();
+            lastY += readSigned();
+            coordinates.add(new Coordinate(lastX / scale, lastY / scale));
+        }
+        return coordinates;
+    }
+
+    private double readSigned() throws ParseException {
+        double value = readUnsigned();
+        // zigzag
+        return value % 2 == 0 ? value / 2 : -(value + 1) / 2;
+    }
+
+    private double readUnsigned() throws ParseException {
+        double value = 0;
+        double multiplier = 1;
+        int b;
+        do {
+            if (position >= length) {
+                throw new ParseException("Unexpected end of geometry");
+            }
+            b = bytes[position++];
+            value += (b & 0x7F) * multiplier;
+            multiplier *= 128;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.vaadin.maps.client.ui;
 
+import com.google.gwt.dom.client.Style;
 import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.ui.Widget;
 
@@ -42,8 +43,20 @@ public abstract class InteractiveLayer extends AbstractLayer implements PanHandl
         }
     }
 
+    @Override
+    public void onZoomStep(double zoom) {
+        if (!fixed) {
+            // scale around view center, as the world is scaled
+            Style style = getElement().getStyle();
+            style.setProperty("transformOrigin", "50% 50%");
+            style.setProperty("transform", "scale(" + (1 / zoom) + ")");
+        }
+    }
+
     @Override
     public void onZoom(double zoom) {
+        getElement().getStyle().clearProperty("transform");
+
         if (!fixed) {
             @SuppressWarnings("unused")
             Widget content = getWidget();
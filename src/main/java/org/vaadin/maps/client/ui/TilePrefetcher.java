@@ -0,0 +1,126 @@
+package org.vaadin.maps.client.ui;
+
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.ImageElement;
+import com.google.gwt.user.client.Timer;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Loads tile images into browser cache in background. Loading waits until
+ * visible tiles of the layer are loaded and runs only few images at once, so
+ * it does not compete with tiles the user is waiting for.
+ *
+ * @author Kamil Morong
+ */
+public class TilePrefetcher {
+
+    public static final int DEFAULT_CONCURRENCY = 2;
+
+    /**
+     * delay of next check of pending visible tiles in milliseconds
+     */
+    private static final int WAIT_DELAY = 100;
+
+    private final PendingTiles pendingTiles;
+
+    private final LinkedList<String> queue = new LinkedList<>();
+    private final ArrayList<ImageElement> loading = new ArrayList<>();
+
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    private final Timer timer = new Timer() {
+        @Override
+        public void run() {
+            loadNext();
+        }
+    };
+
+    public TilePrefetcher(PendingTiles pendingTiles) {
+        this.pendingTiles = pendingTiles;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Cancels current prefetching and starts loading given images.
+     *
+     * @param urls image URLs in order of priority
+     */
+    public void prefetch(List<String> urls) {
+        cancel();
+        queue.addAll(urls);
+        loadNext();
+    }
+
+    /**
+     * Stops loading of queued images and aborts images being loaded.
+     */
+    public void cancel() {
+        timer.cancel();
+        queue.clear();
+        for (ImageElement image : loading) {
+            abort(image);
+        }
+        loading.clear();
+    }
+
+    public boolean isActive() {
+        return !queue.isEmpty() || !loading.isEmpty();
+    }
+
+    private void loadNext() {
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        if (pendingTiles.hasPendingTiles()) {
+            timer.schedule(WAIT_DELAY);
+            return;
+        }
+
+        while (!queue.isEmpty() && loading.size() < concurrency) {
+            ImageElement image = Document.get().createImageElement();
+            loading.add(image);
+            load(image, queue.removeFirst());
+        }
+    }
+
+    private void onLoadEnd(ImageElement image) {
+        if (loading.remove(image)) {
+            loadNext();
+        }
+    }
+
+    private native void load(ImageElement image, String url)
+    /*-{
+        var self = this;
+        image.onload = image.onerror = $entry(function() {
+            image.onload = image.onerror = null;
+            self.@org.vaadin.maps.client.ui.TilePrefetcher::onLoadEnd(Lcom/google/gwt/dom/client/ImageElement;)(image);
+        });
+        image.src = url;
+    }-*/;
+
+    private native void abort(ImageElement image)
+    /*-{
+        image.onload = image.onerror = null;
+        image.src = "";
+    }-*/;
+
+    public interface PendingTiles {
+        /**
+         * Returns true while some visible tile is being loaded.
+         */
+        boolean hasPendingTiles();
+    }
+
+}
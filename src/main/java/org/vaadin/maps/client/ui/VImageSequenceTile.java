@@ -1,117 +1,516 @@
 package org.vaadin.maps.client.ui;
 
-import com.google.gwt.event.dom.client.ErrorEvent;
-import com.google.gwt.event.dom.client.ErrorHandler;
-import com.google.gwt.event.dom.client.LoadEvent;
-import com.google.gwt.event.dom.client.LoadHandler;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.ImageElement;
+import com.google.gwt.dom.client.Style;
 import com.google.gwt.event.shared.EventHandler;
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.event.shared.HandlerRegistration;
-import com.google.gwt.user.client.ui.Image;
-import com.google.gwt.user.client.ui.RootPanel;
+import com.google.gwt.user.client.Timer;
+import org.vaadin.maps.shared.ui.tile.PlaybackMode;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map.Entry;
 
 /**
+ * Tile showing one image of a sequence at a time. Only images within a window
+ * around the current index are preloaded, images leaving the window are
+ * released, so long sequences do not flood the server with requests nor hold
+ * all decoded images in browser memory. Load of each new window is reported
+ * by {@link SequenceLoadedEvent} or {@link SequenceErrorEvent}.
+ * <p>
+ * The sequence can be played by the client timer. Frames not loaded yet are
+ * skipped, index changes are reported by {@link IndexChangeEvent} only on
+ * pause and at most once per report interval while playing. The window moves
+ * with every played frame, so its loads are reported together with the index
+ * too, instead of once per frame.
+ * <p>
+ * Short sequences can be given as one sprite sheet, an image of all frames
+ * packed together. Frames are then switched by background offset, without
+ * further requests or image decoding.
+ *
  * @author Kamil Morong
  */
 public class VImageSequenceTile extends VImageTile {
 
     public static final String CLASSNAME = "v-imagesequencetile";
-    private final LinkedList<String> urls = new LinkedList<>();
+
+    public static final int DEFAULT_PRELOAD_AHEAD = 10;
+    public static final int DEFAULT_PRELOAD_BEHIND = 2;
+    public static final double DEFAULT_FPS = 10;
+    public static final int DEFAULT_REPORT_INTERVAL = 1000;
+
+    /**
+     * transparent image showing the sprite sheet background
+     */
+    private static final String BLANK_IMAGE = "data:image/gif;base64,R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7";
+
+    private final ArrayList<String> urls = new ArrayList<>();
     private int index = 0;
+
+    /**
+     * sprite sheet URL, null when images are given by URLs
+     */
+    private String spriteUrl = null;
+    private int spriteWidth;
+    private int spriteHeight;
+    private int frameWidth;
+    private int frameHeight;
+    private int[] frameX = new int[0];
+    private int[] frameY = new int[0];
+
+    private int preloadAhead = DEFAULT_PRELOAD_AHEAD;
+    private int preloadBehind = DEFAULT_PRELOAD_BEHIND;
+
+    /**
+     * preloaded images of the window by URL
+     */
+    private final HashMap<String, ImageElement> images = new HashMap<>();
+    /**
+     * URLs of the window being loaded
+     */
+    private final HashSet<String> pending = new HashSet<>();
+    private int windowStart = 0;
+    private int windowSize = 0;
+    /**
+     * URLs of the window which failed to load
+     */
+    private final HashSet<String> failed = new HashSet<>();
     private int loadErrors;
 
+    private boolean playing = false;
+    private double fps = DEFAULT_FPS;
+    private PlaybackMode playbackMode = PlaybackMode.LOOP;
+    private int rangeStart = 0;
+    private int rangeEnd = -1;
+    private int reportInterval = DEFAULT_REPORT_INTERVAL;
+    /**
+     * direction of bounce playback, 1 forward, -1 backward
+     */
+    private int direction = 1;
+    private double lastReport = 0;
+    private int reportedIndex = -1;
+    /**
+     * last window load event held back while playing
+     */
+    private GwtEvent<?> unreportedLoad = null;
+
+    private final Timer playTimer = new Timer() {
+        @Override
+        public void run() {
+            playStep();
+        }
+    };
+
     public VImageSequenceTile() {
         setStylePrimaryName(CLASSNAME);
     }
 
     public void setUrls(List<String> urls) {
+        releaseImages();
+        clearSpriteSheet();
         this.urls.clear();
-        this.urls.addAll(urls);
-        loadImages();
-        setIndex(0);
+        for (String url : urls) {
+            this.urls.add(url != null ? url.trim() : "");
+        }
+        index = 0;
+
+        if (this.urls.isEmpty()) {
+            fireEvent(new SequenceErrorEvent(this, 0, 0, 0));
+        } else {
+            setIndex(0);
+        }
     }
 
-    private final void incLoadErrors() {
-        ++loadErrors;
+    /**
+     * Sets sprite sheet containing all frames of the sequence.
+     *
+     * @param url          sprite sheet URL
+     * @param spriteWidth  width of the sprite sheet in pixels
+     * @param spriteHeight height of the sprite sheet in pixels
+     * @param frameWidth   width of a frame in pixels
+     * @param frameHeight  height of a frame in pixels
+     * @param frameX       left offsets of frames in the sprite sheet
+     * @param frameY       top offsets of frames in the sprite sheet
+     */
+    public void setSpriteSheet(String url, int spriteWidth, int spriteHeight, int frameWidth, int frameHeight,
+                               int[] frameX, int[] frameY) {
+        releaseImages();
+        urls.clear();
+        index = 0;
+
+        spriteUrl = url != null ? url.trim() : "";
+        this.spriteWidth = spriteWidth;
+        this.spriteHeight = spriteHeight;
+        this.frameWidth = frameWidth;
+        this.frameHeight = frameHeight;
+        int count = Math.min(frameX.length, frameY.length);
+        this.frameX = new int[count];
+        this.frameY = new int[count];
+        System.arraycopy(frameX, 0, this.frameX, 0, count);
+        System.arraycopy(frameY, 0, this.frameY, 0, count);
+
+        if (spriteUrl.isEmpty() || count == 0 || frameWidth <= 0 || frameHeight <= 0) {
+            fireEvent(new SequenceErrorEvent(this, 0, count, 0));
+        } else {
+            Style style = getElement().getStyle();
+            style.setProperty("backgroundImage", "url(\"" + spriteUrl + "\")");
+            style.setProperty("backgroundRepeat", "no-repeat");
+            // sprite sheet scaled so a frame fills the tile
+            style.setProperty("backgroundSize", percent(spriteWidth, frameWidth) + " " + percent(spriteHeight, frameHeight));
+            setIndex(0);
+        }
     }
 
-    private void loadImages() {
-        loadErrors = 0;
-        final HashSet<String> urlsToLoad = new HashSet<String>();
-        for (String url : urls) {
-            url = url.trim();
-            if (url != null && url.length() > 0 && !urlsToLoad.contains(url)) {
-                urlsToLoad.add(url);
+    private void clearSpriteSheet() {
+        if (spriteUrl != null) {
+            spriteUrl = null;
+            frameX = frameY = new int[0];
+
+            Style style = getElement().getStyle();
+            style.clearProperty("backgroundImage");
+            style.clearProperty("backgroundRepeat");
+            style.clearProperty("backgroundSize");
+            style.clearProperty("backgroundPosition");
+        }
+    }
+
+    public boolean isSpriteSheet() {
+        return spriteUrl != null;
+    }
+
+    private static String percent(double value, double total) {
+        return value / total * 100 + "%";
+    }
+
+    /**
+     * Gets number of images of the sequence.
+     */
+    public int getCount() {
+        return isSpriteSheet() ? frameX.length : urls.size();
+    }
+
+    public int getPreloadAhead() {
+        return preloadAhead;
+    }
+
+    public int getPreloadBehind() {
+        return preloadBehind;
+    }
+
+    /**
+     * Sets the window of images preloaded around the current index.
+     *
+     * @param ahead  number of images after the current one
+     * @param behind number of images before the current one
+     */
+    public void setPreloadWindow(int ahead, int behind) {
+        preloadAhead = Math.max(0, ahead);
+        preloadBehind = Math.max(0, behind);
+        if (!urls.isEmpty()) {
+            updateWindow();
+        }
+    }
+
+    /**
+     * Gets URLs of the window in order of priority, the current image first,
+     * then the images ahead followed by the images behind. The window wraps
+     * around the sequence ends, as sequences are usually played in loop.
+     */
+    private LinkedHashSet<String> getWindowUrls() {
+        if (isSpriteSheet()) {
+            // whole sequence is loaded at once
+            windowStart = 0;
+            windowSize = frameX.length;
+
+            LinkedHashSet<String> window = new LinkedHashSet<>();
+            addUrl(window, spriteUrl);
+            return window;
+        }
+
+        int size = urls.size();
+        int ahead = Math.min(preloadAhead, size - 1);
+        int behind = Math.min(preloadBehind, size - 1 - ahead);
+
+        windowStart = (index - behind + size) % size;
+        windowSize = 1 + ahead + behind;
+
+        LinkedHashSet<String> window = new LinkedHashSet<>();
+        for (int i = 0; i <= ahead; ++i) {
+            addUrl(window, urls.get((index + i) % size));
+        }
+        for (int i = 1; i <= behind; ++i) {
+            addUrl(window, urls.get((index - i + size) % size));
+        }
+        return window;
+    }
+
+    private static void addUrl(LinkedHashSet<String> window, String url) {
+        if (!url.isEmpty()) {
+            window.add(url);
+        }
+    }
+
+    private void updateWindow() {
+        LinkedHashSet<String> window = getWindowUrls();
+
+        // release images which left the window
+        Iterator<Entry<String, ImageElement>> iterator = images.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<String, ImageElement> entry = iterator.next();
+            if (!window.contains(entry.getKey())) {
+                abort(entry.getValue());
+                pending.remove(entry.getKey());
+                failed.remove(entry.getKey());
+                iterator.remove();
             }
         }
 
-        if (urlsToLoad.isEmpty()) {
-            fireEvent(new SequenceErrorEvent(VImageSequenceTile.this, loadErrors));
-        } else {
-            for (final String url : urlsToLoad) {
-                final Image image = new Image(url);
-
-                image.addLoadHandler(new LoadHandler() {
-                    @Override
-                    public void onLoad(LoadEvent event) {
-                        RootPanel.get().remove(image);
-                        urlsToLoad.remove(url);
-
-                        if (urlsToLoad.isEmpty()) {
-                            if (loadErrors > 0) {
-                                fireEvent(new SequenceErrorEvent(VImageSequenceTile.this, loadErrors));
-                            } else {
-                                fireEvent(new SequenceLoadedEvent(VImageSequenceTile.this));
-                            }
-                        }
-                    }
-                });
-
-                image.addErrorHandler(new ErrorHandler() {
-                    @Override
-                    public void onError(ErrorEvent event) {
-                        incLoadErrors();
-                        RootPanel.get().remove(image);
-                        urlsToLoad.remove(url);
-
-                        if (urlsToLoad.isEmpty()) {
-                            if (loadErrors > 0) {
-                                fireEvent(new SequenceErrorEvent(VImageSequenceTile.this, loadErrors));
-                            } else {
-                                fireEvent(new SequenceLoadedEvent(VImageSequenceTile.this));
-                            }
-                        }
-                    }
-                });
-
-                image.setVisible(false);
-                image.setSize("0px", "0px");
-                RootPanel.get().add(image);
+        boolean started = false;
+        for (String url : window) {
+            if (!images.containsKey(url)) {
+                if (pending.isEmpty() && !started) {
+                    // new window load
+                    loadErrors = 0;
+                }
+                ImageElement image = Document.get().createImageElement();
+                images.put(url, image);
+                pending.add(url);
+                started = true;
+                load(image, url);
+            }
+        }
+
+        if (window.isEmpty()) {
+            // no valid URL in the window
+            fireEvent(new SequenceErrorEvent(this, windowStart, windowSize, 0));
+        }
+    }
+
+    private void releaseImages() {
+        for (ImageElement image : images.values()) {
+            abort(image);
+        }
+        images.clear();
+        pending.clear();
+        failed.clear();
+    }
+
+    private void onImageLoad(ImageElement image, String url, boolean error) {
+        if (images.get(url) != image || !pending.remove(url)) {
+            // released meanwhile
+            return;
+        }
+
+        if (error) {
+            failed.add(url);
+            ++loadErrors;
+        }
+
+        if (pending.isEmpty()) {
+            GwtEvent<?> event = loadErrors > 0 ? new SequenceErrorEvent(this, windowStart, windowSize, loadErrors)
+                    : new SequenceLoadedEvent(this, windowStart, windowSize);
+            if (playing) {
+                unreportedLoad = event;
+            } else {
+                fireEvent(event);
             }
         }
     }
 
+    private native void load(ImageElement image, String url)
+    /*-{
+        var self = this;
+        image.onload = $entry(function() {
+            image.onload = image.onerror = null;
+            self.@org.vaadin.maps.client.ui.VImageSequenceTile::onImageLoad(Lcom/google/gwt/dom/client/ImageElement;Ljava/lang/String;Z)(image, url, false);
+        });
+        image.onerror = $entry(function() {
+            image.onload = image.onerror = null;
+            self.@org.vaadin.maps.client.ui.VImageSequenceTile::onImageLoad(Lcom/google/gwt/dom/client/ImageElement;Ljava/lang/String;Z)(image, url, true);
+        });
+        image.src = url;
+    }-*/;
+
+    private native void abort(ImageElement image)
+    /*-{
+        image.onload = image.onerror = null;
+        image.src = "";
+    }-*/;
+
     private void updateImage() {
-        setUrl(urls.get(index));
+        if (isSpriteSheet()) {
+            if (!BLANK_IMAGE.equals(getUrl())) {
+                setUrl(BLANK_IMAGE);
+            }
+            // percentage position aligns the frame with the tile at any size
+            getElement().getStyle().setProperty("backgroundPosition",
+                    getFramePosition(frameX[index], spriteWidth, frameWidth) + " "
+                            + getFramePosition(frameY[index], spriteHeight, frameHeight));
+        } else {
+            setUrl(urls.get(index));
+        }
         setVisible(true);
     }
 
+    private static String getFramePosition(int offset, int spriteSize, int frameSize) {
+        return spriteSize > frameSize ? percent(offset, spriteSize - frameSize) : "0%";
+    }
+
     public int getIndex() {
         return index;
     }
 
     public void setIndex(int index) {
-        if (index < urls.size()) {
+        if (index >= 0 && index < getCount()) {
             this.index = index;
 
+            updateWindow();
             updateImage();
         }
     }
 
+    /**
+     * Returns true when the image at the index is preloaded, so it can be
+     * shown without waiting.
+     *
+     * @param index image index
+     */
+    public boolean isLoaded(int index) {
+        if (index < 0 || index >= getCount()) {
+            return false;
+        }
+        String url = isSpriteSheet() ? spriteUrl : urls.get(index);
+        return images.containsKey(url) && !pending.contains(url) && !failed.contains(url);
+    }
+
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Sets playback parameters.
+     *
+     * @param fps            frames per second
+     * @param playbackMode   playback mode
+     * @param rangeStart     index of the first image played
+     * @param rangeEnd       index of the last image played, negative for the
+     *                       last image of the sequence
+     * @param reportInterval minimum interval of index reports while playing
+     *                       in milliseconds
+     */
+    public void setPlayback(double fps, PlaybackMode playbackMode, int rangeStart, int rangeEnd,
+                            int reportInterval) {
+        this.fps = fps > 0 ? fps : DEFAULT_FPS;
+        this.playbackMode = playbackMode != null ? playbackMode : PlaybackMode.LOOP;
+        this.rangeStart = Math.max(0, rangeStart);
+        this.rangeEnd = rangeEnd;
+        this.reportInterval = Math.max(0, reportInterval);
+
+        if (playing) {
+            playTimer.scheduleRepeating(getFrameDelay());
+        }
+    }
+
+    private int getFrameDelay() {
+        return Math.max(1, (int) Math.round(1000 / fps));
+    }
+
+    private int getRangeEnd() {
+        return rangeEnd >= 0 ? Math.min(rangeEnd, getCount() - 1) : getCount() - 1;
+    }
+
+    public void play() {
+        if (!playing) {
+            playing = true;
+            direction = 1;
+            lastReport = now();
+            playTimer.scheduleRepeating(getFrameDelay());
+        }
+    }
+
+    public void pause() {
+        if (playing) {
+            playing = false;
+            playTimer.cancel();
+            reportIndex();
+        }
+    }
+
+    private void playStep() {
+        int end = getRangeEnd();
+        if (rangeStart > end) {
+            return;
+        }
+
+        // look for the next loaded image within the preload window
+        int next = index;
+        int nextDirection = direction;
+        for (int i = 0; i <= preloadAhead; ++i) {
+            if (next < rangeStart || next > end) {
+                // out of range, e.g. index set by the server
+                next = nextDirection > 0 ? rangeStart : end;
+            } else if (nextDirection > 0 && next == end || nextDirection < 0 && next == rangeStart) {
+                switch (playbackMode) {
+                    case ONCE:
+                        pause();
+                        return;
+                    case BOUNCE:
+                        nextDirection = -nextDirection;
+                        next = rangeStart < end ? next + nextDirection : next;
+                        break;
+                    default:
+                        next = rangeStart;
+                }
+            } else {
+                next += nextDirection;
+            }
+
+            if (isLoaded(next)) {
+                direction = nextDirection;
+                if (next != index) {
+                    setIndex(next);
+                }
+                if (now() - lastReport >= reportInterval) {
+                    reportIndex();
+                }
+                return;
+            }
+        }
+        // wait for images being loaded
+    }
+
+    private void reportIndex() {
+        lastReport = now();
+        if (unreportedLoad != null) {
+            GwtEvent<?> event = unreportedLoad;
+            unreportedLoad = null;
+            fireEvent(event);
+        }
+        // pause is always reported
+        if (index != reportedIndex || !playing) {
+            reportedIndex = index;
+            fireEvent(new IndexChangeEvent(this, index, playing));
+        }
+    }
+
+    private static double now() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    protected void onDetach() {
+        super.onDetach();
+        pause();
+        releaseImages();
+        unreportedLoad = null;
+    }
+
     public HandlerRegistration addSequenceLoadedHandler(SequenceLoadedHandler handler) {
         return addHandler(handler, SequenceLoadedEvent.TYPE);
     }
@@ -120,6 +519,14 @@ public class VImageSequenceTile extends VImageTile {
         return addHandler(handler, SequenceErrorEvent.TYPE);
     }
 
+    public HandlerRegistration addIndexChangeHandler(IndexChangeHandler handler) {
+        return addHandler(handler, IndexChangeEvent.TYPE);
+    }
+
+    public interface IndexChangeHandler extends EventHandler {
+        void indexChange(IndexChangeEvent event);
+    }
+
     public interface SequenceLoadedHandler extends EventHandler {
         void loaded(SequenceLoadedEvent event);
     }
@@ -132,8 +539,28 @@ public class VImageSequenceTile extends VImageTile {
 
         public static final Type<SequenceLoadedHandler> TYPE = new Type<SequenceLoadedHandler>();
 
-        public SequenceLoadedEvent(VImageSequenceTile imageSequenceTile) {
+        private final int windowStart;
+        private final int windowSize;
+
+        public SequenceLoadedEvent(VImageSequenceTile imageSequenceTile, int windowStart, int windowSize) {
             setSource(imageSequenceTile);
+            this.windowStart = windowStart;
+            this.windowSize = windowSize;
+        }
+
+        /**
+         * Gets index of the first image of the loaded window.
+         */
+        public int getWindowStart() {
+            return windowStart;
+        }
+
+        /**
+         * Gets number of images of the loaded window, the window may wrap
+         * around the sequence end.
+         */
+        public int getWindowSize() {
+            return windowSize;
         }
 
         @Override
@@ -151,10 +578,24 @@ public class VImageSequenceTile extends VImageTile {
 
         public static final Type<SequenceErrorHandler> TYPE = new Type<SequenceErrorHandler>();
 
-        private int errorCount;
+        private final int windowStart;
+        private final int windowSize;
+        private final int errorCount;
 
-        public SequenceErrorEvent(VImageSequenceTile imageSequenceTile, int errorCount) {
+        public SequenceErrorEvent(VImageSequenceTile imageSequenceTile, int windowStart, int windowSize,
+                                  int errorCount) {
             setSource(imageSequenceTile);
+            this.windowStart = windowStart;
+            this.windowSize = windowSize;
+            this.errorCount = errorCount;
+        }
+
+        public int getWindowStart() {
+            return windowStart;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
         }
 
         public int getErrorCount() {
@@ -172,4 +613,39 @@ public class VImageSequenceTile extends VImageTile {
         }
     }
 
+    public static class IndexChangeEvent extends GwtEvent<IndexChangeHandler> {
+
+        public static final Type<IndexChangeHandler> TYPE = new Type<IndexChangeHandler>();
+
+        private final int index;
+        private final boolean playing;
+
+        public IndexChangeEvent(VImageSequenceTile imageSequenceTile, int index, boolean playing) {
+            setSource(imageSequenceTile);
+            this.index = index;
+            this.playing = playing;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns true when reported during playback, false on pause.
+         */
+        public boolean isPlaying() {
+            return playing;
+        }
+
+        @Override
+        public Type<IndexChangeHandler> getAssociatedType() {
+            return TYPE;
+        }
+
+        @Override
+        protected void dispatch(IndexChangeHandler handler) {
+            handler.indexChange(this);
+        }
+    }
+
 }
@@ -279,6 +279,17 @@ public class VLayerLayout extends ComplexPanel implements PanHandler, ZoomHandle
         }
     }
 
+    @Override
+    public void onZoomStep(double zoom) {
+        Iterator<Widget> iterator = iterator();
+        while (iterator.hasNext()) {
+            Widget widget = iterator.next();
+            if (widget instanceof ZoomHandler) {
+                ((ZoomHandler) widget).onZoomStep(zoom);
+            }
+        }
+    }
+
     @Override
     public void onZoom(double zoom) {
         Iterator<Widget> iterator = iterator();
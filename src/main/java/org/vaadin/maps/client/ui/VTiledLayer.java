@@ -0,0 +1,152 @@
+package org.vaadin.maps.client.ui;
+
+import com.google.gwt.event.shared.EventHandler;
+import com.google.gwt.event.shared.GwtEvent;
+import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.ui.Widget;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Layer which content is a grid of tiles. After each pan and zoom new tiles
+ * covering the view are requested from the server.
+ *
+ * @author Kamil Morong
+ */
+public abstract class VTiledLayer extends InteractiveLayer implements TilePrefetcher.PendingTiles {
+
+    private final HashMap<RequestTilesHandler, HandlerRegistration> requestTilesHandlerMap = new HashMap<>();
+
+    private final TilePrefetcher prefetcher = new TilePrefetcher(this);
+
+    public boolean isSingleTile() {
+        return false;
+    }
+
+    /**
+     * Loads tile images around the view in background, previous prefetching
+     * is cancelled.
+     *
+     * @param urls tile image URLs in order of priority
+     */
+    public void prefetch(List<String> urls) {
+        prefetcher.prefetch(urls);
+    }
+
+    @Override
+    public boolean hasPendingTiles() {
+        Widget content = getWidget();
+        if (content instanceof VGridLayout) {
+            for (Widget tile : (VGridLayout) content) {
+                // image tiles are hidden until loaded
+                if (tile instanceof VImageTile && !tile.isVisible()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void onPanStep(int dX, int dY) {
+        super.onPanStep(dX, dY);
+
+        // view moves away, new tiles to prefetch follow the pan end
+        if (prefetcher.isActive()) {
+            prefetcher.cancel();
+        }
+    }
+
+    @Override
+    public void onPanEnd(int totalX, int totalY) {
+        super.onPanEnd(totalX, totalY);
+
+        if (!fixed && !isSingleTile()) {
+            fireEvent(new RequestTilesEvent(this));
+        }
+    }
+
+    @Override
+    public void onZoomStep(double zoom) {
+        super.onZoomStep(zoom);
+
+        if (prefetcher.isActive()) {
+            prefetcher.cancel();
+        }
+    }
+
+    @Override
+    public void onZoom(double zoom) {
+        super.onZoom(zoom);
+
+        prefetcher.cancel();
+
+        if (!fixed && !isSingleTile()) {
+            // server places tiles of new zoom relative to current view
+            resetShift();
+            fireEvent(new RequestTilesEvent(this));
+        }
+    }
+
+    /**
+     * Called by the grid layout before the tile is removed.
+     *
+     * @param tile tile widget being removed
+     */
+    public void onTileRemove(Widget tile) {
+    }
+
+    /**
+     * Called by the grid layout when the tile image is loaded.
+     *
+     * @param tile loaded tile
+     */
+    public void onTileLoad(Tile tile) {
+    }
+
+    protected void resetShift() {
+        clearShift();
+
+        Widget content = getWidget();
+        if (content instanceof CanShift) {
+            ((CanShift) content).setShift(0, 0);
+        }
+    }
+
+    public void addRequestTilesHandler(RequestTilesHandler handler) {
+        requestTilesHandlerMap.put(handler, addHandler(handler, RequestTilesEvent.TYPE));
+    }
+
+    public void removeRequestTilesHandler(RequestTilesHandler handler) {
+        if (requestTilesHandlerMap.containsKey(handler)) {
+            removeHandler(requestTilesHandlerMap.get(handler));
+            requestTilesHandlerMap.remove(handler);
+        }
+    }
+
+    public interface RequestTilesHandler extends EventHandler {
+        void requestTiles(RequestTilesEvent event);
+    }
+
+    public static class RequestTilesEvent extends GwtEvent<RequestTilesHandler> {
+
+        public static final Type<RequestTilesHandler> TYPE = new Type<>();
+
+        public RequestTilesEvent(VTiledLayer source) {
+            setSource(source);
+        }
+
+        @Override
+        public Type<RequestTilesHandler> getAssociatedType() {
+            return TYPE;
+        }
+
+        @Override
+        protected void dispatch(RequestTilesHandler handler) {
+            handler.requestTiles(this);
+        }
+
+    }
+
+}
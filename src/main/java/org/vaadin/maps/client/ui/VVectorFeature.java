@@ -1,5 +1,9 @@
 package org.vaadin.maps.client.ui;
 
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.DoubleClickEvent;
+import com.google.gwt.event.dom.client.DoubleClickHandler;
 import com.google.gwt.event.dom.client.MouseOutEvent;
 import com.google.gwt.event.dom.client.MouseOutHandler;
 import com.google.gwt.event.dom.client.MouseOverEvent;
@@ -17,6 +21,13 @@ import org.vaadin.maps.client.geometry.Geometry;
 import org.vaadin.maps.shared.ui.Style;
 
 /**
+ * Vector feature widget. Geometry and centroid are in world coordinates, they
+ * are drawn projected by the view world transform set by the container.
+ * <p>
+ * The feature listens to no DOM events. Click, double click, mouse over and
+ * mouse out handlers are fired by the container, which resolves the feature
+ * under the pointer by its hit index.
+ *
  * @author Kamil Morong
  */
 public class VVectorFeature extends AbstractDrawingContainer implements CanShift {
@@ -36,12 +47,24 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
     private PointShape pointShape = PointShape.Circle;
     private double pointShapeScale = 1.0;
 
-    private HandlerRegistration mouseOverHandler = null;
-    private HandlerRegistration mouseOutHandler = null;
+    /**
+     * distance from lines and points, which still hits the feature
+     */
+    private static final double HIT_TOLERANCE = 2;
+
+    /**
+     * geometry in view coordinates without shift
+     */
+    private Geometry viewGeometry = null;
+    private boolean hovered = false;
 
     private int shiftX = 0;
     private int shiftY = 0;
 
+    private double transformRatio = 0.0;
+    private double originX = 0.0;
+    private double originY = 0.0;
+
     public VVectorFeature() {
         super();
         setStyleName(CLASSNAME);
@@ -53,14 +76,17 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
 
     public void setGeometry(Geometry geometry) {
         if (geometry != null) {
-            Utils.moveGeometry(geometry, -shiftX, -shiftY);
             if (!geometry.equals(this.geometry)) {
                 // create new vector object and insert it into feature root
                 // element
+                viewGeometry = Utils.transformWorldToView(geometry, transformRatio, originX, originY);
                 drawGeometry(geometry);
+                invalidateHitIndex();
             }
         } else {
             clear();
+            viewGeometry = null;
+            invalidateHitIndex();
         }
 
         this.geometry = geometry;
@@ -91,6 +117,8 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
 
         updateDrawingStyle();
         updateTextStyle();
+        // stroke width and point shape change the hit area
+        invalidateHitIndex();
     }
 
     private void setPointShape() {
@@ -113,7 +141,24 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
 
     public void setHoverStyle(Style style) {
         this.hoverStyle = style;
-        updateHoverStyle();
+        updateDrawingStyle();
+    }
+
+    public boolean isHovered() {
+        return hovered;
+    }
+
+    /**
+     * Sets whether the pointer is over the feature, hovered feature is drawn
+     * by the hover style.
+     *
+     * @param hovered true when the pointer is over the feature
+     */
+    public void setHovered(boolean hovered) {
+        if (this.hovered != hovered) {
+            this.hovered = hovered;
+            updateDrawingStyle();
+        }
     }
 
     public boolean isHidden() {
@@ -124,16 +169,7 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
         if (this.hidden != hidden) {
             this.hidden = hidden;
 
-            VVectorFeatureContainer container = null;
-            Widget parent = getParent();
-            if (parent instanceof VVectorFeatureContainer) {
-                container = (VVectorFeatureContainer) parent;
-            } else {
-                Widget grandParent = parent.getParent();
-                if (grandParent instanceof VVectorFeatureContainer) {
-                    container = (VVectorFeatureContainer) grandParent;
-                }
-            }
+            VVectorFeatureContainer container = getContainer();
             if (container != null) {
                 container.remove(this);
                 container.add(this);
@@ -141,36 +177,28 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
         }
     }
 
-    private void updateDrawingStyle() {
-        if (drawing != null && style != null) {
-            Utils.updateDrawingStyle(drawing, style);
+    private VVectorFeatureContainer getContainer() {
+        Widget parent = getParent();
+        if (parent instanceof VVectorFeatureContainer) {
+            return (VVectorFeatureContainer) parent;
+        } else if (parent != null && parent.getParent() instanceof VVectorFeatureContainer) {
+            return (VVectorFeatureContainer) parent.getParent();
+        }
+        return null;
+    }
+
+    private void invalidateHitIndex() {
+        VVectorFeatureContainer container = getContainer();
+        if (container != null) {
+            container.invalidateHitIndex();
         }
     }
 
-    private void updateHoverStyle() {
+    private void updateDrawingStyle() {
         if (drawing != null) {
-            if (hoverStyle != null) {
-                mouseOverHandler = drawing.addMouseOverHandler(new MouseOverHandler() {
-                    @Override
-                    public void onMouseOver(MouseOverEvent event) {
-                        Utils.updateDrawingStyle(drawing, hoverStyle);
-                    }
-                });
-                mouseOutHandler = drawing.addMouseOutHandler(new MouseOutHandler() {
-                    @Override
-                    public void onMouseOut(MouseOutEvent event) {
-                        Utils.updateDrawingStyle(drawing, style);
-                    }
-                });
-            } else {
-                if (mouseOverHandler != null) {
-                    mouseOverHandler.removeHandler();
-                    mouseOverHandler = null;
-                }
-                if (mouseOutHandler != null) {
-                    mouseOutHandler.removeHandler();
-                    mouseOutHandler = null;
-                }
+            Style drawingStyle = hovered && hoverStyle != null ? hoverStyle : style;
+            if (drawingStyle != null) {
+                Utils.updateDrawingStyle(drawing, drawingStyle);
             }
         }
     }
@@ -196,12 +224,20 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
     }
 
     private void drawGeometry(Geometry geometry) {
-        clear();
+        // keep the text shape
+        if (drawing != null) {
+            remove(drawing);
+            drawing = null;
+        }
         if (geometry != null) {
-            drawing = Utils.drawGeometry(geometry, pointShape, pointShapeScale, shiftX, shiftY);
+            drawing = Utils.drawGeometry(viewGeometry, pointShape, pointShapeScale, shiftX, shiftY);
             updateDrawingStyle();
-            updateHoverStyle();
             add(drawing);
+            if (textShape != null) {
+                // text stays above the geometry
+                remove(textShape);
+                add(textShape);
+            }
         }
     }
 
@@ -221,8 +257,14 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
 
     private void updateTextPosition() {
         if (textShape != null && centroid != null) {
-            textShape.setX(Math.round((float) (centroid.getX() + textOffset.getX())));
-            textShape.setY(Math.round((float) (centroid.getY() + textOffset.getY())));
+            double x = centroid.getX();
+            double y = centroid.getY();
+            if (transformRatio != 0) {
+                x = (x - originX) * transformRatio;
+                y = (originY - y) * transformRatio;
+            }
+            textShape.setX(Math.round((float) (x + textOffset.getX())) + shiftX);
+            textShape.setY(Math.round((float) (y + textOffset.getY())) + shiftY);
         }
     }
 
@@ -238,10 +280,92 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
         this.text = text;
     }
 
+    /**
+     * Sets transform of the feature from world to view coordinates.
+     *
+     * @param ratio   view world ratio, world coordinates are drawn as they are
+     *                when 0
+     * @param originX world x coordinate of the view origin
+     * @param originY world y coordinate of the view origin
+     */
+    public void setTransform(double ratio, double originX, double originY) {
+        if (transformRatio != ratio || this.originX != originX || this.originY != originY) {
+            transformRatio = ratio;
+            this.originX = originX;
+            this.originY = originY;
+
+            if (geometry != null) {
+                viewGeometry = Utils.transformWorldToView(geometry, transformRatio, originX, originY);
+                drawGeometry(geometry);
+                invalidateHitIndex();
+            }
+            updateTextPosition();
+        }
+    }
+
+    /**
+     * Gets bounds of the hit area in view coordinates without shift.
+     *
+     * @return min x, min y, max x and max y or null when there is no geometry
+     */
+    public double[] getHitBounds() {
+        double[] bounds = Utils.getBounds(viewGeometry);
+        if (bounds != null) {
+            double margin = getHitTolerance() + getPointShapeRadius();
+            bounds[0] -= margin;
+            bounds[1] -= margin;
+            bounds[2] += margin;
+            bounds[3] += margin;
+        }
+        return bounds;
+    }
+
+    /**
+     * Tests whether the feature is drawn at the position.
+     *
+     * @param x x view coordinate without shift
+     * @param y y view coordinate without shift
+     * @return true when the feature is hit
+     */
+    public boolean hitTest(double x, double y) {
+        return viewGeometry != null && Utils.hitTest(viewGeometry, x, y, getHitTolerance(), getPointShapeRadius());
+    }
+
+    private double getPointShapeRadius() {
+        return Utils.getPointShapeRadius(pointShape, pointShapeScale,
+                (style != null ? style : Style.DEFAULT).pointRadius);
+    }
+
+    private double getHitTolerance() {
+        return HIT_TOLERANCE + (style != null ? style.strokeWidth / 2.0 : 0);
+    }
+
     public Drawing getDrawing() {
         return drawing;
     }
 
+    // handlers are fired by the container, no DOM events are sunk
+
+    @Override
+    public HandlerRegistration addClickHandler(ClickHandler handler) {
+        return addHandler(handler, ClickEvent.getType());
+    }
+
+    @Override
+    public HandlerRegistration addDoubleClickHandler(DoubleClickHandler handler) {
+        return addHandler(handler, DoubleClickEvent.getType());
+    }
+
+    @Override
+    public HandlerRegistration addMouseOverHandler(MouseOverHandler handler) {
+        return addHandler(handler, MouseOverEvent.getType());
+    }
+
+    @Override
+    public HandlerRegistration addMouseOutHandler(MouseOutHandler handler) {
+        return addHandler(handler, MouseOutEvent.getType());
+    }
+
     /**
      * Returns type of Group class, constructor will create its implementation
      * as root element
@@ -267,6 +391,7 @@ public class VVectorFeature extends AbstractDrawingContainer implements CanShift
         shiftY = y;
 
         drawGeometry(geometry);
+        updateTextPosition();
     }
 
 }
@@ -1,22 +1,74 @@
 package org.vaadin.maps.client.ui;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.canvas.client.Canvas;
+import com.google.gwt.canvas.dom.client.Context2d;
+import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.EventTarget;
+import com.google.gwt.dom.client.NativeEvent;
+import com.google.gwt.event.dom.client.ClickEvent;
+import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.DomEvent;
+import com.google.gwt.event.dom.client.DoubleClickEvent;
+import com.google.gwt.event.dom.client.DoubleClickHandler;
+import com.google.gwt.event.dom.client.MouseMoveEvent;
+import com.google.gwt.event.dom.client.MouseMoveHandler;
+import com.google.gwt.event.dom.client.MouseOutEvent;
+import com.google.gwt.event.dom.client.MouseOutHandler;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Window;
 import com.google.gwt.user.client.ui.Widget;
 import org.vaadin.gwtgraphics.client.Drawing;
 import org.vaadin.gwtgraphics.client.DrawingArea;
 import org.vaadin.gwtgraphics.client.Group;
+import org.vaadin.gwtgraphics.client.impl.util.SVGUtil;
 import org.vaadin.gwtgraphics.client.shape.Path;
-
+import org.vaadin.maps.client.drawing.CanvasRenderer;
+import org.vaadin.maps.client.drawing.GridIndex;
+import org.vaadin.maps.client.drawing.Utils;
+import org.vaadin.maps.client.drawing.Utils.PointShape;
+import org.vaadin.maps.client.geometry.Geometry;
+import org.vaadin.maps.client.geometry.compact.CompactGeometryReader;
+import org.vaadin.maps.client.io.ParseException;
+import org.vaadin.maps.shared.ui.Style;
+import org.vaadin.maps.shared.ui.featurecontainer.FeatureRenderer;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * Drawing area of vector features. Features are kept in world coordinates
+ * and projected to the view by the view world transform of the container, so
+ * only the transform is sent on zoom. Bulk features are drawn into own group
+ * below feature widgets, shift of the view moves the whole group instead of
+ * redrawing bulk features.
+ * <p>
+ * Pointer events of feature widgets are delegated. The container listens to
+ * mouse events once, resolves the topmost feature under the pointer by a grid
+ * index of feature bounds in view coordinates and fires the events to the
+ * feature. The index is rebuilt on demand after features, their geometries,
+ * styles or the transform change.
+ * <p>
+ * The canvas renderer paints bulk features into a canvas placed below
+ * feature widgets, instead of creating an element per feature. Changed
+ * features repaint only the region of their bounds, coalesced to one repaint
+ * per animation frame. Shift of the view translates the painted canvas, which
+ * is repainted by {@link #repaint()} once the pan ends. Bulk features are
+ * hit-tested by own grid index with either renderer.
+ *
  * @author Kamil Morong
  */
 public class VVectorFeatureContainer extends DrawingArea implements CanShift {
 
     public static final String CLASSNAME = "v-vectorfeaturecontainer";
+    private final Group bulkContainer = new Group();
     private final Group container = new Group();
     private final Group hiddenContainer = new Group();
     private Element drawingElement = null;
@@ -27,6 +79,53 @@ public class VVectorFeatureContainer extends DrawingArea implements CanShift {
 
     private CanShift canShiftSlave = null;
 
+    private final LinkedHashMap<String, BulkFeature> bulkFeatures = new LinkedHashMap<>();
+    private final HashMap<Integer, Style> featureStyles = new HashMap<>();
+
+    private double transformRatio = 0.0;
+    private double originX = 0.0;
+    private double originY = 0.0;
+
+    private final GridIndex<VVectorFeature> hitIndex = new GridIndex<>();
+    /**
+     * drawing order of indexed features, later drawn are on top
+     */
+    private final HashMap<VVectorFeature, Integer> hitOrder = new HashMap<>();
+    private boolean hitIndexValid = false;
+    private VVectorFeature hoveredFeature = null;
+
+    /**
+     * distance from lines and points of bulk features, which still hits them
+     */
+    private static final double HIT_TOLERANCE = 2;
+
+    private static final Comparator<BulkFeature> DRAWING_ORDER = new Comparator<BulkFeature>() {
+        @Override
+        public int compare(BulkFeature feature1, BulkFeature feature2) {
+            return feature1.sequence - feature2.sequence;
+        }
+    };
+
+    private final GridIndex<BulkFeature> bulkIndex = new GridIndex<>();
+    private boolean bulkIndexValid = false;
+    private int bulkSequence = 0;
+
+    private FeatureRenderer renderer = FeatureRenderer.SVG;
+    private Canvas canvas = null;
+    private Element canvasHolder = null;
+    /**
+     * region to repaint in view coordinates without shift, null when the
+     * canvas is up to date
+     */
+    private double[] dirtyBounds = null;
+    private boolean fullRepaint = false;
+    private boolean repaintScheduled = false;
+    /**
+     * shift of the view the canvas was painted at
+     */
+    private int paintedShiftX = 0;
+    private int paintedShiftY = 0;
+
     public VVectorFeatureContainer() {
         super(1, 1);
 
@@ -34,10 +133,128 @@ public class VVectorFeatureContainer extends DrawingArea implements CanShift {
 
         addIETridentHack();
 
+        super.add(bulkContainer);
         super.add(container);
 
         hiddenContainer.setOpacity(0);
         super.add(hiddenContainer);
+
+        addFeatureEventHandlers();
+    }
+
+    private void addFeatureEventHandlers() {
+        addMouseMoveHandler(new MouseMoveHandler() {
+            @Override
+            public void onMouseMove(MouseMoveEvent event) {
+                setHoveredFeature(getFeatureAt(event.getRelativeX(getElement()), event.getRelativeY(getElement())),
+                        event.getNativeEvent());
+            }
+        });
+        addMouseOutHandler(new MouseOutHandler() {
+            @Override
+            public void onMouseOut(MouseOutEvent event) {
+                EventTarget target = event.getNativeEvent().getRelatedEventTarget();
+                if (null == target || !Element.is(target) || !getElement().isOrHasChild(Element.as(target))) {
+                    setHoveredFeature(null, event.getNativeEvent());
+                }
+            }
+        });
+        addClickHandler(new ClickHandler() {
+            @Override
+            public void onClick(ClickEvent event) {
+                fireFeatureEvent(event.getNativeEvent(), event.getRelativeX(getElement()),
+                        event.getRelativeY(getElement()));
+            }
+        });
+        addDoubleClickHandler(new DoubleClickHandler() {
+            @Override
+            public void onDoubleClick(DoubleClickEvent event) {
+                fireFeatureEvent(event.getNativeEvent(), event.getRelativeX(getElement()),
+                        event.getRelativeY(getElement()));
+            }
+        });
+    }
+
+    private void fireFeatureEvent(NativeEvent event, int x, int y) {
+        VVectorFeature feature = getFeatureAt(x, y);
+        if (feature != null) {
+            DomEvent.fireNativeEvent(event, feature);
+        }
+    }
+
+    private void setHoveredFeature(VVectorFeature feature, NativeEvent event) {
+        if (feature != hoveredFeature) {
+            Document document = Document.get();
+            if (hoveredFeature != null) {
+                hoveredFeature.setHovered(false);
+                DomEvent.fireNativeEvent(document.createMouseOutEvent(0, event.getScreenX(), event.getScreenY(),
+                        event.getClientX(), event.getClientY(), event.getCtrlKey(), event.getAltKey(),
+                        event.getShiftKey(), event.getMetaKey(), event.getButton(), null), hoveredFeature);
+            }
+            hoveredFeature = feature;
+            if (feature != null) {
+                feature.setHovered(true);
+                DomEvent.fireNativeEvent(document.createMouseOverEvent(0, event.getScreenX(), event.getScreenY(),
+                        event.getClientX(), event.getClientY(), event.getCtrlKey(), event.getAltKey(),
+                        event.getShiftKey(), event.getMetaKey(), event.getButton(), null), feature);
+            }
+        }
+    }
+
+    /**
+     * Gets the topmost feature widget drawn at the position.
+     *
+     * @param x x coordinate relative to the container
+     * @param y y coordinate relative to the container
+     * @return feature or null when there is no feature at the position
+     */
+    public VVectorFeature getFeatureAt(double x, double y) {
+        ensureHitIndex();
+
+        x -= shiftX;
+        y -= shiftY;
+        VVectorFeature result = null;
+        int resultOrder = -1;
+        for (VVectorFeature feature : hitIndex.query(x, y)) {
+            int order = hitOrder.get(feature);
+            if (order > resultOrder && feature.hitTest(x, y)) {
+                result = feature;
+                resultOrder = order;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Marks the hit index to be rebuilt, called by features when their hit
+     * area changes.
+     */
+    void invalidateHitIndex() {
+        hitIndexValid = false;
+    }
+
+    private void ensureHitIndex() {
+        if (!hitIndexValid) {
+            hitIndex.clear();
+            hitOrder.clear();
+            indexFeatures(container);
+            indexFeatures(hiddenContainer);
+            hitIndexValid = true;
+        }
+    }
+
+    private void indexFeatures(Group group) {
+        for (Iterator<Drawing> iterator = group.drawingIterator(); iterator.hasNext(); ) {
+            Drawing drawing = iterator.next();
+            if (drawing instanceof VVectorFeature) {
+                VVectorFeature feature = (VVectorFeature) drawing;
+                double[] bounds = feature.getHitBounds();
+                if (bounds != null) {
+                    hitOrder.put(feature, hitOrder.size());
+                    hitIndex.insert(feature, bounds[0], bounds[1], bounds[2], bounds[3]);
+                }
+            }
+        }
     }
 
     @Override
@@ -75,6 +292,7 @@ public class VVectorFeatureContainer extends DrawingArea implements CanShift {
         if (child != null) {
             if (child instanceof VVectorFeature) {
                 VVectorFeature feature = (VVectorFeature) child;
+                feature.setTransform(transformRatio, originX, originY);
                 feature.setShift(shiftX, shiftY);
 
                 if (feature.isHidden()) {
@@ -82,6 +300,7 @@ public class VVectorFeatureContainer extends DrawingArea implements CanShift {
                 } else {
                     container.add(feature);
                 }
+                invalidateHitIndex();
             } else if (child instanceof Drawing) {
                 container.add(child);
             }
@@ -102,6 +321,11 @@ public class VVectorFeatureContainer extends DrawingArea implements CanShift {
         if (child != null) {
             if (child instanceof VVectorFeature) {
                 Widget parent = child.getParent();
+                invalidateHitIndex();
+                if (child == hoveredFeature) {
+                    hoveredFeature.setHovered(false);
+                    hoveredFeature = null;
+                }
 
                 if (parent == container) {
                     return container.remove(child);
@@ -149,6 +373,12 @@ public class VVectorFeatureContainer extends DrawingArea implements CanShift {
         shiftY = y;
 
         setChildrenShift();
+        bulkContainer.getElement().setAttribute("transform", "translate(" + shiftX + "," + shiftY + ")");
+        if (canvas != null) {
+            // painted canvas follows the pan without repainting
+            canvasHolder.setAttribute("transform",
+                    "translate(" + (shiftX - paintedShiftX) + "," + (shiftY - paintedShiftY) + ")");
+        }
         if (canShiftSlave != null) {
             canShiftSlave.setShift(x, y);
         }
@@ -171,6 +401,23 @@ public class VVectorFeatureContainer extends DrawingArea implements CanShift {
         }
     }
 
+    private void setChildrenTransform() {
+        Iterator<Drawing> iterator;
+        for (iterator = container.drawingIterator(); iterator.hasNext(); ) {
+            Drawing drawing = iterator.next();
+            if (drawing instanceof VVectorFeature) {
+                ((VVectorFeature) drawing).setTransform(transformRatio, originX, originY);
+            }
+        }
+
+        for (iterator = hiddenContainer.drawingIterator(); iterator.hasNext(); ) {
+            Drawing drawing = iterator.next();
+            if (drawing instanceof VVectorFeature) {
+                ((VVectorFeature) drawing).setTransform(transformRatio, originX, originY);
+            }
+        }
+    }
+
     public CanShift getCanShiftSlave() {
         return canShiftSlave;
     }
@@ -178,4 +425,417 @@ public class VVectorFeatureContainer extends DrawingArea implements CanShift {
     public void setCanShiftSlave(CanShift canShiftSlave) {
         this.canShiftSlave = canShiftSlave;
     }
-}
\ No newline at end of file
+
+    /**
+     * Adds bulk features, or replaces features of the same identifiers. A
+     * replaced feature keeps its place in the drawing order, e.g. when it is
+     * resent simplified for another scale.
+     *
+     * @param ids        feature identifiers
+     * @param geometries geometries in world coordinates, compact encoded
+     * @param styleIds   feature style identifiers
+     */
+    public void addFeatures(String[] ids, String[] geometries, int[] styleIds) {
+        CompactGeometryReader reader = new CompactGeometryReader();
+        HashMap<Drawing, Integer> drawingIndexes = null;
+        for (int i = 0; i < ids.length; ++i) {
+            try {
+                BulkFeature existing = bulkFeatures.get(ids[i]);
+                BulkFeature feature = new BulkFeature(ids[i], reader.read(geometries[i]), styleIds[i],
+                        existing != null ? existing.sequence : bulkSequence++);
+                // the replaced entry keeps its order
+                bulkFeatures.put(ids[i], feature);
+                updateFeatureView(feature);
+
+                if (existing != null && existing.drawing != null) {
+                    if (null == drawingIndexes) {
+                        drawingIndexes = getDrawingIndexes();
+                    }
+                    // insert before the replaced drawing, which then moves out of the way
+                    Integer index = drawingIndexes.remove(existing.drawing);
+                    drawFeature(feature, index);
+                    bulkContainer.remove(existing.drawing);
+                    if (feature.drawing != null) {
+                        drawingIndexes.put(feature.drawing, index);
+                    } else {
+                        // following drawings moved
+                        drawingIndexes = null;
+                    }
+                } else {
+                    if (existing != null && canvas != null) {
+                        invalidateRegion(existing.bounds);
+                    }
+                    drawFeature(feature, null);
+                }
+            } catch (ParseException e) {
+                e.printStackTrace();
+            }
+        }
+        bulkIndexValid = false;
+    }
+
+    /**
+     * Removes bulk features.
+     *
+     * @param ids feature identifiers
+     */
+    public void removeFeatures(String[] ids) {
+        for (String id : ids) {
+            removeFeature(id);
+        }
+        bulkIndexValid = false;
+    }
+
+    private void removeFeature(String id) {
+        BulkFeature feature = bulkFeatures.remove(id);
+        if (feature != null) {
+            if (feature.drawing != null) {
+                bulkContainer.remove(feature.drawing);
+            }
+            if (canvas != null) {
+                invalidateRegion(feature.bounds);
+            }
+        }
+    }
+
+    /**
+     * Removes all bulk features.
+     */
+    public void clearFeatures() {
+        bulkFeatures.clear();
+        bulkContainer.clear();
+        bulkIndexValid = false;
+        if (canvas != null) {
+            invalidateCanvas();
+        }
+    }
+
+    /**
+     * Sets styles of bulk features, features of style identifier without style
+     * are drawn by the default style.
+     *
+     * @param styles styles by style identifier
+     */
+    public void setFeatureStyles(Map<Integer, Style> styles) {
+        featureStyles.clear();
+        featureStyles.putAll(styles);
+        redrawFeatures();
+    }
+
+    /**
+     * Sets transform of features from world to view coordinates.
+     *
+     * @param ratio   view world ratio, world coordinates are drawn as they are
+     *                when 0
+     * @param originX world x coordinate of the view origin
+     * @param originY world y coordinate of the view origin
+     */
+    public void setTransform(double ratio, double originX, double originY) {
+        if (transformRatio != ratio || this.originX != originX || this.originY != originY) {
+            transformRatio = ratio;
+            this.originX = originX;
+            this.originY = originY;
+            redrawFeatures();
+            setChildrenTransform();
+        }
+    }
+
+    public FeatureRenderer getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * Sets the renderer of bulk features. The canvas renderer falls back to
+     * SVG, when canvas is not supported.
+     *
+     * @param renderer the renderer
+     */
+    public void setRenderer(FeatureRenderer renderer) {
+        this.renderer = renderer;
+
+        boolean useCanvas = FeatureRenderer.CANVAS == renderer && "SVG".equals(getRendererString());
+        if (useCanvas && null == canvas) {
+            canvas = Canvas.createIfSupported();
+            if (canvas != null) {
+                // canvas within the SVG element receives the same events
+                canvasHolder = SVGUtil.createSVGElementNS("foreignObject");
+                canvasHolder.setAttribute("width", "100%");
+                canvasHolder.setAttribute("height", "100%");
+                canvasHolder.appendChild(canvas.getElement());
+                getElement().insertBefore(canvasHolder, bulkContainer.getElement());
+                redrawFeatures();
+            }
+        } else if (!useCanvas && canvas != null) {
+            canvasHolder.removeFromParent();
+            canvasHolder = null;
+            canvas = null;
+            paintedShiftX = paintedShiftY = 0;
+            redrawFeatures();
+        }
+    }
+
+    private void redrawFeatures() {
+        bulkContainer.clear();
+        for (BulkFeature feature : bulkFeatures.values()) {
+            updateFeatureView(feature);
+            drawFeature(feature, null);
+        }
+        bulkIndexValid = false;
+        if (canvas != null) {
+            invalidateCanvas();
+        }
+    }
+
+    private Style getFeatureStyle(BulkFeature feature) {
+        Style style = featureStyles.get(feature.styleId);
+        return style != null ? style : Style.DEFAULT;
+    }
+
+    private static PointShape getPointShape(Style style) {
+        PointShape pointShape = Utils.pointShapeFromString(style.pointShape);
+        return pointShape != null ? pointShape : PointShape.Circle;
+    }
+
+    private static double getHitTolerance(Style style) {
+        return HIT_TOLERANCE + style.strokeWidth / 2.0;
+    }
+
+    private static double getPointShapeRadius(Style style) {
+        return Utils.getPointShapeRadius(getPointShape(style), style.pointShapeScale, style.pointRadius);
+    }
+
+    /**
+     * Projects the feature geometry to the view and updates its bounds,
+     * which enclose the feature drawing and hit area.
+     */
+    private void updateFeatureView(BulkFeature feature) {
+        feature.viewGeometry = Utils.transformWorldToView(feature.geometry, transformRatio, originX, originY);
+        feature.bounds = Utils.getBounds(feature.viewGeometry);
+        if (feature.bounds != null) {
+            Style style = getFeatureStyle(feature);
+            double margin = getHitTolerance(style) + getPointShapeRadius(style);
+            feature.bounds[0] -= margin;
+            feature.bounds[1] -= margin;
+            feature.bounds[2] += margin;
+            feature.bounds[3] += margin;
+        }
+    }
+
+    /**
+     * Gets positions of bulk feature drawings in their container.
+     */
+    private HashMap<Drawing, Integer> getDrawingIndexes() {
+        HashMap<Drawing, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < bulkContainer.getCount(); ++i) {
+            indexes.put(bulkContainer.getDrawing(i), i);
+        }
+        return indexes;
+    }
+
+    /**
+     * Draws the feature.
+     *
+     * @param feature the feature
+     * @param index   position of the drawing in the container, appended when
+     *                null
+     */
+    private void drawFeature(BulkFeature feature, Integer index) {
+        if (canvas != null) {
+            feature.drawing = null;
+            invalidateRegion(feature.bounds);
+            return;
+        }
+
+        Style style = getFeatureStyle(feature);
+        Drawing drawing = Utils.drawGeometry(feature.viewGeometry, getPointShape(style), style.pointShapeScale, 0, 0);
+        if (drawing != null) {
+            Utils.updateDrawingStyle(drawing, style);
+            if (index != null) {
+                bulkContainer.insert(drawing, index);
+            } else {
+                bulkContainer.add(drawing);
+            }
+        }
+        feature.drawing = drawing;
+    }
+
+    /**
+     * Gets the topmost bulk feature drawn at the position.
+     *
+     * @param x x coordinate relative to the container
+     * @param y y coordinate relative to the container
+     * @return feature identifier or null when there is no bulk feature at the
+     * position
+     */
+    public String getBulkFeatureAt(double x, double y) {
+        ensureBulkIndex();
+
+        x -= shiftX;
+        y -= shiftY;
+        BulkFeature result = null;
+        for (BulkFeature feature : bulkIndex.query(x, y)) {
+            if (null == result || feature.sequence > result.sequence) {
+                Style style = getFeatureStyle(feature);
+                if (Utils.hitTest(feature.viewGeometry, x, y, getHitTolerance(style), getPointShapeRadius(style))) {
+                    result = feature;
+                }
+            }
+        }
+        return result != null ? result.id : null;
+    }
+
+    private void ensureBulkIndex() {
+        if (!bulkIndexValid) {
+            bulkIndex.clear();
+            for (BulkFeature feature : bulkFeatures.values()) {
+                if (feature.bounds != null) {
+                    bulkIndex.insert(feature, feature.bounds[0], feature.bounds[1], feature.bounds[2],
+                            feature.bounds[3]);
+                }
+            }
+            bulkIndexValid = true;
+        }
+    }
+
+    private void invalidateRegion(double[] bounds) {
+        if (bounds != null) {
+            if (null == dirtyBounds) {
+                dirtyBounds = bounds.clone();
+            } else {
+                dirtyBounds[0] = Math.min(dirtyBounds[0], bounds[0]);
+                dirtyBounds[1] = Math.min(dirtyBounds[1], bounds[1]);
+                dirtyBounds[2] = Math.max(dirtyBounds[2], bounds[2]);
+                dirtyBounds[3] = Math.max(dirtyBounds[3], bounds[3]);
+            }
+            scheduleRepaint();
+        }
+    }
+
+    /**
+     * Repaints the canvas of bulk features, e.g. after the size of the
+     * container changed.
+     */
+    public void repaint() {
+        if (canvas != null) {
+            invalidateCanvas();
+        }
+    }
+
+    @Override
+    protected void onLoad() {
+        super.onLoad();
+        repaint();
+    }
+
+    private void invalidateCanvas() {
+        fullRepaint = true;
+        scheduleRepaint();
+    }
+
+    private void scheduleRepaint() {
+        if (!repaintScheduled) {
+            repaintScheduled = true;
+            AnimationScheduler.get().requestAnimationFrame(new AnimationCallback() {
+                @Override
+                public void execute(double timestamp) {
+                    repaintScheduled = false;
+                    repaintCanvas();
+                }
+            });
+        }
+    }
+
+    private void repaintCanvas() {
+        if (null == canvas) {
+            return;
+        }
+
+        // client size of SVG elements is not reported by all browsers
+        Element parent = getElement().getParentElement();
+        if (null == parent) {
+            return;
+        }
+        int width = parent.getClientWidth();
+        int height = parent.getClientHeight();
+        if (canvas.getCoordinateSpaceWidth() != width || canvas.getCoordinateSpaceHeight() != height) {
+            // resizing clears the canvas
+            canvas.setCoordinateSpaceWidth(width);
+            canvas.setCoordinateSpaceHeight(height);
+            canvas.setPixelSize(width, height);
+            canvasHolder.setAttribute("width", String.valueOf(width));
+            canvasHolder.setAttribute("height", String.valueOf(height));
+            fullRepaint = true;
+        }
+        if (shiftX != paintedShiftX || shiftY != paintedShiftY) {
+            fullRepaint = true;
+        }
+
+        // visible region in view coordinates without shift
+        double left = -shiftX;
+        double top = -shiftY;
+        double right = width - shiftX;
+        double bottom = height - shiftY;
+        if (!fullRepaint) {
+            if (null == dirtyBounds) {
+                return;
+            }
+            left = Math.max(left, Math.floor(dirtyBounds[0]));
+            top = Math.max(top, Math.floor(dirtyBounds[1]));
+            right = Math.min(right, Math.ceil(dirtyBounds[2]));
+            bottom = Math.min(bottom, Math.ceil(dirtyBounds[3]));
+        }
+        if (fullRepaint) {
+            paintedShiftX = shiftX;
+            paintedShiftY = shiftY;
+            canvasHolder.removeAttribute("transform");
+        }
+        fullRepaint = false;
+        dirtyBounds = null;
+        if (left >= right || top >= bottom) {
+            return;
+        }
+
+        Context2d context = canvas.getContext2d();
+        context.save();
+        context.beginPath();
+        context.rect(left + shiftX, top + shiftY, right - left, bottom - top);
+        context.clip();
+        context.clearRect(left + shiftX, top + shiftY, right - left, bottom - top);
+
+        ensureBulkIndex();
+        List<BulkFeature> features = bulkIndex.query(left, top, right, bottom);
+        Collections.sort(features, DRAWING_ORDER);
+        for (BulkFeature feature : features) {
+            double[] bounds = feature.bounds;
+            if (bounds[0] <= right && bounds[2] >= left && bounds[1] <= bottom && bounds[3] >= top) {
+                Style style = getFeatureStyle(feature);
+                CanvasRenderer.drawGeometry(context, feature.viewGeometry, style, getPointShape(style),
+                        style.pointShapeScale, shiftX, shiftY);
+            }
+        }
+        context.restore();
+    }
+
+    private static class BulkFeature {
+
+        private final String id;
+        private final Geometry geometry;
+        private final int styleId;
+        /**
+         * order of drawing, later added features are drawn above
+         */
+        private final int sequence;
+        private Geometry viewGeometry = null;
+        private double[] bounds = null;
+        private Drawing drawing = null;
+
+        private BulkFeature(String id, Geometry geometry, int styleId, int sequence) {
+            this.id = id;
+            this.geometry = geometry;
+            this.styleId = styleId;
+            this.sequence = sequence;
+        }
+
+    }
+
+}
@@ -1,8 +1,16 @@
 package org.vaadin.maps.client.ui;
 
+import com.google.gwt.event.shared.EventHandler;
+import com.google.gwt.event.shared.GwtEvent;
+import com.google.gwt.event.shared.HandlerRegistration;
 import com.google.gwt.user.client.ui.Widget;
 
+import java.util.HashMap;
+
 /**
+ * Layer of vector features. After each pan and zoom bulk features of the new
+ * view extent are requested from the server.
+ *
  * @author Kamil Morong
  */
 public class VVectorFeatureLayer extends InteractiveLayer {
@@ -12,6 +20,8 @@ public class VVectorFeatureLayer extends InteractiveLayer {
      */
     public static final String CLASSNAME = "v-vectorfeaturelayer";
 
+    private final HashMap<RequestFeaturesHandler, HandlerRegistration> requestFeaturesHandlerMap = new HashMap<>();
+
     public VVectorFeatureLayer() {
         super();
         setStylePrimaryName(CLASSNAME);
@@ -22,6 +32,30 @@ public class VVectorFeatureLayer extends InteractiveLayer {
         super.setFixed(fixed);
     }
 
+    @Override
+    public void onSizeChange(int oldWidth, int oldHeight, int newWidth, int newHeight) {
+        super.onSizeChange(oldWidth, oldHeight, newWidth, newHeight);
+
+        Widget content = getWidget();
+        if (content instanceof VVectorFeatureContainer) {
+            ((VVectorFeatureContainer) content).repaint();
+        }
+    }
+
+    @Override
+    public void onPanEnd(int totalX, int totalY) {
+        super.onPanEnd(totalX, totalY);
+
+        if (!fixed) {
+            Widget content = getWidget();
+            if (content instanceof VVectorFeatureContainer) {
+                ((VVectorFeatureContainer) content).repaint();
+            }
+
+            fireEvent(new RequestFeaturesEvent(this));
+        }
+    }
+
     @Override
     public void onZoom(double zoom) {
         super.onZoom(zoom);
@@ -33,7 +67,44 @@ public class VVectorFeatureLayer extends InteractiveLayer {
             if (content instanceof CanShift) {
                 ((CanShift) content).setShift(0, 0);
             }
+
+            fireEvent(new RequestFeaturesEvent(this));
         }
     }
 
+    public void addRequestFeaturesHandler(RequestFeaturesHandler handler) {
+        requestFeaturesHandlerMap.put(handler, addHandler(handler, RequestFeaturesEvent.TYPE));
+    }
+
+    public void removeRequestFeaturesHandler(RequestFeaturesHandler handler) {
+        if (requestFeaturesHandlerMap.containsKey(handler)) {
+            removeHandler(requestFeaturesHandlerMap.get(handler));
+            requestFeaturesHandlerMap.remove(handler);
+        }
+    }
+
+    public interface RequestFeaturesHandler extends EventHandler {
+        void requestFeatures(RequestFeaturesEvent event);
+    }
+
+    public static class RequestFeaturesEvent extends GwtEvent<RequestFeaturesHandler> {
+
+        public static final Type<RequestFeaturesHandler> TYPE = new Type<>();
+
+        public RequestFeaturesEvent(VVectorFeatureLayer source) {
+            setSource(source);
+        }
+
+        @Override
+        public Type<RequestFeaturesHandler> getAssociatedType() {
+            return TYPE;
+        }
+
+        @Override
+        protected void dispatch(RequestFeaturesHandler handler) {
+            handler.requestFeatures(this);
+        }
+
+    }
+
 }
@@ -1,8 +1,12 @@
 package org.vaadin.maps.client.ui;
 
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style;
+import com.google.gwt.dom.client.Style.Unit;
 import com.google.gwt.event.shared.EventHandler;
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.Widget;
 import org.vaadin.maps.client.ui.VGridLayout.GridWrapper;
 
@@ -11,18 +15,36 @@ import java.util.HashMap;
 /**
  * @author Kamil Morong
  */
-public class VWMSLayer extends InteractiveLayer {
+public class VWMSLayer extends VTiledLayer {
 
     /**
      * Class name, prefix in styling
      */
     public static final String CLASSNAME = "v-wmslayer";
 
+    /**
+     * Duration of crossfade from previous to new single tile in milliseconds
+     */
+    public static final int FADE_DURATION = 250;
+
     private final HashMap<RequestSingleTileHandler, HandlerRegistration> requestSingleTileHandlerMap = new HashMap<>();
 
     protected boolean base = true;
     protected boolean singleTile = true;
 
+    /**
+     * copy of previous single tile image shown until the new one is loaded
+     */
+    private Element backBuffer = null;
+    private boolean fading = false;
+
+    private final Timer fadeTimer = new Timer() {
+        @Override
+        public void run() {
+            removeBackBuffer();
+        }
+    };
+
     public VWMSLayer() {
         super();
         setStylePrimaryName(CLASSNAME);
@@ -36,12 +58,18 @@ public class VWMSLayer extends InteractiveLayer {
         this.base = base;
     }
 
+    @Override
     public boolean isSingleTile() {
         return singleTile;
     }
 
     public void setSingleTile(boolean singleTile) {
-        this.singleTile = singleTile;
+        if (this.singleTile != singleTile) {
+            this.singleTile = singleTile;
+            removeBackBuffer();
+            // server places tiles of the new mode relative to current view
+            resetShift();
+        }
     }
 
     @Override
@@ -52,29 +80,11 @@ public class VWMSLayer extends InteractiveLayer {
             gridLayout.setMeasuredSize(newWidth, newHeight);
 
             if (singleTile) {
-                // center tile
                 Widget tileWidget = gridLayout.getWidget(0);
-                GridWrapper wrapper = gridLayout.getChildWrapper(tileWidget);
-                if (tileWidget instanceof Tile) {
-                    Tile tile = (Tile) tileWidget;
-                    int dx = wrapper.getLeft();
-                    int dy = wrapper.getTop();
-                    if (dx == 0) {
-                        dx = (newWidth - tile.getWidth()) / 2;
-                    }
-                    if (dy == 0) {
-                        dy = (newHeight - tile.getHeight()) / 2;
-                    }
-                    gridLayout.setWidgetPosition(tileWidget, dx, dy);
-
-                    int shiftX = gridLayout.getShiftX();
-                    int shiftY = gridLayout.getShiftY();
-                    // check if there is uncovered place of visible area
-                    if (Math.abs(shiftX) > Math.abs(dx) || Math.abs(shiftY) > Math.abs(dy)) {
-                        // new tile needed
-                        clearShift();
-                        fireEvent(new RequestSingleTileEvent(this, newWidth, newHeight, shiftX, shiftY));
-                    }
+                if (tileWidget instanceof Tile && !isCovered(gridLayout, tileWidget)) {
+                    // new tile needed
+                    foldShift(gridLayout, tileWidget);
+                    fireEvent(new RequestSingleTileEvent(this, newWidth, newHeight, 0, 0));
                 }
             }
         }
@@ -91,21 +101,13 @@ public class VWMSLayer extends InteractiveLayer {
 
                 if (singleTile) {
                     Widget tileWidget = gridLayout.getWidget(0);
-                    if (tileWidget instanceof Tile) {
-                        Tile tile = (Tile) tileWidget;
-                        GridWrapper wrapper = gridLayout.getChildWrapper(tileWidget);
-                        if (wrapper != null) {
-                            int dx = wrapper.getLeft();
-                            int dy = wrapper.getTop();
-                            int shiftX = gridLayout.getShiftX();
-                            int shiftY = gridLayout.getShiftY();
-                            if (Math.abs(shiftX) > Math.abs(dx) || Math.abs(shiftY) > Math.abs(dy)) {
-                                // new tile needed
-                                clearShift();
-                                fireEvent(new RequestSingleTileEvent(this, tile.getWidth(), tile.getHeight(), shiftX,
-                                        shiftY));
-                            }
-                        }
+                    if (tileWidget instanceof Tile && !isCovered(gridLayout, tileWidget)) {
+                        // new tile needed
+                        int shiftX = gridLayout.getShiftX();
+                        int shiftY = gridLayout.getShiftY();
+                        foldShift(gridLayout, tileWidget);
+                        fireEvent(new RequestSingleTileEvent(this, getTileWidth(tileWidget),
+                                getTileHeight(tileWidget), shiftX, shiftY));
                     }
                 }
             }
@@ -118,12 +120,143 @@ public class VWMSLayer extends InteractiveLayer {
 
         if (!fixed) {
             if (singleTile) {
+                Widget child = getWidget();
+                if (child instanceof VGridLayout) {
+                    VGridLayout gridLayout = (VGridLayout) child;
+                    Widget tileWidget = gridLayout.getWidget(0);
+                    if (tileWidget instanceof Tile) {
+                        // show current image scaled until the server decides
+                        // whether it is still valid
+                        foldShift(gridLayout, tileWidget);
+                        scaleTile(gridLayout, tileWidget, zoom);
+                    }
+                }
                 clearShift();
                 fireEvent(new RequestSingleTileEvent(this, 0, 0, 0, 0));
             }
         }
     }
 
+    @Override
+    public void onTileRemove(Widget tile) {
+        if (singleTile && tile.isVisible() && tile.getElement().getParentElement() != null) {
+            // keep the image in place until its replacement is loaded
+            removeBackBuffer();
+            backBuffer = Element.as(tile.getElement().cloneNode(true));
+            Style style = backBuffer.getStyle();
+            style.setProperty("pointerEvents", "none");
+            style.setProperty("transition", "opacity " + FADE_DURATION + "ms");
+            tile.getElement().getParentElement().appendChild(backBuffer);
+        }
+    }
+
+    @Override
+    public void onTileLoad(Tile tile) {
+        if (backBuffer != null && !fading) {
+            // previous image lies above the new one, fade it out
+            fading = true;
+            backBuffer.getStyle().setOpacity(0);
+            fadeTimer.schedule(FADE_DURATION);
+        }
+    }
+
+    private void removeBackBuffer() {
+        fadeTimer.cancel();
+        fading = false;
+        if (backBuffer != null) {
+            backBuffer.removeFromParent();
+            backBuffer = null;
+        }
+    }
+
+    /**
+     * Returns true when the single tile covers the whole visible area.
+     */
+    private boolean isCovered(VGridLayout gridLayout, Widget tileWidget) {
+        GridWrapper wrapper = gridLayout.getChildWrapper(tileWidget);
+        if (wrapper == null) {
+            return true;
+        }
+        int left = wrapper.getLeft() + gridLayout.getShiftX();
+        int top = wrapper.getTop() + gridLayout.getShiftY();
+        return left <= 0 && top <= 0 && left + getTileWidth(tileWidget) >= gridLayout.getMeasuredWidth()
+                && top + getTileHeight(tileWidget) >= gridLayout.getMeasuredHeight();
+    }
+
+    /**
+     * Moves the shift of the grid into the tile position, so the tile is
+     * positioned relative to the view, as the server places new tiles.
+     */
+    private void foldShift(VGridLayout gridLayout, Widget tileWidget) {
+        GridWrapper wrapper = gridLayout.getChildWrapper(tileWidget);
+        if (wrapper != null) {
+            gridLayout.setWidgetPosition(tileWidget, wrapper.getLeft() + gridLayout.getShiftX(),
+                    wrapper.getTop() + gridLayout.getShiftY());
+        }
+        if (backBuffer != null) {
+            Style style = backBuffer.getStyle();
+            style.setLeft(parsePixels(style.getLeft()) + gridLayout.getShiftX(), Unit.PX);
+            style.setTop(parsePixels(style.getTop()) + gridLayout.getShiftY(), Unit.PX);
+        }
+        gridLayout.setShift(0, 0);
+        clearShift();
+    }
+
+    /**
+     * Scales the tile around the view center, as the world was scaled.
+     */
+    private void scaleTile(VGridLayout gridLayout, Widget tileWidget, double zoom) {
+        if (zoom <= 0) {
+            return;
+        }
+
+        double centerX = gridLayout.getMeasuredWidth() / 2.0;
+        double centerY = gridLayout.getMeasuredHeight() / 2.0;
+
+        GridWrapper wrapper = gridLayout.getChildWrapper(tileWidget);
+        if (wrapper != null) {
+            gridLayout.setWidgetPosition(tileWidget, scale(wrapper.getLeft(), centerX, zoom),
+                    scale(wrapper.getTop(), centerY, zoom));
+            tileWidget.setPixelSize(scale(getTileWidth(tileWidget), 0, zoom),
+                    scale(getTileHeight(tileWidget), 0, zoom));
+        }
+
+        if (backBuffer != null) {
+            Style style = backBuffer.getStyle();
+            style.setLeft(scale(parsePixels(style.getLeft()), centerX, zoom), Unit.PX);
+            style.setTop(scale(parsePixels(style.getTop()), centerY, zoom), Unit.PX);
+            style.setWidth(scale(parsePixels(style.getWidth()), 0, zoom), Unit.PX);
+            style.setHeight(scale(parsePixels(style.getHeight()), 0, zoom), Unit.PX);
+        }
+    }
+
+    private static int scale(int value, double center, double zoom) {
+        return (int) Math.round(center + (value - center) / zoom);
+    }
+
+    /**
+     * Gets tile size set by the server, image tiles have no offset size
+     * until loaded.
+     */
+    private static int getTileWidth(Widget tileWidget) {
+        return parsePixels(tileWidget.getElement().getStyle().getWidth());
+    }
+
+    private static int getTileHeight(Widget tileWidget) {
+        return parsePixels(tileWidget.getElement().getStyle().getHeight());
+    }
+
+    private static int parsePixels(String size) {
+        if (size != null && size.endsWith("px")) {
+            try {
+                return (int) Math.round(Double.parseDouble(size.substring(0, size.length() - 2)));
+            } catch (NumberFormatException e) {
+                // not a pixel size
+            }
+        }
+        return 0;
+    }
+
     public void addRequestSingleTileHandler(RequestSingleTileHandler handler) {
         requestSingleTileHandlerMap.put(handler, addHandler(handler, RequestSingleTileEvent.TYPE));
     }
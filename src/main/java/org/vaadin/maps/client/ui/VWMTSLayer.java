@@ -0,0 +1,18 @@
+package org.vaadin.maps.client.ui;
+
+/**
+ * @author Kamil Morong
+ */
+public class VWMTSLayer extends VTiledLayer {
+
+    /**
+     * Class name, prefix in styling
+     */
+    public static final String CLASSNAME = "v-wmtslayer";
+
+    public VWMTSLayer() {
+        super();
+        setStylePrimaryName(CLASSNAME);
+    }
+
+}
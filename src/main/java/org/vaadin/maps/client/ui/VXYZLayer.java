@@ -0,0 +1,18 @@
+package org.vaadin.maps.client.ui;
+
+/**
+ * @author Kamil Morong
+ */
+public class VXYZLayer extends VTiledLayer {
+
+    /**
+     * Class name, prefix in styling
+     */
+    public static final String CLASSNAME = "v-xyzlayer";
+
+    public VXYZLayer() {
+        super();
+        setStylePrimaryName(CLASSNAME);
+    }
+
+}
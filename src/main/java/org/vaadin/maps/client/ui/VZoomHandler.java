@@ -5,19 +5,36 @@ import com.google.gwt.event.dom.client.MouseWheelHandler;
 import com.google.gwt.event.shared.EventHandler;
 import com.google.gwt.event.shared.GwtEvent;
 import com.google.gwt.event.shared.HandlerRegistration;
+import com.google.gwt.user.client.Timer;
 
 import java.util.HashMap;
 
 /**
+ * Zooms the layout by mouse wheel. Wheel steps of one gesture are accumulated
+ * and previewed by scaling the layers, the zoom is committed once the wheel
+ * stays still for the settle delay.
+ *
  * @author Kamil Morong
  */
 public class VZoomHandler extends AbstractNavigateHandler implements HasLayerLayout, MouseWheelHandler {
 
     public static final String CLASSNAME = "v-zoomhandler";
+    public static final int DEFAULT_SETTLE_DELAY = 250;
+
     private final HashMap<ZoomEventHandler, HandlerRegistration> zoomHandlerMap = new HashMap<>();
     protected VLayerLayout layout = null;
     protected HandlerRegistration mouseWheelHandler = null;
 
+    private double accumulatedZoom = 1.0;
+    private int settleDelay = DEFAULT_SETTLE_DELAY;
+
+    private final Timer settleTimer = new Timer() {
+        @Override
+        public void run() {
+            commitZoom();
+        }
+    };
+
     public VZoomHandler() {
         super();
         setStyleName(CLASSNAME);
@@ -49,12 +66,36 @@ public class VZoomHandler extends AbstractNavigateHandler implements HasLayerLay
         }
 
         if (zoom != 1 && layout != null) {
-            layout.onZoom(zoom);
+            accumulatedZoom *= zoom;
+            layout.onZoomStep(accumulatedZoom);
+            settleTimer.schedule(settleDelay);
         }
 
         event.preventDefault();
     }
 
+    public int getSettleDelay() {
+        return settleDelay;
+    }
+
+    public void setSettleDelay(int settleDelay) {
+        this.settleDelay = Math.max(0, settleDelay);
+    }
+
+    /**
+     * Applies zoom accumulated during the wheel gesture.
+     */
+    protected void commitZoom() {
+        settleTimer.cancel();
+
+        double zoom = accumulatedZoom;
+        accumulatedZoom = 1.0;
+        if (zoom != 1 && layout != null) {
+            layout.onZoom(zoom);
+            fireEvent(new ZoomEvent(this, zoom));
+        }
+    }
+
     @Override
     protected void initialize() {
         if (layout != null) {
@@ -64,6 +105,9 @@ public class VZoomHandler extends AbstractNavigateHandler implements HasLayerLay
 
     @Override
     protected void finalize() {
+        // finish pending gesture on the layout it started on
+        commitZoom();
+
         if (layout != null && mouseWheelHandler != null) {
             mouseWheelHandler.removeHandler();
             mouseWheelHandler = null;
@@ -5,6 +5,14 @@ package org.vaadin.maps.client.ui;
  */
 public interface ZoomHandler {
 
+    /**
+     * Previews zoom of a gesture in progress, the zoom is accumulated since
+     * the gesture start.
+     *
+     * @param zoom accumulated zoom
+     */
+    void onZoomStep(double zoom);
+
     void onZoom(double zoom);
 
 }
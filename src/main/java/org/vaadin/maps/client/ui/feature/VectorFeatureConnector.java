@@ -7,7 +7,7 @@ import com.vaadin.client.ui.AbstractComponentConnector;
 import com.vaadin.shared.MouseEventDetails;
 import com.vaadin.shared.ui.Connect;
 import org.vaadin.maps.client.DateUtility;
-import org.vaadin.maps.client.drawing.Utils;
+import org.vaadin.maps.client.geometry.compact.CompactGeometryReader;
 import org.vaadin.maps.client.io.ParseException;
 import org.vaadin.maps.client.ui.MapUtility;
 import org.vaadin.maps.client.ui.VVectorFeature;
@@ -81,9 +81,9 @@ public class VectorFeatureConnector extends AbstractComponentConnector {
         if (stateChangeEvent.hasPropertyChanged("hidden")) {
             getWidget().setHidden(getState().hidden);
         }
-        if (stateChangeEvent.hasPropertyChanged("wkb")) {
+        if (stateChangeEvent.hasPropertyChanged("geometry")) {
             try {
-                getWidget().setGeometry(Utils.hexWKBToGeometry(getState().wkb));
+                getWidget().setGeometry(new CompactGeometryReader().read(getState().geometry));
             } catch (ParseException e) {
                 e.printStackTrace();
             }
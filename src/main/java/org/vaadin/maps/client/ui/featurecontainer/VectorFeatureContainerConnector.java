@@ -4,13 +4,21 @@ import com.google.gwt.event.dom.client.*;
 import com.vaadin.client.ComponentConnector;
 import com.vaadin.client.ConnectorHierarchyChangeEvent;
 import com.vaadin.client.MouseEventDetailsBuilder;
+import com.vaadin.client.communication.StateChangeEvent;
 import com.vaadin.shared.MouseEventDetails;
 import com.vaadin.shared.ui.Connect;
 import org.vaadin.maps.client.DateUtility;
+import org.vaadin.maps.client.ui.MapUtility;
 import org.vaadin.maps.client.ui.VVectorFeatureContainer;
+import org.vaadin.maps.shared.ui.Style;
+import org.vaadin.maps.shared.ui.featurecontainer.VectorFeatureContainerClientRpc;
 import org.vaadin.maps.shared.ui.featurecontainer.VectorFeatureContainerServerRpc;
+import org.vaadin.maps.shared.ui.featurecontainer.VectorFeatureContainerState;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 /**
  * @author Kamil Morong
@@ -25,6 +33,22 @@ public class VectorFeatureContainerConnector extends AbstractFeatureContainerCon
     @Override
     protected void init() {
         super.init();
+        registerRpc(VectorFeatureContainerClientRpc.class, new VectorFeatureContainerClientRpc() {
+            @Override
+            public void addFeatures(String[] ids, String[] geometries, int[] styleIds) {
+                getWidget().addFeatures(ids, geometries, styleIds);
+            }
+
+            @Override
+            public void removeFeatures(String[] ids) {
+                getWidget().removeFeatures(ids);
+            }
+
+            @Override
+            public void clearFeatures() {
+                getWidget().clearFeatures();
+            }
+        });
         getWidget().addClickHandler(this);
         getWidget().addMouseDownHandler(this);
         getWidget().addMouseMoveHandler(this);
@@ -35,6 +59,32 @@ public class VectorFeatureContainerConnector extends AbstractFeatureContainerCon
         return (VVectorFeatureContainer) super.getWidget();
     }
 
+    @Override
+    public VectorFeatureContainerState getState() {
+        return (VectorFeatureContainerState) super.getState();
+    }
+
+    @Override
+    public void onStateChanged(StateChangeEvent stateChangeEvent) {
+        super.onStateChanged(stateChangeEvent);
+
+        if (stateChangeEvent.hasPropertyChanged("featureStyles")) {
+            HashMap<Integer, Style> styles = new HashMap<>();
+            for (Entry<String, Map<String, String>> entry : getState().featureStyles.entrySet()) {
+                styles.put(Integer.valueOf(entry.getKey()),
+                        MapUtility.getStyleFromMap(entry.getValue(), Style.DEFAULT));
+            }
+            getWidget().setFeatureStyles(styles);
+        }
+        if (stateChangeEvent.hasPropertyChanged("transformRatio") || stateChangeEvent.hasPropertyChanged("originX")
+                || stateChangeEvent.hasPropertyChanged("originY")) {
+            getWidget().setTransform(getState().transformRatio, getState().originX, getState().originY);
+        }
+        if (stateChangeEvent.hasPropertyChanged("renderer")) {
+            getWidget().setRenderer(getState().renderer);
+        }
+    }
+
     @Override
     public void onConnectorHierarchyChange(ConnectorHierarchyChangeEvent connectorHierarchyChangeEvent) {
         List<ComponentConnector> previousChildren = connectorHierarchyChangeEvent.getOldChildren();
@@ -59,7 +109,14 @@ public class VectorFeatureContainerConnector extends AbstractFeatureContainerCon
         if (!mouseMoved) {
             MouseEventDetails mouseDetails = MouseEventDetailsBuilder.buildMouseEventDetails(event.getNativeEvent(),
                     getWidget().getElement());
-            getRpcProxy(VectorFeatureContainerServerRpc.class).click(DateUtility.getTimestamp(), mouseDetails);
+            String featureId = getWidget().getBulkFeatureAt(event.getRelativeX(getWidget().getElement()),
+                    event.getRelativeY(getWidget().getElement()));
+            if (featureId != null) {
+                getRpcProxy(VectorFeatureContainerServerRpc.class).bulkFeatureClick(DateUtility.getTimestamp(),
+                        mouseDetails, featureId);
+            } else {
+                getRpcProxy(VectorFeatureContainerServerRpc.class).click(DateUtility.getTimestamp(), mouseDetails);
+            }
         } else {
             mouseMoved = false;
         }
@@ -1,6 +1,7 @@
 package org.vaadin.maps.client.ui.gridlayout;
 
 import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.Widget;
 import com.vaadin.client.ComponentConnector;
 import com.vaadin.client.ConnectorHierarchyChangeEvent;
 import com.vaadin.client.communication.StateChangeEvent;
@@ -11,6 +12,7 @@ import org.vaadin.maps.client.ui.Tile;
 import org.vaadin.maps.client.ui.Tile.SizeChangeHandler;
 import org.vaadin.maps.client.ui.Tile.TileLoadHandler;
 import org.vaadin.maps.client.ui.VGridLayout;
+import org.vaadin.maps.client.ui.VTiledLayer;
 import org.vaadin.maps.client.ui.tile.ImageTileConnector;
 import org.vaadin.maps.shared.ui.LayoutClickRpc;
 import org.vaadin.maps.shared.ui.gridlayout.GridLayoutServerRpc;
@@ -42,7 +44,7 @@ public class GridLayoutConnector extends AbstractLayoutConnector {
         public void onSizeChange(Tile tile, int oldWidth, int oldHeight, int newWidth, int newHeight) {
             VGridLayout gridLayout = getWidget();
 
-            if (gridLayout.getWidgetCount() == 1) {
+            if (isSingleTile() && gridLayout.getWidgetCount() == 1 && !hasServerPosition(tile.asWidget())) {
                 // center tile
                 int dx = (getWidget().getMeasuredWidth() - newWidth) / 2;
                 int dy = (getWidget().getMeasuredHeight() - newHeight) / 2;
@@ -56,7 +58,14 @@ public class GridLayoutConnector extends AbstractLayoutConnector {
         public void onLoad(Tile tile) {
             VGridLayout gridLayout = getWidget();
 
-            if (gridLayout.getWidgetCount() == 1) {
+            if (gridLayout.getParent() instanceof VTiledLayer) {
+                ((VTiledLayer) gridLayout.getParent()).onTileLoad(tile);
+            }
+
+            // shift of tiled layer is moved into the tile position when the
+            // tile is requested
+            if (isSingleTile() && !(gridLayout.getParent() instanceof VTiledLayer)
+                    && gridLayout.getWidgetCount() == 1) {
                 // reset shift
                 gridLayout.setShift(0, 0);
             }
@@ -86,6 +95,27 @@ public class GridLayoutConnector extends AbstractLayoutConnector {
         }
     }
 
+    /**
+     * Tiles of tiled layer are placed by server, single tile is centered.
+     */
+    private boolean isSingleTile() {
+        Widget parent = getWidget().getParent();
+        return !(parent instanceof VTiledLayer) || ((VTiledLayer) parent).isSingleTile();
+    }
+
+    /**
+     * Single tile aligned by the server has its position, others are centered.
+     */
+    private boolean hasServerPosition(Widget widget) {
+        for (ComponentConnector child : getChildComponents()) {
+            if (child.getWidget() == widget) {
+                ChildComponentData childComponentData = getState().childData.get(child);
+                return childComponentData != null && (childComponentData.left != 0 || childComponentData.top != 0);
+            }
+        }
+        return false;
+    }
+
     private void setChildWidgetPosition(ComponentConnector child) {
         ChildComponentData childComponentData = getState().childData.get(child);
         getWidget().setWidgetPosition(child.getWidget(), childComponentData.left, childComponentData.top);
@@ -106,6 +136,9 @@ public class GridLayoutConnector extends AbstractLayoutConnector {
         }
         for (ComponentConnector oldChild : event.getOldChildren()) {
             if (oldChild.getParent() != this) {
+                if (getWidget().getParent() instanceof VTiledLayer) {
+                    ((VTiledLayer) getWidget().getParent()).onTileRemove(oldChild.getWidget());
+                }
                 getWidget().remove(oldChild.getWidget());
                 // oldChild.removeStateChangeHandler(childStateChangeHandler);
                 if (oldChild instanceof ImageTileConnector) {
@@ -1,5 +1,6 @@
 package org.vaadin.maps.client.ui.handler;
 
+import com.vaadin.client.communication.StateChangeEvent;
 import com.vaadin.shared.ui.Connect;
 import org.vaadin.maps.client.DateUtility;
 import org.vaadin.maps.client.ui.VZoomHandler;
@@ -31,6 +32,15 @@ public class ZoomHandlerConnector extends LayerLayoutHandlerConnector implements
         return (ZoomHandlerState) super.getState();
     }
 
+    @Override
+    public void onStateChanged(StateChangeEvent stateChangeEvent) {
+        super.onStateChanged(stateChangeEvent);
+
+        if (stateChangeEvent.hasPropertyChanged("settleDelay")) {
+            getWidget().setSettleDelay(getState().settleDelay);
+        }
+    }
+
     @Override
     public void zoom(ZoomEvent event) {
         getRpcProxy(ZoomHandlerRpc.class).zoomChange(DateUtility.getTimestamp(), event.getZoom());
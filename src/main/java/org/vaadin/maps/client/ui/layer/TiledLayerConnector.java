@@ -0,0 +1,57 @@
+package org.vaadin.maps.client.ui.layer;
+
+import com.google.gwt.user.client.ui.Widget;
+import com.vaadin.client.ConnectorHierarchyChangeEvent;
+import org.vaadin.maps.client.ui.AbstractLayerConnector;
+import org.vaadin.maps.client.ui.VTiledLayer;
+import org.vaadin.maps.client.ui.VTiledLayer.RequestTilesEvent;
+import org.vaadin.maps.client.ui.VTiledLayer.RequestTilesHandler;
+import org.vaadin.maps.shared.ui.layer.TiledLayerClientRpc;
+import org.vaadin.maps.shared.ui.layer.TiledLayerServerRpc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author Kamil Morong
+ */
+public abstract class TiledLayerConnector extends AbstractLayerConnector implements RequestTilesHandler {
+
+    @Override
+    protected void init() {
+        super.init();
+
+        getWidget().addRequestTilesHandler(this);
+
+        registerRpc(TiledLayerClientRpc.class, new TiledLayerClientRpc() {
+            @Override
+            public void prefetch(List<String> urls) {
+                ArrayList<String> translated = new ArrayList<>(urls.size());
+                for (String url : urls) {
+                    translated.add(getConnection().translateVaadinUri(url));
+                }
+                getWidget().prefetch(translated);
+            }
+        });
+    }
+
+    @Override
+    public VTiledLayer getWidget() {
+        return (VTiledLayer) super.getWidget();
+    }
+
+    @Override
+    public void onConnectorHierarchyChange(ConnectorHierarchyChangeEvent connectorHierarchyChangeEvent) {
+        // We always have 1 child, unless the child is hidden
+        Widget content = getContentWidget();
+        if (content != null) {
+            getWidget().setWidget(content);
+        }
+    }
+
+    @Override
+    public void requestTiles(RequestTilesEvent event) {
+        getRpcProxy(TiledLayerServerRpc.class).requestTiles();
+    }
+
+}
@@ -6,13 +6,22 @@ import com.vaadin.client.communication.StateChangeEvent;
 import com.vaadin.shared.ui.Connect;
 import org.vaadin.maps.client.ui.AbstractLayerConnector;
 import org.vaadin.maps.client.ui.VVectorFeatureLayer;
+import org.vaadin.maps.client.ui.VVectorFeatureLayer.RequestFeaturesEvent;
+import org.vaadin.maps.client.ui.VVectorFeatureLayer.RequestFeaturesHandler;
+import org.vaadin.maps.shared.ui.layer.VectorFeatureLayerServerRpc;
 import org.vaadin.maps.shared.ui.layer.VectorFeatureLayerState;
 
 /**
  * @author Kamil Morong
  */
 @Connect(org.vaadin.maps.ui.layer.VectorFeatureLayer.class)
-public class VectorFeatureLayerConnector extends AbstractLayerConnector {
+public class VectorFeatureLayerConnector extends AbstractLayerConnector implements RequestFeaturesHandler {
+
+    @Override
+    protected void init() {
+        super.init();
+        getWidget().addRequestFeaturesHandler(this);
+    }
 
     @Override
     public VVectorFeatureLayer getWidget() {
@@ -42,4 +51,9 @@ public class VectorFeatureLayerConnector extends AbstractLayerConnector {
         }
     }
 
+    @Override
+    public void requestFeatures(RequestFeaturesEvent event) {
+        getRpcProxy(VectorFeatureLayerServerRpc.class).requestFeatures();
+    }
+
 }
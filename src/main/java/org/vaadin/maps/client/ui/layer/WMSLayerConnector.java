@@ -1,10 +1,7 @@
 package org.vaadin.maps.client.ui.layer;
 
-import com.google.gwt.user.client.ui.Widget;
-import com.vaadin.client.ConnectorHierarchyChangeEvent;
 import com.vaadin.client.communication.StateChangeEvent;
 import com.vaadin.shared.ui.Connect;
-import org.vaadin.maps.client.ui.AbstractLayerConnector;
 import org.vaadin.maps.client.ui.VWMSLayer;
 import org.vaadin.maps.client.ui.VWMSLayer.RequestSingleTileEvent;
 import org.vaadin.maps.client.ui.VWMSLayer.RequestSingleTileHandler;
@@ -15,7 +12,7 @@ import org.vaadin.maps.shared.ui.layer.WMSLayerState;
  * @author Kamil Morong
  */
 @Connect(org.vaadin.maps.ui.layer.WMSLayer.class)
-public class WMSLayerConnector extends AbstractLayerConnector implements RequestSingleTileHandler {
+public class WMSLayerConnector extends TiledLayerConnector implements RequestSingleTileHandler {
 
     @Override
     protected void init() {
@@ -43,15 +40,6 @@ public class WMSLayerConnector extends AbstractLayerConnector implements Request
         }
     }
 
-    @Override
-    public void onConnectorHierarchyChange(ConnectorHierarchyChangeEvent connectorHierarchyChangeEvent) {
-        // We always have 1 child, unless the child is hidden
-        Widget content = getContentWidget();
-        if (content != null) {
-            getWidget().setWidget(content);
-        }
-    }
-
     @Override
     public void requestSingleTile(RequestSingleTileEvent event) {
         getRpcProxy(WMSLayerServerRpc.class).requestSingleTile(event.getWidth(), event.getHeight(), event.getShiftX(),
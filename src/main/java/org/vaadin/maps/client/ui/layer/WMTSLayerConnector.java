@@ -0,0 +1,23 @@
+package org.vaadin.maps.client.ui.layer;
+
+import com.vaadin.shared.ui.Connect;
+import org.vaadin.maps.client.ui.VWMTSLayer;
+import org.vaadin.maps.shared.ui.layer.WMTSLayerState;
+
+/**
+ * @author Kamil Morong
+ */
+@Connect(org.vaadin.maps.ui.layer.WMTSLayer.class)
+public class WMTSLayerConnector extends TiledLayerConnector {
+
+    @Override
+    public VWMTSLayer getWidget() {
+        return (VWMTSLayer) super.getWidget();
+    }
+
+    @Override
+    public WMTSLayerState getState() {
+        return (WMTSLayerState) super.getState();
+    }
+
+}
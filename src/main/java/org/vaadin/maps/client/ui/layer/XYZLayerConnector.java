@@ -0,0 +1,23 @@
+package org.vaadin.maps.client.ui.layer;
+
+import com.vaadin.shared.ui.Connect;
+import org.vaadin.maps.client.ui.VXYZLayer;
+import org.vaadin.maps.shared.ui.layer.XYZLayerState;
+
+/**
+ * @author Kamil Morong
+ */
+@Connect(org.vaadin.maps.ui.layer.XYZLayer.class)
+public class XYZLayerConnector extends TiledLayerConnector {
+
+    @Override
+    public VXYZLayer getWidget() {
+        return (VXYZLayer) super.getWidget();
+    }
+
+    @Override
+    public XYZLayerState getState() {
+        return (XYZLayerState) super.getState();
+    }
+
+}
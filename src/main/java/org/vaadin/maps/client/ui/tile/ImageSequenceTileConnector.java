@@ -11,6 +11,8 @@ import com.vaadin.shared.communication.URLReference;
 import com.vaadin.shared.ui.Connect;
 import org.vaadin.maps.client.DateUtility;
 import org.vaadin.maps.client.ui.VImageSequenceTile;
+import org.vaadin.maps.client.ui.VImageSequenceTile.IndexChangeEvent;
+import org.vaadin.maps.client.ui.VImageSequenceTile.IndexChangeHandler;
 import org.vaadin.maps.client.ui.VImageSequenceTile.SequenceErrorEvent;
 import org.vaadin.maps.client.ui.VImageSequenceTile.SequenceErrorHandler;
 import org.vaadin.maps.client.ui.VImageSequenceTile.SequenceLoadedEvent;
@@ -25,7 +27,7 @@ import java.util.LinkedList;
  */
 @Connect(org.vaadin.maps.ui.tile.ImageSequenceTile.class)
 public class ImageSequenceTileConnector extends AbstractComponentConnector
-        implements SequenceLoadedHandler, SequenceErrorHandler, LoadHandler {
+        implements SequenceLoadedHandler, SequenceErrorHandler, IndexChangeHandler, LoadHandler {
 
     protected final ClickEventHandler clickEventHandler = new ClickEventHandler(this) {
         @Override
@@ -42,6 +44,7 @@ public class ImageSequenceTileConnector extends AbstractComponentConnector
 
         getWidget().addSequenceLoadedHandler(this);
         getWidget().addSequenceErrorHandler(this);
+        getWidget().addIndexChangeHandler(this);
         getWidget().addHandler(this, LoadEvent.getType());
     }
 
@@ -51,7 +54,23 @@ public class ImageSequenceTileConnector extends AbstractComponentConnector
 
         clickEventHandler.handleEventHandlerRegistration();
 
-        if (stateChangeEvent.hasPropertyChanged("sources")) {
+        ImageSequenceTileState state = getState();
+
+        if (stateChangeEvent.hasPropertyChanged("preloadAhead")
+                || stateChangeEvent.hasPropertyChanged("preloadBehind")) {
+            getWidget().setPreloadWindow(getState().preloadAhead, getState().preloadBehind);
+        }
+
+        if (stateChangeEvent.hasPropertyChanged("spriteSheet") || stateChangeEvent.hasPropertyChanged("frameX")
+                || stateChangeEvent.hasPropertyChanged("frameY")) {
+            if (state.spriteSheet != null) {
+                getWidget().setSpriteSheet(state.spriteSheet.getURL(), state.spriteWidth, state.spriteHeight,
+                        state.frameWidth, state.frameHeight, state.frameX, state.frameY);
+            }
+        }
+
+        if ((stateChangeEvent.hasPropertyChanged("sources") || stateChangeEvent.hasPropertyChanged("spriteSheet"))
+                && state.spriteSheet == null) {
             LinkedList<String> urls = new LinkedList<String>();
             for (URLReference urlRef : getState().sources) {
                 if (urlRef != null && urlRef.getURL() != null) {
@@ -64,6 +83,14 @@ public class ImageSequenceTileConnector extends AbstractComponentConnector
         if (stateChangeEvent.hasPropertyChanged("index")) {
             getWidget().setIndex(getState().index);
         }
+
+        getWidget().setPlayback(state.fps, state.playbackMode, state.rangeStart, state.rangeEnd,
+                state.reportInterval);
+        if (state.playing) {
+            getWidget().play();
+        } else {
+            getWidget().pause();
+        }
     }
 
     @Override
@@ -79,7 +106,20 @@ public class ImageSequenceTileConnector extends AbstractComponentConnector
     @Override
     public void onLoad(LoadEvent event) {
         getLayoutManager().setNeedsMeasure(ImageSequenceTileConnector.this);
-        getRpcProxy(ImageSequenceTileServerRpc.class).changed(DateUtility.getTimestamp(), getWidget().getIndex());
+        // playback reports index changes by itself
+        if (!getWidget().isPlaying()) {
+            getRpcProxy(ImageSequenceTileServerRpc.class).changed(DateUtility.getTimestamp(), getWidget().getIndex());
+        }
+    }
+
+    @Override
+    public void indexChange(IndexChangeEvent event) {
+        if (event.isPlaying() || !getState().playing) {
+            getRpcProxy(ImageSequenceTileServerRpc.class).changed(DateUtility.getTimestamp(), event.getIndex());
+        } else {
+            // paused by the playback itself
+            getRpcProxy(ImageSequenceTileServerRpc.class).paused(DateUtility.getTimestamp(), event.getIndex());
+        }
     }
 
     @Override
@@ -22,6 +22,7 @@ public class ImageTileConnector extends ProxyTileConnector implements LoadHandle
 
     int width = 0;
     int height = 0;
+    private String url = null;
     private SizeChangeHandler sizeChangeHandler;
     private TileLoadHandler loadHandler;
 
@@ -47,7 +48,12 @@ public class ImageTileConnector extends ProxyTileConnector implements LoadHandle
     public void onStateChanged(StateChangeEvent stateChangeEvent) {
         super.onStateChanged(stateChangeEvent);
 
-        getWidget().setUrl(getResourceUrl(AbstractEmbeddedState.SOURCE_RESOURCE));
+        String url = getResourceUrl(AbstractEmbeddedState.SOURCE_RESOURCE);
+        if (url != null && !url.isEmpty() && !url.equals(this.url)) {
+            getRpcProxy(ProxyTileServerRpc.class).request(DateUtility.getTimestamp());
+        }
+        this.url = url;
+        getWidget().setUrl(url);
     }
 
     @Override
@@ -0,0 +1,190 @@
+package org.vaadin.maps.geometry;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import org.vaadin.maps.shared.geometry.CompactGeometryConstants;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Writes geometries in the compact format, see
+ * {@link CompactGeometryConstants}. Coordinates are quantized, so a
+ * coordinate usually takes a few bytes instead of 32 characters of hex
+ * encoded WKB.
+ *
+ * @author Kamil Morong
+ */
+public class CompactGeometryWriter {
+
+    /**
+     * relative precision of quantized coordinates, in bits
+     */
+    public static final int FULL_PRECISION = 30;
+
+    /**
+     * coordinates are decoded as doubles on the client
+     */
+    private static final int MAX_QUANTIZED_BITS = 50;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private double scale;
+    private long lastX;
+    private long lastY;
+
+    /**
+     * Gets the precision, which keeps {@link #FULL_PRECISION} significant bits
+     * of the largest coordinate of the geometry.
+     *
+     * @param geometry the geometry
+     * @return precision in bits
+     */
+    public static int getFullPrecision(Geometry geometry) {
+        return getMaxPrecision(geometry) - MAX_QUANTIZED_BITS + FULL_PRECISION;
+    }
+
+    /**
+     * Gets the largest precision, which quantized coordinates of the geometry
+     * are exact doubles at.
+     */
+    private static int getMaxPrecision(Geometry geometry) {
+        Envelope envelope = geometry.getEnvelopeInternal();
+        double max = envelope.isNull() ? 0 : Math.max(Math.max(Math.abs(envelope.getMinX()),
+                Math.abs(envelope.getMaxX())), Math.max(Math.abs(envelope.getMinY()), Math.abs(envelope.getMaxY())));
+        if (max == 0 || Double.isInfinite(max) || Double.isNaN(max)) {
+            return MAX_QUANTIZED_BITS;
+        }
+        return MAX_QUANTIZED_BITS - 1 - Math.getExponent(max);
+    }
+
+    /**
+     * Writes the geometry at full precision.
+     *
+     * @param geometry the geometry
+     * @return base64 encoded geometry or null when the geometry is null
+     */
+    public String write(Geometry geometry) {
+        return geometry != null ? write(geometry, getFullPrecision(geometry)) : null;
+    }
+
+    /**
+     * Writes the geometry. Coordinates are rounded to multiples of
+     * 2<sup>-precision</sup>, the precision is lowered when quantized
+     * coordinates would not be exact on the client.
+     *
+     * @param geometry  the geometry
+     * @param precision precision in bits
+     * @return base64 encoded geometry or null when the geometry is null
+     */
+    public String write(Geometry geometry, int precision) {
+        if (null == geometry) {
+            return null;
+        }
+
+        precision = Math.min(precision, getMaxPrecision(geometry));
+
+        output.reset();
+        scale = Math.pow(2, precision);
+        lastX = 0;
+        lastY = 0;
+
+        writeSigned(precision);
+        writeGeometry(geometry);
+
+        return encodeBase64(output.toByteArray());
+    }
+
+    private static String encodeBase64(byte[] bytes) {
+        String alphabet = CompactGeometryConstants.BASE64_ALPHABET;
+        StringBuilder builder = new StringBuilder((bytes.length + 2) / 3 * 4);
+        for (int i = 0; i < bytes.length; i += 3) {
+            int remaining = Math.min(3, bytes.length - i);
+            int buffer = (bytes[i] & 0xFF) << 16;
+            if (remaining > 1) {
+                buffer |= (bytes[i + 1] & 0xFF) << 8;
+            }
+            if (remaining > 2) {
+                buffer |= bytes[i + 2] & 0xFF;
+            }
+            builder.append(alphabet.charAt(buffer >> 18 & 0x3F));
+            builder.append(alphabet.charAt(buffer >> 12 & 0x3F));
+            builder.append(remaining > 1 ? alphabet.charAt(buffer >> 6 & 0x3F) : '=');
+            builder.append(remaining > 2 ? alphabet.charAt(buffer & 0x3F) : '=');
+        }
+        return builder.toString();
+    }
+
+    private void writeGeometry(Geometry geometry) {
+        // collections first, they extend GeometryCollection
+        if (geometry instanceof MultiPoint) {
+            writeCollection(CompactGeometryConstants.MULTI_POINT, (GeometryCollection) geometry);
+        } else if (geometry instanceof MultiLineString) {
+            writeCollection(CompactGeometryConstants.MULTI_LINE_STRING, (GeometryCollection) geometry);
+        } else if (geometry instanceof MultiPolygon) {
+            writeCollection(CompactGeometryConstants.MULTI_POLYGON, (GeometryCollection) geometry);
+        } else if (geometry instanceof GeometryCollection) {
+            writeCollection(CompactGeometryConstants.GEOMETRY_COLLECTION, (GeometryCollection) geometry);
+        } else if (geometry instanceof Point) {
+            writeUnsigned(CompactGeometryConstants.POINT);
+            writeCoordinates(geometry.getCoordinates());
+        } else if (geometry instanceof LineString) {
+            // linear ring as well
+            writeUnsigned(CompactGeometryConstants.LINE_STRING);
+            writeCoordinates(geometry.getCoordinates());
+        } else if (geometry instanceof Polygon) {
+            Polygon polygon = (Polygon) geometry;
+            writeUnsigned(CompactGeometryConstants.POLYGON);
+            if (polygon.isEmpty()) {
+                writeUnsigned(0);
+            } else {
+                writeUnsigned(polygon.getNumInteriorRing() + 1);
+                writeCoordinates(polygon.getExteriorRing().getCoordinates());
+                for (int i = 0; i < polygon.getNumInteriorRing(); ++i) {
+                    writeCoordinates(polygon.getInteriorRingN(i).getCoordinates());
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported geometry type " + geometry.getGeometryType());
+        }
+    }
+
+    private void writeCollection(int type, GeometryCollection collection) {
+        writeUnsigned(type);
+        writeUnsigned(collection.getNumGeometries());
+        for (int i = 0; i < collection.getNumGeometries(); ++i) {
+            writeGeometry(collection.getGeometryN(i));
+        }
+    }
+
+    private void writeCoordinates(Coordinate[] coordinates) {
+        writeUnsigned(coordinates.length);
+        for (Coordinate coordinate : coordinates) {
+            long x = Math.round(coordinate.x * scale);
+            long y = Math.round(coordinate.y * scale);
+            writeSigned(x - lastX);
+            writeSigned(y - lastY);
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    private void writeSigned(long value) {
+        writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    private void writeUnsigned(long value) {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+}
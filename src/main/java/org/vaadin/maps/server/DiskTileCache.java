@@ -0,0 +1,831 @@
+package org.vaadin.maps.server;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Persistent tile cache stored in a single file. The file starts with a
+ * memory mapped hash index followed by append-only data records. Removed
+ * records are only unlinked from the index, their space is reclaimed by
+ * {@link #compact()}, which runs in a background thread when too much space
+ * is wasted. Compaction copies live records to a new file and swaps it with
+ * the store, readers are blocked only for the swap.
+ * <p>
+ * The index is split to segments by key hash, each segment has its own lock
+ * and its own share of the size limit. Tiles are read by positional reads,
+ * so any number of threads read the store concurrently, storing and eviction
+ * lock only the segment of the tile. Every record carries its key, a record
+ * which does not match the index (e.g. after a crash) is treated as missing.
+ * Access times are kept in memory and written to the index on compaction and
+ * close.
+ *
+ * @author Kamil Morong
+ */
+public class DiskTileCache implements TileCache, Closeable {
+
+    public static final long DEFAULT_MAX_SIZE = 1024L * 1024 * 1024;
+    public static final int DEFAULT_CAPACITY = 1 << 18;
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int MAGIC = 0x564d5443;
+    private static final int VERSION = 2;
+
+    // header layout
+    private static final int HEADER_SIZE = 64;
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_CAPACITY = 8;
+    private static final int H_SEGMENTS = 12;
+    private static final int H_DATA_END = 16;
+
+    // index slot layout, empty slot has zero hash, removed slot negative
+    // offset
+    private static final int SLOT_SIZE = 40;
+    private static final int S_HASH = 0;
+    private static final int S_OFFSET = 8;
+    private static final int S_LENGTH = 16;
+    private static final int S_CREATED = 24;
+    private static final int S_ACCESSED = 32;
+
+    /**
+     * eviction frees space down to this fraction of limits
+     */
+    private static final double LOW_WATER = 0.9;
+
+    /**
+     * fraction of the maximum size taken by live records, the rest keeps
+     * removed records until compaction
+     */
+    private static final double LIVE_SHARE = 0.75;
+
+    /**
+     * fraction of the maximum size taken by removed records which starts
+     * compaction
+     */
+    private static final double COMPACTION_WASTE = 0.125;
+
+    private static final AtomicInteger cacheCount = new AtomicInteger();
+
+    private final File file;
+    private final long maxSize;
+    private final ThreadPoolExecutor compactor;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean(false);
+
+    /**
+     * serializes compactions
+     */
+    private final Object compaction = new Object();
+
+    private final AtomicLong dataEnd = new AtomicLong();
+    private final AtomicLong liveSize = new AtomicLong();
+    private final AtomicInteger liveCount = new AtomicInteger();
+
+    private int capacity;
+    private long dataStart;
+    private Segment[] segments;
+    private volatile long maxAge = 0;
+
+    // replaced only while locks of all segments are held
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+    private MappedByteBuffer index;
+    private AtomicLongArray accessTimes;
+
+    /**
+     * changes when records are moved or removed all at once
+     */
+    private int generation = 0;
+
+    public DiskTileCache(File file) throws IOException {
+        this(file, DEFAULT_MAX_SIZE, DEFAULT_CAPACITY);
+    }
+
+    public DiskTileCache(File file, long maxSize, int capacity) throws IOException {
+        this(file, maxSize, capacity, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Opens the store, creates new one when the file does not exist or is not
+     * a valid store.
+     *
+     * @param file     store file
+     * @param maxSize  maximum size of the data area of the store file in bytes,
+     *                 live tiles take up to three quarters of it
+     * @param capacity maximum number of index slots of a new store, existing
+     *                 store keeps its capacity
+     * @param segments number of independently locked index segments of a new
+     *                 store, existing store keeps its segments
+     * @throws IOException when the file cannot be opened
+     */
+    public DiskTileCache(File file, long maxSize, int capacity, int segments) throws IOException {
+        if (maxSize <= 0 || capacity <= 0 || segments <= 0) {
+            throw new IllegalArgumentException("Cache size, capacity and segments must be positive");
+        }
+        this.file = file;
+        this.maxSize = maxSize;
+        segments = Math.min(segments, capacity);
+        this.capacity = capacity / segments * segments;
+
+        final String name = "vmaps-tile-cache-compaction-" + cacheCount.incrementAndGet();
+        compactor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        compactor.allowCoreThreadTimeOut(true);
+
+        open(segments);
+    }
+
+    private static long hash(byte[] key) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash != 0 ? hash : 1;
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of tile cache file");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void open(int segmentCount) throws IOException {
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+
+        boolean valid = false;
+        long storedDataEnd = 0;
+        if (channel.size() >= HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            int storedCapacity = header.getInt(H_CAPACITY);
+            int storedSegments = header.getInt(H_SEGMENTS);
+            if (header.getInt(H_MAGIC) == MAGIC && header.getInt(H_VERSION) == VERSION && storedCapacity > 0
+                    && storedSegments > 0 && storedCapacity % storedSegments == 0) {
+                storedDataEnd = header.getLong(H_DATA_END);
+                long storedDataStart = HEADER_SIZE + (long) storedCapacity * SLOT_SIZE;
+                if (storedDataEnd >= storedDataStart && channel.size() >= storedDataEnd) {
+                    capacity = storedCapacity;
+                    segmentCount = storedSegments;
+                    valid = true;
+                }
+            }
+        }
+
+        if (!valid) {
+            channel.truncate(0);
+        }
+
+        dataStart = HEADER_SIZE + (long) capacity * SLOT_SIZE;
+        index = channel.map(MapMode.READ_WRITE, 0, dataStart);
+
+        if (!valid) {
+            index.putInt(H_MAGIC, MAGIC);
+            index.putInt(H_VERSION, VERSION);
+            index.putInt(H_CAPACITY, capacity);
+            index.putInt(H_SEGMENTS, segmentCount);
+            index.putLong(H_DATA_END, dataStart);
+            storedDataEnd = dataStart;
+        } else {
+            // drop records appended after last index update
+            channel.truncate(storedDataEnd);
+        }
+        dataEnd.set(storedDataEnd);
+
+        if (segments == null) {
+            segments = new Segment[segmentCount];
+            int segmentCapacity = capacity / segmentCount;
+            for (int i = 0; i < segmentCount; ++i) {
+                segments[i] = new Segment(i * segmentCapacity, segmentCapacity);
+            }
+        }
+
+        accessTimes = new AtomicLongArray(capacity);
+        long size = 0;
+        int count = 0;
+        for (Segment segment : segments) {
+            segment.size = 0;
+            segment.count = 0;
+            for (int i = 0; i < segment.capacity; ++i) {
+                int slot = segment.first + i;
+                int position = slotPosition(slot);
+                long offset = index.getLong(position + S_OFFSET);
+                if (index.getLong(position + S_HASH) != 0 && offset >= 0) {
+                    int length = index.getInt(position + S_LENGTH);
+                    if (offset < dataStart || offset + length > storedDataEnd) {
+                        // record was not written completely
+                        index.putLong(position + S_OFFSET, -1);
+                    } else {
+                        accessTimes.set(slot, index.getLong(position + S_ACCESSED));
+                        segment.size += length;
+                        ++segment.count;
+                    }
+                }
+            }
+            size += segment.size;
+            count += segment.count;
+        }
+        liveSize.set(size);
+        liveCount.set(count);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Sets maximum age of tiles. Older tiles are not served and are evicted
+     * first.
+     *
+     * @param maxAge maximum age in milliseconds, zero means no limit
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Gets total size of stored tile records in bytes.
+     */
+    public long getSize() {
+        return liveSize.get();
+    }
+
+    /**
+     * Gets size of the data area in bytes including removed records which
+     * were not reclaimed by compaction yet.
+     */
+    public long getDataSize() {
+        return dataEnd.get() - dataStart;
+    }
+
+    public int getTileCount() {
+        return liveCount.get();
+    }
+
+    @Override
+    public TileData get(String key) {
+        byte[] keyBytes = key.getBytes(UTF8);
+        long hash = hash(keyBytes);
+        long now = System.currentTimeMillis();
+        Segment segment = getSegment(hash);
+
+        segment.lock.readLock().lock();
+        try {
+            if (channel == null) {
+                return null;
+            }
+
+            int start = (int) ((hash & Long.MAX_VALUE) % segment.capacity);
+            for (int i = 0; i < segment.capacity; ++i) {
+                int slot = segment.first + (start + i) % segment.capacity;
+                int position = slotPosition(slot);
+                long slotHash = index.getLong(position + S_HASH);
+                if (slotHash == 0) {
+                    return null;
+                }
+
+                long offset = index.getLong(position + S_OFFSET);
+                if (slotHash == hash && offset >= 0) {
+                    Record record = readRecord(offset, index.getInt(position + S_LENGTH));
+                    if (record != null && Arrays.equals(record.key, keyBytes)) {
+                        if (isExpired(index.getLong(position + S_CREATED), now)) {
+                            return null;
+                        }
+                        accessTimes.set(slot, now);
+                        return record.data;
+                    }
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String key, TileData data) {
+        byte[] keyBytes = key.getBytes(UTF8);
+        byte[] mimeBytes = (data.getMimeType() != null ? data.getMimeType() : "").getBytes(UTF8);
+        int length = 12 + keyBytes.length + mimeBytes.length + data.getSize();
+        if (length > getSegmentSizeLimit()) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(keyBytes.length).put(keyBytes);
+        buffer.putInt(mimeBytes.length).put(mimeBytes);
+        buffer.putInt(data.getSize()).put(data.getBytes());
+        buffer.flip();
+
+        long hash = hash(keyBytes);
+        long now = System.currentTimeMillis();
+        Segment segment = getSegment(hash);
+
+        segment.lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                remove(segment, hash, keyBytes);
+
+                if (segment.size + length > getSegmentSizeLimit() || segment.count + 1 > segment.getMaxCount()) {
+                    evict(segment, length, now);
+                }
+
+                // the tile is not stored when the data area is full of removed
+                // records, compaction makes space for next tiles
+                long offset = reserve(length);
+                if (offset >= 0) {
+                    writeFully(channel, buffer, offset);
+                    insertSlot(index, segment, hash, offset, length, now, now);
+                    segment.size += length;
+                    ++segment.count;
+                    liveSize.addAndGet(length);
+                    liveCount.incrementAndGet();
+                    storeDataEnd();
+                }
+            }
+        } catch (IOException e) {
+            // the tile stays in upstream
+        } finally {
+            segment.lock.writeLock().unlock();
+        }
+
+        if (getDataSize() - getSize() > maxSize * COMPACTION_WASTE) {
+            scheduleCompaction();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lockAll();
+        try {
+            if (channel != null) {
+                for (int i = HEADER_SIZE; i < dataStart; i += 8) {
+                    index.putLong(i, 0);
+                }
+                for (Segment segment : segments) {
+                    segment.size = 0;
+                    segment.count = 0;
+                }
+                liveSize.set(0);
+                liveCount.set(0);
+                dataEnd.set(dataStart);
+                index.putLong(H_DATA_END, dataStart);
+                ++generation;
+                channel.truncate(dataStart);
+            }
+        } catch (IOException e) {
+            // truncation is not essential
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Copies live records to a new file, which replaces the store. Space of
+     * removed records is dropped and the index is rebuilt. Tiles are read and
+     * stored while the records are copied.
+     *
+     * @throws IOException when the new file cannot be written
+     */
+    public void compact() throws IOException {
+        synchronized (compaction) {
+            compactStore();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lockAll();
+        try {
+            if (channel != null) {
+                storeAccessTimes();
+                index.putLong(H_DATA_END, dataEnd.get());
+                index.force();
+                closeChannel();
+            }
+        } finally {
+            unlockAll();
+        }
+        compactor.shutdown();
+    }
+
+    private Segment getSegment(long hash) {
+        return segments[(int) ((hash >>> 40) % segments.length)];
+    }
+
+    private long getSegmentSizeLimit() {
+        return (long) (maxSize * LIVE_SHARE) / segments.length;
+    }
+
+    private void lockAll() {
+        for (Segment segment : segments) {
+            segment.lock.writeLock().lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = segments.length - 1; i >= 0; --i) {
+            segments[i].lock.writeLock().unlock();
+        }
+    }
+
+    private boolean isExpired(long created, long now) {
+        return maxAge > 0 && now - created > maxAge;
+    }
+
+    /**
+     * Reserves space for a record at the end of the data area.
+     *
+     * @return offset of the record or -1 when the data area would exceed the
+     * maximum size
+     */
+    private long reserve(int length) {
+        for (; ; ) {
+            long end = dataEnd.get();
+            if (end + length - dataStart > maxSize) {
+                return -1;
+            }
+            if (dataEnd.compareAndSet(end, end + length)) {
+                return end;
+            }
+        }
+    }
+
+    private void storeDataEnd() {
+        // keeps the stored value growing when written by concurrent puts
+        synchronized (dataEnd) {
+            index.putLong(H_DATA_END, dataEnd.get());
+        }
+    }
+
+    private void storeAccessTimes() {
+        for (int slot = 0; slot < capacity; ++slot) {
+            int position = slotPosition(slot);
+            if (index.getLong(position + S_HASH) != 0 && index.getLong(position + S_OFFSET) >= 0) {
+                index.putLong(position + S_ACCESSED, accessTimes.get(slot));
+            }
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compactionScheduled.compareAndSet(false, true)) {
+            try {
+                compactor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            compact();
+                        } catch (IOException e) {
+                            // the store keeps its records
+                        } finally {
+                            compactionScheduled.set(false);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the store is closed
+                compactionScheduled.set(false);
+            }
+        }
+    }
+
+    private void remove(Segment segment, long hash, byte[] keyBytes) throws IOException {
+        int start = (int) ((hash & Long.MAX_VALUE) % segment.capacity);
+        for (int i = 0; i < segment.capacity; ++i) {
+            int slot = segment.first + (start + i) % segment.capacity;
+            int position = slotPosition(slot);
+            long slotHash = index.getLong(position + S_HASH);
+            if (slotHash == 0) {
+                return;
+            }
+            long offset = index.getLong(position + S_OFFSET);
+            if (slotHash == hash && offset >= 0) {
+                Record record = readRecord(offset, index.getInt(position + S_LENGTH));
+                if (record == null || Arrays.equals(record.key, keyBytes)) {
+                    removeSlot(segment, slot);
+                }
+            }
+        }
+    }
+
+    private void removeSlot(Segment segment, int slot) {
+        int position = slotPosition(slot);
+        int length = index.getInt(position + S_LENGTH);
+        index.putLong(position + S_OFFSET, -1);
+        segment.size -= length;
+        --segment.count;
+        liveSize.addAndGet(-length);
+        liveCount.decrementAndGet();
+    }
+
+    private void insertSlot(MappedByteBuffer index, Segment segment, long hash, long offset, int length,
+                            long created, long accessed) {
+        int start = (int) ((hash & Long.MAX_VALUE) % segment.capacity);
+        for (int i = 0; i < segment.capacity; ++i) {
+            int slot = segment.first + (start + i) % segment.capacity;
+            int position = slotPosition(slot);
+            if (index.getLong(position + S_HASH) == 0 || index.getLong(position + S_OFFSET) < 0) {
+                index.putLong(position + S_HASH, hash);
+                index.putLong(position + S_OFFSET, offset);
+                index.putInt(position + S_LENGTH, length);
+                index.putLong(position + S_CREATED, created);
+                index.putLong(position + S_ACCESSED, accessed);
+                if (index == this.index) {
+                    accessTimes.set(slot, accessed);
+                }
+                return;
+            }
+        }
+        throw new IllegalStateException("Tile cache index is full");
+    }
+
+    private ArrayList<Entry> liveEntries(Segment segment) {
+        ArrayList<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < segment.capacity; ++i) {
+            int slot = segment.first + i;
+            int position = slotPosition(slot);
+            if (index.getLong(position + S_HASH) != 0 && index.getLong(position + S_OFFSET) >= 0) {
+                entries.add(new Entry(slot, index.getLong(position + S_HASH), index.getLong(position + S_OFFSET),
+                        index.getInt(position + S_LENGTH), index.getLong(position + S_CREATED),
+                        accessTimes.get(slot)));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Removes expired tiles and then least recently used tiles of the segment
+     * until there is space for new record.
+     */
+    private void evict(Segment segment, int length, long now) {
+        ArrayList<Entry> entries = liveEntries(segment);
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return o1.accessed < o2.accessed ? -1 : (o1.accessed > o2.accessed ? 1 : 0);
+            }
+        });
+
+        for (Entry entry : entries) {
+            if (isExpired(entry.created, now)) {
+                removeSlot(segment, entry.slot);
+            }
+        }
+
+        long sizeLimit = (long) (getSegmentSizeLimit() * LOW_WATER) - length;
+        int countLimit = (int) (segment.getMaxCount() * LOW_WATER) - 1;
+        for (Entry entry : entries) {
+            if (segment.size <= sizeLimit && segment.count <= countLimit) {
+                break;
+            }
+            if (index.getLong(slotPosition(entry.slot) + S_OFFSET) >= 0) {
+                removeSlot(segment, entry.slot);
+            }
+        }
+    }
+
+    private void compactStore() throws IOException {
+        // records are never changed in place, so they are copied while
+        // other threads use the store
+        FileChannel source = null;
+        int sourceGeneration = 0;
+        ArrayList<Entry> entries = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.lock.readLock().lock();
+            try {
+                if (channel == null || (source != null && (channel != source || generation != sourceGeneration))) {
+                    return;
+                }
+                source = channel;
+                sourceGeneration = generation;
+                entries.addAll(liveEntries(segment));
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry o1, Entry o2) {
+                return o1.offset < o2.offset ? -1 : (o1.offset > o2.offset ? 1 : 0);
+            }
+        });
+
+        File compacted = new File(file.getPath() + ".compact");
+        RandomAccessFile target = new RandomAccessFile(compacted, "rw");
+        try {
+            FileChannel targetChannel = target.getChannel();
+            targetChannel.truncate(0);
+
+            HashMap<Long, Long> offsets = new HashMap<>();
+            long position = dataStart;
+            for (Entry entry : entries) {
+                copyRecord(source, entry, targetChannel, position);
+                offsets.put(entry.offset, position);
+                position += entry.length;
+            }
+
+            lockAll();
+            try {
+                if (channel != source || generation != sourceGeneration) {
+                    // closed or cleared meanwhile
+                    return;
+                }
+
+                MappedByteBuffer targetIndex = targetChannel.map(MapMode.READ_WRITE, 0, dataStart);
+                targetIndex.putInt(H_MAGIC, MAGIC);
+                targetIndex.putInt(H_VERSION, VERSION);
+                targetIndex.putInt(H_CAPACITY, capacity);
+                targetIndex.putInt(H_SEGMENTS, segments.length);
+                for (Segment segment : segments) {
+                    for (Entry entry : liveEntries(segment)) {
+                        Long offset = offsets.get(entry.offset);
+                        if (offset == null) {
+                            // stored after the copy started
+                            copyRecord(source, entry, targetChannel, position);
+                            offset = position;
+                            position += entry.length;
+                        }
+                        insertSlot(targetIndex, segment, entry.hash, offset, entry.length, entry.created,
+                                entry.accessed);
+                    }
+                }
+                targetIndex.putLong(H_DATA_END, position);
+                targetIndex.force();
+                target.close();
+
+                closeChannel();
+                try {
+                    Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    // reopens the original store when the swap failed
+                    ++generation;
+                    open(segments.length);
+                }
+            } finally {
+                unlockAll();
+            }
+        } finally {
+            target.close();
+            compacted.delete();
+        }
+    }
+
+    private void copyRecord(FileChannel source, Entry entry, FileChannel target, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+        readFully(source, buffer, entry.offset);
+        buffer.flip();
+        writeFully(target, buffer, position);
+    }
+
+    private void closeChannel() throws IOException {
+        try {
+            channel.close();
+            randomAccessFile.close();
+        } finally {
+            channel = null;
+            randomAccessFile = null;
+            index = null;
+        }
+    }
+
+    private Record readRecord(long offset, int length) throws IOException {
+        if (length < 12 || offset < dataStart || offset + length > dataEnd.get()) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(channel, buffer, offset);
+        buffer.flip();
+
+        try {
+            byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            byte[] mime = new byte[buffer.getInt()];
+            buffer.get(mime);
+            byte[] data = new byte[buffer.getInt()];
+            buffer.get(data);
+            return new Record(key, new TileData(data, new String(mime, UTF8)));
+        } catch (RuntimeException e) {
+            // damaged record
+            return null;
+        }
+    }
+
+    /**
+     * Part of the index with its own lock and share of the size limit.
+     */
+    private static class Segment {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final int first;
+        private final int capacity;
+
+        // guarded by the lock
+        private long size;
+        private int count;
+
+        private Segment(int first, int capacity) {
+            this.first = first;
+            this.capacity = capacity;
+        }
+
+        private int getMaxCount() {
+            return capacity / 4 * 3;
+        }
+    }
+
+    private static class Record {
+        private final byte[] key;
+        private final TileData data;
+
+        private Record(byte[] key, TileData data) {
+            this.key = key;
+            this.data = data;
+        }
+    }
+
+    private static class Entry {
+        private final int slot;
+        private final long hash;
+        private final long offset;
+        private final int length;
+        private final long created;
+        private final long accessed;
+
+        private Entry(int slot, long hash, long offset, int length, long created, long accessed) {
+            this.slot = slot;
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+            this.created = created;
+            this.accessed = accessed;
+        }
+    }
+
+}
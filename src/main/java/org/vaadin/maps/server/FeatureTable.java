@@ -0,0 +1,270 @@
+package org.vaadin.maps.server;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Columnar storage of many non-interactive features. Each feature is a row of
+ * parallel columns of identifiers, geometries encoded as WKB, geometry
+ * envelopes and numbers of vertices, style identifiers and attribute values, so a feature costs a few array slots
+ * instead of a component with its own state and connector.
+ * <p>
+ * Rows are not ordered, removing a feature moves the last row into its place.
+ * The table is not thread safe, it is accessed with the session locked.
+ *
+ * @author Kamil Morong
+ */
+public class FeatureTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final HashMap<String, Integer> rows = new HashMap<>();
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private byte[][] geometries = new byte[INITIAL_CAPACITY][];
+    private Envelope[] envelopes = new Envelope[INITIAL_CAPACITY];
+    private int[] pointCounts = new int[INITIAL_CAPACITY];
+    private int[] styleIds = new int[INITIAL_CAPACITY];
+    private final LinkedHashMap<String, Object[]> attributes = new LinkedHashMap<>();
+
+    private int size = 0;
+
+    /**
+     * Gets number of features.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(String id) {
+        return rows.containsKey(id);
+    }
+
+    /**
+     * Adds the feature, or replaces the feature of the same identifier.
+     *
+     * @param id         feature identifier
+     * @param geometry   feature geometry in world coordinates
+     * @param styleId    identifier of the feature style
+     * @param attributes attribute values by name or null
+     */
+    public void put(String id, Geometry geometry, int styleId, Map<String, ?> attributes) {
+        if (id == null) {
+            throw new NullPointerException("Feature identifier must not be null");
+        }
+        if (geometry == null) {
+            throw new NullPointerException("Feature geometry must not be null");
+        }
+
+        Integer existing = rows.get(id);
+        int row;
+        if (existing != null) {
+            row = existing;
+            for (Object[] column : this.attributes.values()) {
+                column[row] = null;
+            }
+        } else {
+            ensureCapacity(size + 1);
+            row = size++;
+            rows.put(id, row);
+            ids[row] = id;
+        }
+
+        geometries[row] = new WKBWriter().write(geometry);
+        envelopes[row] = geometry.getEnvelopeInternal();
+        pointCounts[row] = geometry.getNumPoints();
+        styleIds[row] = styleId;
+
+        if (attributes != null) {
+            for (Entry<String, ?> entry : attributes.entrySet()) {
+                getColumn(entry.getKey())[row] = entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * Removes the feature.
+     *
+     * @param id feature identifier
+     * @return true when the feature was present
+     */
+    public boolean remove(String id) {
+        Integer row = rows.remove(id);
+        if (row == null) {
+            return false;
+        }
+
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            geometries[row] = geometries[last];
+            envelopes[row] = envelopes[last];
+            pointCounts[row] = pointCounts[last];
+            styleIds[row] = styleIds[last];
+            for (Object[] column : attributes.values()) {
+                column[row] = column[last];
+            }
+            rows.put(ids[row], row);
+        }
+
+        ids[last] = null;
+        geometries[last] = null;
+        envelopes[last] = null;
+        for (Object[] column : attributes.values()) {
+            column[last] = null;
+        }
+        return true;
+    }
+
+    public void clear() {
+        rows.clear();
+        Arrays.fill(ids, 0, size, null);
+        Arrays.fill(geometries, 0, size, null);
+        Arrays.fill(envelopes, 0, size, null);
+        attributes.clear();
+        size = 0;
+    }
+
+    /**
+     * Gets identifiers of all features.
+     */
+    public List<String> getIds() {
+        return Collections.unmodifiableList(Arrays.asList(ids).subList(0, size));
+    }
+
+    /**
+     * Gets names of attributes set on any feature.
+     */
+    public List<String> getAttributeNames() {
+        return new ArrayList<>(attributes.keySet());
+    }
+
+    /**
+     * Gets the feature geometry, decoded from the stored WKB.
+     *
+     * @param id feature identifier
+     * @return geometry or null when there is no such feature
+     */
+    public Geometry getGeometry(String id) {
+        Integer row = rows.get(id);
+        if (row == null) {
+            return null;
+        }
+        try {
+            return new WKBReader().read(geometries[row]);
+        } catch (ParseException e) {
+            // written by WKBWriter
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the feature geometry encoded as WKB.
+     *
+     * @param id feature identifier
+     * @return WKB or null when there is no such feature
+     */
+    public byte[] getGeometryBytes(String id) {
+        Integer row = rows.get(id);
+        return row != null ? geometries[row] : null;
+    }
+
+    /**
+     * Gets the envelope of the feature geometry. The envelope must not be
+     * modified.
+     *
+     * @param id feature identifier
+     * @return envelope or null when there is no such feature
+     */
+    public Envelope getEnvelope(String id) {
+        Integer row = rows.get(id);
+        return row != null ? envelopes[row] : null;
+    }
+
+    /**
+     * Gets number of vertices of the feature geometry.
+     *
+     * @param id feature identifier
+     * @return number of vertices, 0 when there is no such feature
+     */
+    public int getNumPoints(String id) {
+        Integer row = rows.get(id);
+        return row != null ? pointCounts[row] : 0;
+    }
+
+    /**
+     * Gets the feature style identifier.
+     *
+     * @param id feature identifier
+     * @return style identifier, 0 when there is no such feature
+     */
+    public int getStyleId(String id) {
+        Integer row = rows.get(id);
+        return row != null ? styleIds[row] : 0;
+    }
+
+    /**
+     * Changes the feature style.
+     *
+     * @param id      feature identifier
+     * @param styleId style identifier
+     * @return true when the feature was present
+     */
+    public boolean setStyleId(String id, int styleId) {
+        Integer row = rows.get(id);
+        if (row == null) {
+            return false;
+        }
+        styleIds[row] = styleId;
+        return true;
+    }
+
+    /**
+     * Gets the attribute value of the feature.
+     *
+     * @param id   feature identifier
+     * @param name attribute name
+     * @return value or null when not set
+     */
+    public Object getAttribute(String id, String name) {
+        Integer row = rows.get(id);
+        Object[] column = attributes.get(name);
+        return row != null && column != null ? column[row] : null;
+    }
+
+    private Object[] getColumn(String name) {
+        Object[] column = attributes.get(name);
+        if (column == null) {
+            column = new Object[ids.length];
+            attributes.put(name, column);
+        }
+        return column;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int length = Math.max(capacity, ids.length * 2);
+            ids = Arrays.copyOf(ids, length);
+            geometries = Arrays.copyOf(geometries, length);
+            envelopes = Arrays.copyOf(envelopes, length);
+            pointCounts = Arrays.copyOf(pointCounts, length);
+            styleIds = Arrays.copyOf(styleIds, length);
+            for (Entry<String, Object[]> entry : attributes.entrySet()) {
+                entry.setValue(Arrays.copyOf(entry.getValue(), length));
+            }
+        }
+    }
+
+}
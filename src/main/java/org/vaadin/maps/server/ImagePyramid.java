@@ -0,0 +1,434 @@
+package org.vaadin.maps.server;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Multi-resolution pyramid of tiles of a large local image. Level 0 fits the
+ * whole image into one tile, each next level doubles the resolution up to the
+ * full resolution of the image at {@link #getMaxLevel()}.
+ * <p>
+ * Tiles are rendered from regions of the image read by {@link ImageReader}
+ * with subsampling, so the full raster is never held in memory. Rendered
+ * tiles are kept in the tile store, tiles missing in the store, e.g. evicted,
+ * are rendered again on demand. Concurrent requests of the same missing tile
+ * share one rendering.
+ *
+ * @author Kamil Morong
+ */
+public class ImagePyramid {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+    public static final String FORMAT_PNG = "image/png";
+    public static final String FORMAT_JPEG = "image/jpeg";
+
+    private final File file;
+    private final TileCache store;
+    private final int tileSize;
+    private final int width;
+    private final int height;
+    private final int maxLevel;
+    private final String key;
+
+    private final ConcurrentMap<String, FutureTask<TileData>> renderings = new ConcurrentHashMap<>();
+
+    private volatile String format = FORMAT_PNG;
+
+    public ImagePyramid(File file, TileCache store) throws IOException {
+        this(file, store, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Creates pyramid of the image. Only the image header is read.
+     *
+     * @param file     image file of format supported by {@link ImageIO}
+     * @param store    store of rendered tiles
+     * @param tileSize width and height of tiles in pixels
+     * @throws IOException when the image can not be read
+     */
+    public ImagePyramid(File file, TileCache store, int tileSize) throws IOException {
+        if (store == null) {
+            throw new NullPointerException("Tile store must not be null");
+        }
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        this.file = file;
+        this.store = store;
+        this.tileSize = tileSize;
+
+        ImageInputStream input = ImageIO.createImageInputStream(file);
+        if (input == null) {
+            throw new IOException("Can not read " + file);
+        }
+        try {
+            ImageReader reader = getReader(input);
+            try {
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            input.close();
+        }
+
+        int levels = 0;
+        while ((long) tileSize << levels < Math.max(width, height)) {
+            ++levels;
+        }
+        maxLevel = levels;
+        // changed file invalidates stored tiles
+        key = "pyramid:" + file.getAbsolutePath() + "#" + file.lastModified() + "#" + tileSize;
+    }
+
+    private static ImageReader getReader(ImageInputStream input) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public TileCache getStore() {
+        return store;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Gets width of the image in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets height of the image in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the level of full image resolution.
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * Gets string identifying the pyramid, tiles of equal pyramids share
+     * store entries.
+     */
+    public String getKey() {
+        return key + "#" + format;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets format of rendered tiles. JPEG tiles are smaller, but the image
+     * margins of edge tiles are filled by white instead of transparency.
+     *
+     * @param format {@link #FORMAT_PNG} or {@link #FORMAT_JPEG}
+     */
+    public void setFormat(String format) {
+        if (!FORMAT_PNG.equals(format) && !FORMAT_JPEG.equals(format)) {
+            throw new IllegalArgumentException("Unsupported tile format " + format);
+        }
+        this.format = format;
+    }
+
+    /**
+     * Gets number of image pixels per tile pixel at the level.
+     *
+     * @param level pyramid level
+     */
+    public int getSubsampling(int level) {
+        return 1 << (maxLevel - level);
+    }
+
+    public int getColumns(int level) {
+        long span = (long) tileSize * getSubsampling(level);
+        return (int) ((width + span - 1) / span);
+    }
+
+    public int getRows(int level) {
+        long span = (long) tileSize * getSubsampling(level);
+        return (int) ((height + span - 1) / span);
+    }
+
+    private String getTileKey(int level, int column, int row) {
+        return getKey() + "/" + level + "/" + column + "/" + row;
+    }
+
+    /**
+     * Gets tile from the store, rendering it when missing.
+     *
+     * @param level  pyramid level
+     * @param column tile column from left
+     * @param row    tile row from top
+     * @return tile image or null when there is no such tile
+     * @throws IOException when the image can not be read
+     */
+    public TileData getTile(final int level, final int column, final int row) throws IOException {
+        if (level < 0 || level > maxLevel || column < 0 || row < 0 || column >= getColumns(level)
+                || row >= getRows(level)) {
+            return null;
+        }
+
+        final String tileKey = getTileKey(level, column, row);
+        TileData data = store.get(tileKey);
+        if (data != null) {
+            return data;
+        }
+
+        FutureTask<TileData> rendering = new FutureTask<>(new Callable<TileData>() {
+            @Override
+            public TileData call() throws Exception {
+                // the tile can be stored by a rendering just finished
+                TileData stored = store.get(tileKey);
+                if (stored != null) {
+                    return stored;
+                }
+                int span = tileSize * getSubsampling(level);
+                BufferedImage region = readRegion(new Rectangle(column * span, row * span, span, span),
+                        getSubsampling(level));
+                TileData rendered = encode(region, 0);
+                store.put(tileKey, rendered);
+                return rendered;
+            }
+        });
+        FutureTask<TileData> running = renderings.putIfAbsent(tileKey, rendering);
+        if (null == running) {
+            running = rendering;
+            try {
+                rendering.run();
+            } finally {
+                renderings.remove(tileKey, rendering);
+            }
+        }
+
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for tile", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Tile rendering failed", cause);
+        }
+    }
+
+    /**
+     * Renders all tiles missing in the store. The image is read only once, in
+     * strips of one tile row at full resolution. Each level below is derived
+     * by downsampling pairs of strips of the level above, so at most one strip
+     * per level is held in memory.
+     *
+     * @throws IOException when the image can not be read
+     */
+    public void build() throws IOException {
+        if (isStored()) {
+            return;
+        }
+
+        ImageInputStream input = ImageIO.createImageInputStream(file);
+        if (input == null) {
+            throw new IOException("Can not read " + file);
+        }
+        try {
+            ImageReader reader = getReader(input);
+            try {
+                // upper strips waiting for their pair, by level
+                BufferedImage[] upper = new BufferedImage[maxLevel + 1];
+                int rows = getRows(maxLevel);
+                for (int row = 0; row < rows; ++row) {
+                    BufferedImage strip = readRegion(reader, new Rectangle(0, row * tileSize, width, tileSize), 1);
+                    addStrip(maxLevel, row, strip, row == rows - 1, upper);
+                }
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private boolean isStored() {
+        for (int level = 0; level <= maxLevel; ++level) {
+            for (int row = 0; row < getRows(level); ++row) {
+                for (int column = 0; column < getColumns(level); ++column) {
+                    if (store.get(getTileKey(level, column, row)) == null) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores missing tiles of the strip and passes it downsampled to the level
+     * below, together with the upper strip of the pair.
+     *
+     * @param last  the strip is the last one of the level
+     * @param upper upper strips waiting for their pair, by level
+     */
+    private void addStrip(int level, int row, BufferedImage strip, boolean last, BufferedImage[] upper)
+            throws IOException {
+        for (int column = 0; column < getColumns(level); ++column) {
+            String tileKey = getTileKey(level, column, row);
+            if (store.get(tileKey) == null) {
+                store.put(tileKey, encode(strip, column * tileSize));
+            }
+        }
+
+        if (level > 0) {
+            if (row % 2 == 0 && !last) {
+                upper[level] = strip;
+            } else {
+                BufferedImage reduced = row % 2 == 0 ? downsample(strip, null) : downsample(upper[level], strip);
+                upper[level] = null;
+                addStrip(level - 1, row / 2, reduced, last, upper);
+            }
+        }
+    }
+
+    /**
+     * Halves the resolution of two strips placed one below the other, each
+     * pixel is the average of the four pixels it covers.
+     *
+     * @param top    upper strip
+     * @param bottom lower strip or null
+     */
+    private static BufferedImage downsample(BufferedImage top, BufferedImage bottom) {
+        int w = top.getWidth();
+        int h = top.getHeight() + (bottom != null ? bottom.getHeight() : 0);
+        int reducedWidth = (w + 1) / 2;
+        int reducedHeight = (h + 1) / 2;
+
+        BufferedImage reduced = new BufferedImage(reducedWidth, reducedHeight, BufferedImage.TYPE_INT_ARGB);
+        int[] first = new int[w];
+        int[] second = new int[w];
+        int[] line = new int[reducedWidth];
+        for (int y = 0; y < reducedHeight; ++y) {
+            getLine(top, bottom, 2 * y, first);
+            // odd edges repeat the last line and column
+            getLine(top, bottom, Math.min(2 * y + 1, h - 1), second);
+            for (int x = 0; x < reducedWidth; ++x) {
+                int next = Math.min(2 * x + 1, w - 1);
+                line[x] = average(first[2 * x], first[next], second[2 * x], second[next]);
+            }
+            reduced.setRGB(0, y, reducedWidth, 1, line, 0, reducedWidth);
+        }
+        return reduced;
+    }
+
+    private static void getLine(BufferedImage top, BufferedImage bottom, int y, int[] line) {
+        if (y < top.getHeight()) {
+            top.getRGB(0, y, line.length, 1, line, 0, line.length);
+        } else {
+            bottom.getRGB(0, y - top.getHeight(), line.length, 1, line, 0, line.length);
+        }
+    }
+
+    private static int average(int a, int b, int c, int d) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int sum = (a >>> shift & 0xff) + (b >>> shift & 0xff) + (c >>> shift & 0xff) + (d >>> shift & 0xff);
+            result |= (sum + 2) / 4 << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Reads subsampled region of the image. Only the region, reduced by the
+     * subsampling, is decoded into memory.
+     */
+    private BufferedImage readRegion(Rectangle region, int subsampling) throws IOException {
+        ImageInputStream input = ImageIO.createImageInputStream(file);
+        if (input == null) {
+            throw new IOException("Can not read " + file);
+        }
+        try {
+            ImageReader reader = getReader(input);
+            try {
+                return readRegion(reader, region, subsampling);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private BufferedImage readRegion(ImageReader reader, Rectangle region, int subsampling) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(region.intersection(new Rectangle(0, 0, width, height)));
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return reader.read(0, param);
+    }
+
+    /**
+     * Encodes one tile of the image read at the tile row.
+     *
+     * @param image image starting at the tile row
+     * @param x     left offset of the tile in the image
+     */
+    private TileData encode(BufferedImage image, int x) throws IOException {
+        boolean jpeg = FORMAT_JPEG.equals(format);
+
+        BufferedImage tile = new BufferedImage(tileSize, tileSize,
+                jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = tile.createGraphics();
+        try {
+            if (jpeg) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, tileSize, tileSize);
+            }
+            // edge tiles are only partially covered by the image
+            int w = Math.min(tileSize, image.getWidth() - x);
+            int h = Math.min(tileSize, image.getHeight());
+            if (w > 0 && h > 0) {
+                graphics.drawImage(image, 0, 0, w, h, x, 0, x + w, h, null);
+            }
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(tile, jpeg ? "jpeg" : "png", output);
+        return new TileData(output.toByteArray(), format);
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.vaadin.maps.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+
+/**
+ * In-memory tile cache bounded by total size of stored images. Least recently
+ * used tiles are evicted first.
+ *
+ * @author Kamil Morong
+ */
+public class MemoryTileCache implements TileCache {
+
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private final LinkedHashMap<String, TileData> tiles = new LinkedHashMap<>(256, 0.75f, true);
+    private final long maxSize;
+    private long size = 0;
+
+    public MemoryTileCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum total size of cached images in bytes
+     */
+    public MemoryTileCache(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public synchronized TileData get(String key) {
+        return tiles.get(key);
+    }
+
+    @Override
+    public synchronized void put(String key, TileData data) {
+        if (data.getSize() > maxSize) {
+            return;
+        }
+
+        TileData old = tiles.put(key, data);
+        if (old != null) {
+            size -= old.getSize();
+        }
+        size += data.getSize();
+
+        // evict least recently used tiles
+        Iterator<Entry<String, TileData>> iterator = tiles.entrySet().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Entry<String, TileData> entry = iterator.next();
+            if (!entry.getKey().equals(key)) {
+                size -= entry.getValue().getSize();
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        tiles.clear();
+        size = 0;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getTileCount() {
+        return tiles.size();
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.vaadin.maps.server;
+
+/**
+ * Two level tile cache, typically a fast {@link MemoryTileCache} backed by a
+ * persistent {@link DiskTileCache}. Tiles found in the second level are
+ * promoted to the first one.
+ *
+ * @author Kamil Morong
+ */
+public class TieredTileCache implements TileCache {
+
+    private final TileCache first;
+    private final TileCache second;
+
+    public TieredTileCache(TileCache first, TileCache second) {
+        if (first == null || second == null) {
+            throw new NullPointerException("Tile caches must not be null");
+        }
+        this.first = first;
+        this.second = second;
+    }
+
+    public TileCache getFirst() {
+        return first;
+    }
+
+    public TileCache getSecond() {
+        return second;
+    }
+
+    @Override
+    public TileData get(String key) {
+        TileData data = first.get(key);
+        if (data == null) {
+            data = second.get(key);
+            if (data != null) {
+                first.put(key, data);
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public void put(String key, TileData data) {
+        first.put(key, data);
+        second.put(key, data);
+    }
+
+    @Override
+    public void clear() {
+        first.clear();
+        second.clear();
+    }
+
+}
@@ -0,0 +1,29 @@
+package org.vaadin.maps.server;
+
+/**
+ * Storage of tile images keyed by normalized tile request.
+ *
+ * @author Kamil Morong
+ */
+public interface TileCache {
+
+    /**
+     * Gets cached tile.
+     *
+     * @param key normalized tile request
+     * @return cached tile or null when not present
+     */
+    TileData get(String key);
+
+    /**
+     * Stores the tile. Implementations may evict other tiles to keep their
+     * size limit.
+     *
+     * @param key  normalized tile request
+     * @param data tile image
+     */
+    void put(String key, TileData data);
+
+    void clear();
+
+}
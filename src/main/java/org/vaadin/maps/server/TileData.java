@@ -0,0 +1,33 @@
+package org.vaadin.maps.server;
+
+/**
+ * Image content of one tile.
+ *
+ * @author Kamil Morong
+ */
+public class TileData {
+
+    private final byte[] bytes;
+    private final String mimeType;
+
+    public TileData(byte[] bytes, String mimeType) {
+        if (bytes == null) {
+            throw new NullPointerException("Tile data must not be null");
+        }
+        this.bytes = bytes;
+        this.mimeType = mimeType;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public int getSize() {
+        return bytes.length;
+    }
+
+}
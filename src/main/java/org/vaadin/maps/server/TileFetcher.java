@@ -0,0 +1,410 @@
+package org.vaadin.maps.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches tile images from upstream servers in parallel. Number of concurrent
+ * requests to one host is limited, further requests wait in the host queue,
+ * so the upstream server is not flooded while requests to other hosts
+ * proceed. Failed requests are retried with exponential backoff, except
+ * those rejected by the server.
+ * <p>
+ * Fetches can be cancelled by {@link Future#cancel(boolean)}, e.g. when the
+ * tile left the view. Fetches still waiting in the queue are dropped, running
+ * fetches complete the current request and stop before the next retry. A
+ * cancelled running fetch keeps its place in the host limit until its thread
+ * finishes.
+ *
+ * @author Kamil Morong
+ */
+public class TileFetcher {
+
+    public static final int DEFAULT_MAX_THREADS = 64;
+    public static final int DEFAULT_HOST_LIMIT = 6;
+    public static final int DEFAULT_MAX_RETRIES = 2;
+    public static final long DEFAULT_RETRY_DELAY = 250;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+
+    private static final AtomicInteger fetcherCount = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * queues of waiting fetches by host, guarded by this
+     */
+    private final HashMap<String, HostQueue> hosts = new HashMap<>();
+    private final HashMap<String, Integer> hostLimits = new HashMap<>();
+
+    private volatile int hostLimit = DEFAULT_HOST_LIMIT;
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile long retryDelay = DEFAULT_RETRY_DELAY;
+    private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+
+    public TileFetcher() {
+        this(DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * Creates fetcher of limited number of threads. Threads are started on
+     * demand and stopped when idle.
+     *
+     * @param maxThreads maximum number of concurrent fetches of all hosts
+     */
+    public TileFetcher(int maxThreads) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+
+        final String prefix = "vmaps-tile-fetcher-" + fetcherCount.incrementAndGet() + "-";
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static String getHost(String url) {
+        try {
+            return new URL(url).getHost();
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+
+    public int getHostLimit() {
+        return hostLimit;
+    }
+
+    /**
+     * Sets maximum number of concurrent requests to one host.
+     *
+     * @param hostLimit number of requests, at least 1
+     */
+    public void setHostLimit(int hostLimit) {
+        if (hostLimit <= 0) {
+            throw new IllegalArgumentException("Host limit must be positive");
+        }
+        this.hostLimit = hostLimit;
+    }
+
+    /**
+     * Sets maximum number of concurrent requests to the host, overriding the
+     * default host limit.
+     *
+     * @param host      host name as in URL
+     * @param hostLimit number of requests, at least 1
+     */
+    public synchronized void setHostLimit(String host, int hostLimit) {
+        if (hostLimit <= 0) {
+            throw new IllegalArgumentException("Host limit must be positive");
+        }
+        hostLimits.put(host, hostLimit);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("Number of retries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Sets delay before the first retry in milliseconds, each next retry
+     * waits twice as long.
+     *
+     * @param retryDelay delay in milliseconds
+     */
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Queues the tile fetch.
+     *
+     * @param url upstream request
+     * @return future result of the fetch
+     */
+    public Future<TileData> fetch(final String url) {
+        Fetch fetch = new Fetch(url, getHost(url));
+        synchronized (this) {
+            HostQueue queue = hosts.get(fetch.host);
+            if (queue == null) {
+                queue = new HostQueue();
+                hosts.put(fetch.host, queue);
+            }
+            queue.waiting.add(fetch);
+            dispatch(fetch.host, queue);
+        }
+        return fetch;
+    }
+
+    /**
+     * Stops all threads, waiting fetches are cancelled.
+     */
+    public void shutdown() {
+        ArrayList<Fetch> waiting = new ArrayList<>();
+        synchronized (this) {
+            for (HostQueue queue : hosts.values()) {
+                waiting.addAll(queue.waiting);
+            }
+            hosts.clear();
+        }
+        for (Fetch fetch : waiting) {
+            fetch.cancel(false);
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts waiting fetches of the host while below its limit.
+     */
+    private void dispatch(String host, HostQueue queue) {
+        Integer limit = hostLimits.get(host);
+        int max = limit != null ? limit : hostLimit;
+
+        while (queue.running < max && !queue.waiting.isEmpty()) {
+            Fetch fetch = queue.waiting.poll();
+            if (fetch.isCancelled()) {
+                continue;
+            }
+            fetch.started = true;
+            ++queue.running;
+            try {
+                executor.execute(fetch);
+            } catch (RejectedExecutionException e) {
+                // fetcher is shut down, the fetch never runs
+                --queue.running;
+                fetch.cancel(false);
+            }
+        }
+
+        if (queue.running == 0 && queue.waiting.isEmpty()) {
+            hosts.remove(host);
+        }
+    }
+
+    /**
+     * Called when the thread of the started fetch finished.
+     */
+    private synchronized void finished(Fetch fetch) {
+        HostQueue queue = hosts.get(fetch.host);
+        if (queue != null) {
+            --queue.running;
+            dispatch(fetch.host, queue);
+        }
+    }
+
+    /**
+     * Called when the fetch was cancelled before it started.
+     */
+    private synchronized void dropped(Fetch fetch) {
+        HostQueue queue = hosts.get(fetch.host);
+        if (queue != null && !fetch.started) {
+            queue.waiting.remove(fetch);
+            dispatch(fetch.host, queue);
+        }
+    }
+
+    private TileData fetchWithRetry(String url, Future<?> fetch) throws IOException, InterruptedException {
+        for (int attempt = 0; ; ++attempt) {
+            if (fetch.isCancelled()) {
+                throw new CancellationException();
+            }
+            try {
+                return load(url);
+            } catch (FetchException e) {
+                if (!e.isRetryable() || attempt >= maxRetries) {
+                    throw e;
+                }
+            } catch (IOException e) {
+                // timeouts and broken connections
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+            }
+            Thread.sleep(retryDelay << attempt);
+        }
+    }
+
+    /**
+     * Loads the tile from upstream server.
+     *
+     * @param url upstream request
+     * @return tile image
+     * @throws IOException when the server did not return an image
+     */
+    protected TileData load(String url) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+
+        try {
+            if (connection instanceof HttpURLConnection) {
+                int status = ((HttpURLConnection) connection).getResponseCode();
+                if (status != HttpURLConnection.HTTP_OK) {
+                    // server errors may be temporary, client errors not
+                    throw new FetchException("Upstream server responded " + status + " for " + url,
+                            status >= 500 || status == 429);
+                }
+            }
+
+            // WMS reports errors as XML documents
+            String mimeType = connection.getContentType();
+            if (mimeType == null || !mimeType.startsWith("image/")) {
+                throw new FetchException("Upstream server responded " + mimeType + " for " + url, false);
+            }
+
+            InputStream input = connection.getInputStream();
+            try {
+                int length = connection.getContentLength();
+                ByteArrayOutputStream output = new ByteArrayOutputStream(length > 0 ? length : 16384);
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    output.write(buffer, 0, read);
+                }
+                return new TileData(output.toByteArray(), mimeType);
+            } finally {
+                input.close();
+            }
+        } finally {
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+    }
+
+    /**
+     * Failure of the upstream request.
+     */
+    public static class FetchException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final boolean retryable;
+
+        public FetchException(String message, boolean retryable) {
+            super(message);
+            this.retryable = retryable;
+        }
+
+        /**
+         * Returns true when the request may succeed when repeated.
+         */
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+    }
+
+    private static class HostQueue {
+        private final ArrayDeque<Fetch> waiting = new ArrayDeque<>();
+        private int running = 0;
+    }
+
+    private class FetchCall implements Callable<TileData> {
+
+        private final String url;
+        private Fetch fetch;
+
+        private FetchCall(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public TileData call() throws Exception {
+            return fetchWithRetry(url, fetch);
+        }
+
+    }
+
+    private class Fetch extends FutureTask<TileData> {
+
+        private final String host;
+        /**
+         * guarded by the fetcher
+         */
+        private boolean started = false;
+
+        private Fetch(String url, String host) {
+            this(new FetchCall(url), host);
+        }
+
+        private Fetch(FetchCall call, String host) {
+            super(call);
+            call.fetch = this;
+            this.host = host;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                // not in done(), which a cancel calls while the thread still runs
+                finished(this);
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                dropped(this);
+            }
+        }
+
+    }
+
+}
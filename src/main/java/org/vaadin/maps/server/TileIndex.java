@@ -0,0 +1,54 @@
+package org.vaadin.maps.server;
+
+/**
+ * Position of a tile in a tile grid. Columns grow to the east, rows grow to
+ * the south from the grid origin.
+ *
+ * @author Kamil Morong
+ */
+public class TileIndex {
+
+    private final int column;
+    private final int row;
+
+    public TileIndex(int column, int row) {
+        this.column = column;
+        this.row = row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (!(obj instanceof TileIndex)) {
+            return false;
+        }
+
+        TileIndex other = (TileIndex) obj;
+
+        return (column == other.column && row == other.row);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * column + row;
+    }
+
+    @Override
+    public String toString() {
+        return "column=" + column + ",row=" + row;
+    }
+
+}
@@ -0,0 +1,84 @@
+package org.vaadin.maps.server;
+
+/**
+ * One zoom level of WMTS tile matrix set.
+ *
+ * @author Kamil Morong
+ */
+public class TileMatrix {
+
+    private final String identifier;
+    private final double scaleDenominator;
+    private final LonLat topLeft;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int matrixWidth;
+    private final int matrixHeight;
+
+    /**
+     * @param identifier       identifier used in GetTile requests
+     * @param scaleDenominator scale denominator of the level
+     * @param topLeft          world coordinate of top left corner of the matrix
+     * @param tileWidth        tile width in pixels
+     * @param tileHeight       tile height in pixels
+     * @param matrixWidth      number of tile columns
+     * @param matrixHeight     number of tile rows
+     */
+    public TileMatrix(String identifier, double scaleDenominator, LonLat topLeft, int tileWidth, int tileHeight,
+                      int matrixWidth, int matrixHeight) {
+        if (scaleDenominator <= 0 || tileWidth <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("Scale and tile size must be positive");
+        }
+        this.identifier = identifier;
+        this.scaleDenominator = scaleDenominator;
+        this.topLeft = topLeft;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.matrixWidth = matrixWidth;
+        this.matrixHeight = matrixHeight;
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public double getScaleDenominator() {
+        return scaleDenominator;
+    }
+
+    public LonLat getTopLeft() {
+        return topLeft;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public int getMatrixWidth() {
+        return matrixWidth;
+    }
+
+    public int getMatrixHeight() {
+        return matrixHeight;
+    }
+
+    /**
+     * Gets the resolution of the level.
+     *
+     * @param metersPerUnit meters per world unit of the CRS
+     * @return world units per tile pixel
+     */
+    public double getResolution(double metersPerUnit) {
+        return scaleDenominator * WMTSConstants.PIXEL_SIZE / metersPerUnit;
+    }
+
+    @Override
+    public String toString() {
+        return identifier + " 1:" + scaleDenominator;
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.vaadin.maps.server;
+
+import org.vaadin.maps.ui.MapConstants;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * WMTS tile matrix set, the levels of tile pyramid of one CRS.
+ *
+ * @author Kamil Morong
+ */
+public class TileMatrixSet {
+
+    /**
+     * scale denominator of level 0 of well known GoogleMapsCompatible set
+     */
+    public static final double GOOGLE_MAPS_SCALE = 559082264.0287178;
+
+    private final String identifier;
+    private final String crs;
+    private final double metersPerUnit;
+    private final List<TileMatrix> matrices;
+
+    /**
+     * @param identifier    identifier used in GetTile requests
+     * @param crs           CRS of the set
+     * @param metersPerUnit meters per world unit of the CRS, 1 for projected
+     *                      CRS in meters,
+     *                      {@link WMTSConstants#METERS_PER_DEGREE} for
+     *                      geographic CRS
+     * @param matrices      levels of the set
+     */
+    public TileMatrixSet(String identifier, String crs, double metersPerUnit, TileMatrix... matrices) {
+        this(identifier, crs, metersPerUnit, Arrays.asList(matrices));
+    }
+
+    public TileMatrixSet(String identifier, String crs, double metersPerUnit, List<TileMatrix> matrices) {
+        if (matrices.isEmpty()) {
+            throw new IllegalArgumentException("Tile matrix set must have at least one tile matrix");
+        }
+        this.identifier = identifier;
+        this.crs = crs;
+        this.metersPerUnit = metersPerUnit;
+        this.matrices = Collections.unmodifiableList(new ArrayList<>(matrices));
+    }
+
+    /**
+     * Creates the well known GoogleMapsCompatible set in spherical mercator.
+     *
+     * @param identifier     identifier of the set on the server
+     * @param matrixIdPrefix prefix of level identifiers, the level identifier
+     *                       is the prefix followed by zoom level
+     * @param levels         number of levels
+     * @return tile matrix set
+     */
+    public static TileMatrixSet createGoogleMapsCompatible(String identifier, String matrixIdPrefix, int levels) {
+        LonLat topLeft = new LonLat(-MapConstants.MERCATOR_EXTENT, MapConstants.MERCATOR_EXTENT);
+        ArrayList<TileMatrix> matrices = new ArrayList<>();
+        for (int zoom = 0; zoom < levels; ++zoom) {
+            matrices.add(new TileMatrix(matrixIdPrefix + zoom, GOOGLE_MAPS_SCALE / (1L << zoom), topLeft,
+                    MapConstants.DEFAULT_TILE_SIZE, MapConstants.DEFAULT_TILE_SIZE,
+                    1 << zoom, 1 << zoom));
+        }
+        return new TileMatrixSet(identifier, "EPSG:3857", 1.0, matrices);
+    }
+
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public String getCRS() {
+        return crs;
+    }
+
+    public double getMetersPerUnit() {
+        return metersPerUnit;
+    }
+
+    public List<TileMatrix> getMatrices() {
+        return matrices;
+    }
+
+    public double getResolution(TileMatrix matrix) {
+        return matrix.getResolution(metersPerUnit);
+    }
+
+    /**
+     * Gets the level which resolution is nearest to the view ratio.
+     *
+     * @param ratio view world ratio
+     * @return tile matrix
+     */
+    public TileMatrix getMatrix(double ratio) {
+        TileMatrix nearest = null;
+        double distance = Double.MAX_VALUE;
+        for (TileMatrix matrix : matrices) {
+            double d = Math.abs(Math.log(getResolution(matrix) * ratio));
+            if (d < distance) {
+                distance = d;
+                nearest = matrix;
+            }
+        }
+        return nearest;
+    }
+
+}
@@ -0,0 +1,247 @@
+package org.vaadin.maps.server;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects tile load statistics of layers: request to load latency histogram,
+ * error rate, and bytes and cache hit ratio of tiles served by the
+ * {@link TileProxy}. One instance may be shared by layers of more sessions.
+ * <p>
+ * The statistics can be published to JMX by {@link #registerMBean()}, or each
+ * observation passed to external metrics system by {@link TileMetricsSink}.
+ *
+ * @author Kamil Morong
+ */
+public class TileMetrics implements TileMetricsMBean {
+
+    public static final String DOMAIN = "org.vaadin.maps";
+
+    /**
+     * upper bounds of latency histogram buckets in milliseconds, last bucket
+     * counts longer latencies
+     */
+    private static final long[] LATENCY_BOUNDS = {50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final String name;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong measuredLoads = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(LATENCY_BOUNDS.length + 1);
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    private volatile TileMetricsSink sink = null;
+    private ObjectName objectName = null;
+
+    public TileMetrics(String name) {
+        if (name == null) {
+            throw new NullPointerException("Name must not be null");
+        }
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public TileMetricsSink getSink() {
+        return sink;
+    }
+
+    public void setSink(TileMetricsSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Records that the client started loading a tile image.
+     */
+    public void recordRequest() {
+        requests.incrementAndGet();
+    }
+
+    /**
+     * Records loaded tile image.
+     *
+     * @param latency time from request to load in milliseconds, negative when
+     *                unknown
+     */
+    public void recordLoad(long latency) {
+        loads.incrementAndGet();
+        if (latency >= 0) {
+            measuredLoads.incrementAndGet();
+            totalLatency.addAndGet(latency);
+
+            int bucket = 0;
+            while (bucket < LATENCY_BOUNDS.length && latency > LATENCY_BOUNDS[bucket]) {
+                ++bucket;
+            }
+            histogram.incrementAndGet(bucket);
+        }
+
+        TileMetricsSink sink = this.sink;
+        if (sink != null) {
+            sink.tileLoaded(name, latency >= 0 ? latency : -1);
+        }
+    }
+
+    /**
+     * Records tile image which failed to load.
+     */
+    public void recordError() {
+        errors.incrementAndGet();
+
+        TileMetricsSink sink = this.sink;
+        if (sink != null) {
+            sink.tileFailed(name);
+        }
+    }
+
+    /**
+     * Records tile image served by the tile proxy.
+     *
+     * @param size     size of the image in bytes
+     * @param cacheHit true when the image was served from the cache
+     */
+    public void recordServed(int size, boolean cacheHit) {
+        bytes.addAndGet(size);
+        if (cacheHit) {
+            cacheHits.incrementAndGet();
+        } else {
+            cacheMisses.incrementAndGet();
+        }
+
+        TileMetricsSink sink = this.sink;
+        if (sink != null) {
+            sink.tileServed(name, size, cacheHit);
+        }
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public long getLoadCount() {
+        return loads.get();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /**
+     * Gets ratio of failed tiles to all finished tiles.
+     */
+    @Override
+    public double getErrorRate() {
+        long errors = this.errors.get();
+        long total = loads.get() + errors;
+        return total > 0 ? (double) errors / total : 0.0;
+    }
+
+    /**
+     * Gets mean request to load latency in milliseconds.
+     */
+    @Override
+    public double getMeanLatency() {
+        long count = measuredLoads.get();
+        return count > 0 ? (double) totalLatency.get() / count : 0.0;
+    }
+
+    /**
+     * Gets upper bounds of latency histogram buckets in milliseconds. The
+     * histogram has one more bucket for longer latencies.
+     */
+    @Override
+    public long[] getLatencyBounds() {
+        return LATENCY_BOUNDS.clone();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] counts = new long[histogram.length()];
+        for (int i = 0; i < counts.length; ++i) {
+            counts[i] = histogram.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public long getBytesServed() {
+        return bytes.get();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    @Override
+    public double getCacheHitRatio() {
+        long hits = cacheHits.get();
+        long total = hits + cacheMisses.get();
+        return total > 0 ? (double) hits / total : 0.0;
+    }
+
+    @Override
+    public void reset() {
+        requests.set(0);
+        loads.set(0);
+        errors.set(0);
+        measuredLoads.set(0);
+        totalLatency.set(0);
+        for (int i = 0; i < histogram.length(); ++i) {
+            histogram.set(i, 0);
+        }
+        bytes.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+    }
+
+    /**
+     * Registers the metrics to the platform MBean server as
+     * <code>org.vaadin.maps:type=TileMetrics,name=&lt;name&gt;</code>.
+     *
+     * @throws JMException when the registration failed
+     */
+    public synchronized void registerMBean() throws JMException {
+        if (objectName == null) {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=TileMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server.
+     *
+     * @throws JMException when the removal failed
+     */
+    public synchronized void unregisterMBean() throws JMException {
+        if (objectName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            objectName = null;
+        }
+    }
+
+}
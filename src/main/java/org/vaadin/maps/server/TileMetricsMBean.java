@@ -0,0 +1,36 @@
+package org.vaadin.maps.server;
+
+/**
+ * Management interface of {@link TileMetrics}.
+ *
+ * @author Kamil Morong
+ */
+public interface TileMetricsMBean {
+
+    String getName();
+
+    long getRequestCount();
+
+    long getLoadCount();
+
+    long getErrorCount();
+
+    double getErrorRate();
+
+    double getMeanLatency();
+
+    long[] getLatencyBounds();
+
+    long[] getLatencyHistogram();
+
+    long getBytesServed();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    double getCacheHitRatio();
+
+    void reset();
+
+}
@@ -0,0 +1,36 @@
+package org.vaadin.maps.server;
+
+/**
+ * Receives each observation recorded by {@link TileMetrics}, to pass it to an
+ * external metrics system.
+ *
+ * @author Kamil Morong
+ */
+public interface TileMetricsSink {
+
+    /**
+     * Tile image was loaded by the client.
+     *
+     * @param name    name of the metrics
+     * @param latency time from request to load in milliseconds, or -1 when
+     *                unknown
+     */
+    void tileLoaded(String name, long latency);
+
+    /**
+     * Tile image failed to load in the client.
+     *
+     * @param name name of the metrics
+     */
+    void tileFailed(String name);
+
+    /**
+     * Tile image was served by the tile proxy.
+     *
+     * @param name     name of the metrics
+     * @param bytes    size of the image
+     * @param cacheHit true when the image was served from the cache
+     */
+    void tileServed(String name, int bytes, boolean cacheHit);
+
+}
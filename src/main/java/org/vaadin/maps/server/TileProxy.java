@@ -0,0 +1,659 @@
+package org.vaadin.maps.server;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Fetches tile images from upstream servers on behalf of all sessions. Fetched
+ * tiles are kept in the {@link TileCache}. Concurrent requests of the same
+ * tile share one upstream fetch. Upstream requests are made by the
+ * {@link TileFetcher}, which limits concurrent requests per host.
+ * <p>
+ * Only base URLs registered by {@link #registerSource(String)} are fetched, so
+ * the proxy cannot be used to access arbitrary hosts.
+ * <p>
+ * To keep tiles across application restarts set a {@link TieredTileCache} of
+ * {@link MemoryTileCache} and {@link DiskTileCache} by
+ * {@link #setCache(TileCache)}.
+ *
+ * @author Kamil Morong
+ */
+public class TileProxy {
+
+    /**
+     * maximum width and height of composite images, single tiles of large
+     * views with buffer are up to twice the view size
+     */
+    public static final int DEFAULT_MAX_IMAGE_SIZE = 8192;
+
+    /**
+     * maximum number of pixels of composite images, 128 MB of ARGB raster
+     */
+    public static final int DEFAULT_MAX_IMAGE_PIXELS = 32 * 1024 * 1024;
+
+    private static final TileProxy instance = new TileProxy(new MemoryTileCache());
+
+    private final ConcurrentHashMap<String, String> sources = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, PendingTile> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, WMSComposite> composites = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ImagePyramid> pyramids = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TileMetrics> metrics = new ConcurrentHashMap<>();
+
+    private volatile TileCache cache;
+    private volatile TileFetcher fetcher;
+    private volatile int maxImageSize = DEFAULT_MAX_IMAGE_SIZE;
+    private volatile int maxImagePixels = DEFAULT_MAX_IMAGE_PIXELS;
+
+    public TileProxy(TileCache cache) {
+        this(cache, new TileFetcher());
+    }
+
+    public TileProxy(TileCache cache, TileFetcher fetcher) {
+        setCache(cache);
+        setFetcher(fetcher);
+    }
+
+    /**
+     * Gets the proxy shared by all sessions of the application.
+     */
+    public static TileProxy getInstance() {
+        return instance;
+    }
+
+    public TileCache getCache() {
+        return cache;
+    }
+
+    public void setCache(TileCache cache) {
+        if (cache == null) {
+            throw new NullPointerException("Tile cache must not be null");
+        }
+        this.cache = cache;
+    }
+
+    public TileFetcher getFetcher() {
+        return fetcher;
+    }
+
+    public void setFetcher(TileFetcher fetcher) {
+        if (fetcher == null) {
+            throw new NullPointerException("Tile fetcher must not be null");
+        }
+        this.fetcher = fetcher;
+    }
+
+    public int getMaxImageSize() {
+        return maxImageSize;
+    }
+
+    /**
+     * Sets maximum width and height of images composed by the proxy. Larger
+     * requests are refused before any image is fetched or allocated.
+     *
+     * @param maxImageSize size in pixels
+     */
+    public void setMaxImageSize(int maxImageSize) {
+        if (maxImageSize <= 0) {
+            throw new IllegalArgumentException("Maximum image size must be positive");
+        }
+        this.maxImageSize = maxImageSize;
+    }
+
+    public int getMaxImagePixels() {
+        return maxImagePixels;
+    }
+
+    /**
+     * Sets maximum number of pixels of images composed by the proxy. Larger
+     * requests are refused before any image is fetched or allocated.
+     *
+     * @param maxImagePixels number of pixels
+     */
+    public void setMaxImagePixels(int maxImagePixels) {
+        if (maxImagePixels <= 0) {
+            throw new IllegalArgumentException("Maximum number of image pixels must be positive");
+        }
+        this.maxImagePixels = maxImagePixels;
+    }
+
+    /**
+     * Registers upstream base URL to be served by the proxy.
+     *
+     * @param baseUrl upstream base URL
+     * @return identifier of the source used in proxy requests
+     */
+    public String registerSource(String baseUrl) {
+        String id = Integer.toHexString(baseUrl.hashCode());
+        for (int i = 1; ; ++i) {
+            String existing = sources.putIfAbsent(id, baseUrl);
+            if (existing == null || existing.equals(baseUrl)) {
+                return id;
+            }
+            // hash collision of different base URLs
+            id = Integer.toHexString(baseUrl.hashCode()) + "-" + i;
+        }
+    }
+
+    /**
+     * Gets registered upstream base URL.
+     *
+     * @param id identifier of the source
+     * @return base URL or null when the source is not registered
+     */
+    public String getSourceUrl(String id) {
+        return sources.get(id);
+    }
+
+    /**
+     * Sets metrics of tiles served from the source. Sources are shared by all
+     * sessions, so all layers of the base URL should use the same metrics.
+     *
+     * @param baseUrl upstream base URL
+     * @param metrics metrics to record served tiles or null
+     */
+    public void setSourceMetrics(String baseUrl, TileMetrics metrics) {
+        String id = registerSource(baseUrl);
+        if (metrics != null) {
+            this.metrics.put(id, metrics);
+        } else {
+            this.metrics.remove(id);
+        }
+    }
+
+    /**
+     * Sets metrics of tiles served from the image pyramid.
+     *
+     * @param pyramid image pyramid
+     * @param metrics metrics to record served tiles or null
+     */
+    public void setPyramidMetrics(ImagePyramid pyramid, TileMetrics metrics) {
+        String id = registerPyramid(pyramid);
+        if (metrics != null) {
+            this.metrics.put(id, metrics);
+        } else {
+            this.metrics.remove(id);
+        }
+    }
+
+    /**
+     * Sets metrics of images served for the composite.
+     *
+     * @param composite composite of WMS layers
+     * @param metrics   metrics to record served images or null
+     */
+    public void setCompositeMetrics(WMSComposite composite, TileMetrics metrics) {
+        String id = registerComposite(composite);
+        if (metrics != null) {
+            this.metrics.put(id, metrics);
+        } else {
+            this.metrics.remove(id);
+        }
+    }
+
+    /**
+     * Gets metrics of tiles served from the source.
+     *
+     * @param id identifier of the source
+     * @return metrics or null
+     */
+    public TileMetrics getSourceMetrics(String id) {
+        return metrics.get(id);
+    }
+
+    /**
+     * Gets the tile from the cache, or fetches it from upstream server. When
+     * the same tile is being fetched already, waits for that fetch.
+     *
+     * @param url normalized upstream request, serves as the cache key
+     * @return tile image
+     * @throws IOException when the upstream fetch failed
+     */
+    public TileData getTile(String url) throws IOException {
+        return getTile(url, null);
+    }
+
+    /**
+     * Gets the tile as {@link #getTile(String)} and records it to the
+     * metrics. Tiles served without upstream fetch count as cache hits.
+     *
+     * @param url     normalized upstream request, serves as the cache key
+     * @param metrics metrics to record the tile or null
+     * @return tile image
+     * @throws IOException when the upstream fetch failed
+     */
+    public TileData getTile(String url, TileMetrics metrics) throws IOException {
+        return getTile(url, metrics, null);
+    }
+
+    /**
+     * Gets the tile as {@link #getTile(String, TileMetrics)} on behalf of the
+     * requester, which may cancel the fetch by
+     * {@link #cancel(String, Object)}.
+     *
+     * @param url       normalized upstream request, serves as the cache key
+     * @param metrics   metrics to record the tile or null
+     * @param requester requester of the tile, e.g. the session, or null
+     * @return tile image
+     * @throws IOException when the upstream fetch failed or was cancelled
+     */
+    public TileData getTile(String url, TileMetrics metrics, Object requester) throws IOException {
+        if (requester == null) {
+            requester = new Object();
+        }
+
+        TileData data = cache.get(url);
+        if (data == null) {
+            PendingTile tile = join(new FetchedTile(url), requester);
+            data = await(tile, requester);
+            if (metrics != null) {
+                metrics.recordServed(data.getSize(), !tile.isOwner());
+            }
+        } else if (metrics != null) {
+            metrics.recordServed(data.getSize(), true);
+        }
+        return data;
+    }
+
+    /**
+     * Gets more tiles at once, missing tiles are fetched in parallel.
+     *
+     * @param urls normalized upstream requests
+     * @return tile images in order of requests
+     * @throws IOException when an upstream fetch failed
+     */
+    public List<TileData> getTiles(List<String> urls) throws IOException {
+        Object requester = new Object();
+        TileData[] tiles = new TileData[urls.size()];
+        PendingTile[] pendingTiles = new PendingTile[urls.size()];
+
+        // start all fetches before waiting for any
+        for (int i = 0; i < tiles.length; ++i) {
+            tiles[i] = cache.get(urls.get(i));
+            if (tiles[i] == null) {
+                pendingTiles[i] = join(new FetchedTile(urls.get(i)), requester);
+                pendingTiles[i].start();
+            }
+        }
+
+        int awaited = 0;
+        try {
+            for (; awaited < tiles.length; ++awaited) {
+                if (pendingTiles[awaited] != null) {
+                    tiles[awaited] = await(pendingTiles[awaited], requester);
+                }
+            }
+        } finally {
+            // after a failure the remaining tiles are not awaited, tiles of
+            // this request must not stay pending for requests which joined
+            for (int i = awaited + 1; i < tiles.length; ++i) {
+                if (pendingTiles[i] != null) {
+                    abandon(pendingTiles[i], requester);
+                }
+            }
+        }
+        return Arrays.asList(tiles);
+    }
+
+    /**
+     * Registers the composite of WMS layers to be served by the proxy.
+     *
+     * @param composite composite of WMS layers
+     * @return identifier of the source used in proxy requests
+     */
+    public String registerComposite(WMSComposite composite) {
+        String key = composite.getKey();
+        String id = "c" + Integer.toHexString(key.hashCode());
+        for (int i = 1; ; ++i) {
+            WMSComposite existing = composites.putIfAbsent(id, new WMSComposite(composite));
+            if (existing == null || existing.equals(composite)) {
+                return id;
+            }
+            // hash collision of different composites
+            id = "c" + Integer.toHexString(key.hashCode()) + "-" + i;
+        }
+    }
+
+    /**
+     * Gets registered composite of WMS layers.
+     *
+     * @param id identifier of the source
+     * @return composite or null when the source is not registered
+     */
+    public WMSComposite getComposite(String id) {
+        return composites.get(id);
+    }
+
+    /**
+     * Registers the image pyramid to be served by the proxy.
+     *
+     * @param pyramid image pyramid
+     * @return identifier of the source used in proxy requests
+     */
+    public String registerPyramid(ImagePyramid pyramid) {
+        String key = pyramid.getKey();
+        String id = "p" + Integer.toHexString(key.hashCode());
+        for (int i = 1; ; ++i) {
+            ImagePyramid existing = pyramids.putIfAbsent(id, pyramid);
+            if (existing == null || existing.getKey().equals(key)) {
+                return id;
+            }
+            // hash collision of different pyramids
+            id = "p" + Integer.toHexString(key.hashCode()) + "-" + i;
+        }
+    }
+
+    /**
+     * Gets registered image pyramid.
+     *
+     * @param id identifier of the source
+     * @return image pyramid or null when the source is not registered
+     */
+    public ImagePyramid getPyramid(String id) {
+        return pyramids.get(id);
+    }
+
+    /**
+     * Gets the composite image from the cache, or fetches images of all
+     * layers of the composite in parallel and composes them.
+     *
+     * @param composite  composite of WMS layers
+     * @param parameters GetMap parameters of the composite image
+     * @param metrics    metrics to record the image or null
+     * @return composite image
+     * @throws IOException              when an upstream fetch or composition
+     *                                  failed
+     * @throws IllegalArgumentException when the image size is invalid or
+     *                                  exceeds the maximum image size or
+     *                                  number of pixels
+     */
+    public TileData getCompositeTile(final WMSComposite composite, final Map<String, String> parameters,
+                                     TileMetrics metrics) throws IOException {
+        TreeMap<String, String> sorted = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        sorted.putAll(parameters);
+        final int width = getImageSize(sorted.get(WMSConstants.PARAM_WIDTH));
+        final int height = getImageSize(sorted.get(WMSConstants.PARAM_HEIGHT));
+        if ((long) width * height > maxImagePixels) {
+            throw new IllegalArgumentException("Size of composite image exceeds the limit");
+        }
+        final String format = sorted.get(WMSConstants.PARAM_FORMAT);
+
+        String key = "composite:" + composite.getKey() + "?" + TileRequestHandler.normalizeQuery(parameters);
+
+        TileData data = cache.get(key);
+        if (data == null) {
+            Object requester = new Object();
+            PendingTile tile = join(new PendingTile(key) {
+                @Override
+                protected TileData load() throws Exception {
+                    return composite.compose(getTiles(composite.getLayerUrls(parameters)), width, height, format);
+                }
+            }, requester);
+            data = await(tile, requester);
+            if (metrics != null) {
+                metrics.recordServed(data.getSize(), !tile.isOwner());
+            }
+        } else if (metrics != null) {
+            metrics.recordServed(data.getSize(), true);
+        }
+        return data;
+    }
+
+    private int getImageSize(String value) {
+        int size;
+        try {
+            size = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size of composite image", e);
+        }
+        if (size <= 0 || size > maxImageSize) {
+            throw new IllegalArgumentException("Invalid size of composite image");
+        }
+        return size;
+    }
+
+    /**
+     * Cancels upstream fetch of the tile which is no longer needed by the
+     * requester, e.g. it left the view. The fetch is cancelled only when all
+     * requests still waiting for it were made by the requester, requests of
+     * other requesters get the tile. A fetch waiting in the host queue of the
+     * {@link TileFetcher} is dropped, a running fetch stops before its next
+     * retry.
+     *
+     * @param url       normalized upstream request
+     * @param requester requester of the tile, as given to
+     *                  {@link #getTile(String, TileMetrics, Object)}
+     */
+    public void cancel(String url, Object requester) {
+        PendingTile tile = pending.get(url);
+        if (tile != null) {
+            tile.cancel(requester);
+        }
+    }
+
+    /**
+     * Fetches the tile from upstream server.
+     *
+     * @param url upstream request
+     * @return future tile image
+     */
+    protected Future<TileData> fetch(String url) {
+        return fetcher.fetch(url);
+    }
+
+    /**
+     * Joins the pending tile of the same key, or makes the tile pending.
+     * Cancelled tiles are not joined.
+     */
+    private PendingTile join(PendingTile tile, Object requester) {
+        tile.enter(requester);
+        for (; ; ) {
+            PendingTile existing = pending.putIfAbsent(tile.key, tile);
+            if (existing == null) {
+                tile.owner = Thread.currentThread();
+                return tile;
+            }
+            if (existing.enter(requester)) {
+                return existing;
+            }
+            pending.remove(tile.key, existing);
+        }
+    }
+
+    /**
+     * Leaves the pending tile which is not awaited. When other requests wait
+     * for the tile of this thread, it is loaded for them, otherwise its fetch
+     * is cancelled.
+     */
+    private void abandon(PendingTile tile, Object requester) {
+        boolean waited = tile.leave(requester);
+        if (tile.isOwner()) {
+            pending.remove(tile.key, tile);
+            if (waited) {
+                tile.task.run();
+            } else {
+                tile.cancel(null);
+                // a request joined meanwhile fails instead of waiting
+                tile.task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Waits for the pending tile, the thread which made the tile pending loads
+     * it.
+     */
+    private TileData await(PendingTile tile, Object requester) throws IOException {
+        try {
+            if (tile.isOwner()) {
+                try {
+                    tile.task.run();
+                } finally {
+                    pending.remove(tile.key, tile);
+                }
+            }
+            return tile.task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for tile", e);
+        } catch (CancellationException e) {
+            throw new IOException("Tile fetch cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof CancellationException) {
+                throw new IOException("Tile fetch cancelled", cause);
+            }
+            throw new IOException("Tile fetch failed", cause);
+        } finally {
+            tile.leave(requester);
+        }
+    }
+
+    /**
+     * Tile being loaded, shared by all requests of the same key.
+     */
+    private abstract class PendingTile implements Callable<TileData> {
+
+        private final String key;
+        private final FutureTask<TileData> task = new FutureTask<>(this);
+        private volatile Thread owner = null;
+
+        /**
+         * number of waiting requests by requester, guarded by this
+         */
+        private final HashMap<Object, Integer> requesters = new HashMap<>();
+        private boolean cancelled = false;
+
+        private PendingTile(String key) {
+            this.key = key;
+        }
+
+        private boolean isOwner() {
+            return owner == Thread.currentThread();
+        }
+
+        /**
+         * Starts loading in background before the owner waits for the tile.
+         */
+        protected void start() {
+        }
+
+        protected abstract TileData load() throws Exception;
+
+        protected synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Adds waiting request of the requester.
+         *
+         * @return false when the tile is cancelled already
+         */
+        private synchronized boolean enter(Object requester) {
+            if (cancelled) {
+                return false;
+            }
+            Integer count = requesters.get(requester);
+            requesters.put(requester, count != null ? count + 1 : 1);
+            return true;
+        }
+
+        /**
+         * Removes waiting request of the requester.
+         *
+         * @return true when other requests still wait for the tile
+         */
+        private synchronized boolean leave(Object requester) {
+            Integer count = requesters.get(requester);
+            if (count != null) {
+                if (count > 1) {
+                    requesters.put(requester, count - 1);
+                } else {
+                    requesters.remove(requester);
+                }
+            }
+            return !requesters.isEmpty();
+        }
+
+        /**
+         * Cancels loading of the tile when only requests of the requester
+         * wait for it.
+         *
+         * @param requester requester of the tile, null cancels regardless of
+         *                  waiting requests
+         */
+        protected synchronized void cancel(Object requester) {
+            if (requester == null || (requesters.size() == 1 && requesters.containsKey(requester))) {
+                cancelled = true;
+                cancelLoad();
+            }
+        }
+
+        /**
+         * Cancels loading of the tile, called with the tile locked.
+         */
+        protected void cancelLoad() {
+        }
+
+        @Override
+        public TileData call() throws Exception {
+            TileData data = load();
+            cache.put(key, data);
+            return data;
+        }
+
+    }
+
+    private class FetchedTile extends PendingTile {
+
+        private volatile Future<TileData> fetch = null;
+
+        private FetchedTile(String url) {
+            super(url);
+        }
+
+        @Override
+        protected synchronized void start() {
+            if (fetch == null) {
+                fetch = fetch(super.key);
+                if (isCancelled()) {
+                    fetch.cancel(false);
+                }
+            }
+        }
+
+        @Override
+        protected TileData load() throws Exception {
+            start();
+            try {
+                return fetch.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        protected void cancelLoad() {
+            if (fetch != null) {
+                fetch.cancel(false);
+            }
+        }
+
+    }
+
+}
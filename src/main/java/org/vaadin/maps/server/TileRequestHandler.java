@@ -0,0 +1,201 @@
+package org.vaadin.maps.server;
+
+import com.vaadin.server.RequestHandler;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinResponse;
+import com.vaadin.server.VaadinSession;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Serves tile requests of proxied tile resources, composite WMS images and
+ * image pyramid tiles through the {@link TileProxy}. Request parameters are normalized, so equal tiles share
+ * one cache entry regardless of parameter order and case of names.
+ *
+ * @author Kamil Morong
+ */
+public class TileRequestHandler implements RequestHandler {
+
+    public static final String PATH = "vmaps-tile";
+
+    /**
+     * browser cache time of served tiles
+     */
+    public static final long DEFAULT_CACHE_TIME = 60 * 60 * 1000L;
+
+    public static final String PARAM_LEVEL = "Z";
+    public static final String PARAM_COLUMN = "X";
+    public static final String PARAM_ROW = "Y";
+
+    private static final String PATH_PREFIX = "/" + PATH + "/";
+    private static final String ENCODING = "UTF-8";
+
+    private final TileProxy proxy;
+
+    public TileRequestHandler() {
+        this(TileProxy.getInstance());
+    }
+
+    public TileRequestHandler(TileProxy proxy) {
+        this.proxy = proxy;
+    }
+
+    /**
+     * Adds the tile request handler to the session unless already present.
+     * Must be called with the session locked.
+     *
+     * @param session session to serve the tiles in
+     */
+    public static void register(VaadinSession session) {
+        if (session != null) {
+            for (RequestHandler handler : session.getRequestHandlers()) {
+                if (handler instanceof TileRequestHandler) {
+                    return;
+                }
+            }
+            session.addRequestHandler(new TileRequestHandler());
+        }
+    }
+
+    /**
+     * Builds URL of the proxied tile.
+     *
+     * @param sourceId   identifier of registered upstream source
+     * @param parameters tile request parameters
+     * @return application relative URL
+     */
+    public static String buildUrl(String sourceId, Map<String, String> parameters) {
+        return "app://" + PATH + "/" + sourceId + "?" + normalizeQuery(parameters);
+    }
+
+    /**
+     * Builds normalized upstream request, which is the key of the tile in the
+     * {@link TileProxy}.
+     *
+     * @param baseUrl    upstream base URL
+     * @param parameters tile request parameters
+     * @return upstream URL
+     */
+    public static String buildUpstreamUrl(String baseUrl, Map<String, String> parameters) {
+        StringBuilder url = new StringBuilder(baseUrl);
+        if (!baseUrl.contains("?")) {
+            url.append("?");
+        } else if (!baseUrl.endsWith("?") && !baseUrl.endsWith("&")) {
+            url.append("&");
+        }
+        return url.append(normalizeQuery(parameters)).toString();
+    }
+
+    /**
+     * Builds query string with parameter names in upper case, sorted by name.
+     *
+     * @param parameters request parameters
+     * @return encoded query string
+     */
+    public static String normalizeQuery(Map<String, String> parameters) {
+        TreeMap<String, String> sorted = new TreeMap<>();
+        for (Entry<String, String> entry : parameters.entrySet()) {
+            sorted.put(entry.getKey().toUpperCase(), entry.getValue() != null ? entry.getValue() : "");
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (Entry<String, String> entry : sorted.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append("&");
+            }
+            builder.append(encode(entry.getKey())).append("=").append(encode(entry.getValue()));
+        }
+        return builder.toString();
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, ENCODING);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean handleRequest(VaadinSession session, VaadinRequest request, VaadinResponse response)
+            throws IOException {
+        String pathInfo = request.getPathInfo();
+        if (pathInfo == null || !pathInfo.startsWith(PATH_PREFIX)) {
+            return false;
+        }
+
+        String sourceId = pathInfo.substring(PATH_PREFIX.length());
+        String baseUrl = proxy.getSourceUrl(sourceId);
+        WMSComposite composite = proxy.getComposite(sourceId);
+        ImagePyramid pyramid = proxy.getPyramid(sourceId);
+        if (baseUrl == null && composite == null && pyramid == null) {
+            response.sendError(404, "Unknown tile source");
+            return true;
+        }
+
+        TreeMap<String, String> parameters = new TreeMap<>();
+        for (Entry<String, String[]> entry : request.getParameterMap().entrySet()) {
+            String[] values = entry.getValue();
+            parameters.put(entry.getKey(), values != null && values.length > 0 ? values[0] : "");
+        }
+
+        TileData data;
+        try {
+            if (pyramid != null) {
+                data = getPyramidTile(pyramid, parameters);
+                if (data == null) {
+                    response.sendError(404, "Tile out of the image");
+                    return true;
+                }
+                TileMetrics metrics = proxy.getSourceMetrics(sourceId);
+                if (metrics != null) {
+                    metrics.recordServed(data.getSize(), true);
+                }
+            } else if (composite != null) {
+                data = proxy.getCompositeTile(composite, parameters, proxy.getSourceMetrics(sourceId));
+            } else {
+                // tiles leaving the view of the session cancel its fetches
+                data = proxy.getTile(buildUpstreamUrl(baseUrl, parameters), proxy.getSourceMetrics(sourceId),
+                        session);
+            }
+        } catch (NumberFormatException e) {
+            response.sendError(400, "Invalid tile index");
+            return true;
+        } catch (IllegalArgumentException e) {
+            response.sendError(400, "Invalid tile size");
+            return true;
+        } catch (IOException e) {
+            // the message may contain upstream URLs
+            response.sendError(502, "Tile could not be loaded");
+            return true;
+        }
+
+        response.setStatus(200);
+        response.setContentType(data.getMimeType());
+        response.setCacheTime(DEFAULT_CACHE_TIME);
+        response.setHeader("Content-Length", String.valueOf(data.getSize()));
+
+        OutputStream output = response.getOutputStream();
+        try {
+            output.write(data.getBytes());
+        } finally {
+            output.close();
+        }
+        return true;
+    }
+
+    private static TileData getPyramidTile(ImagePyramid pyramid, Map<String, String> parameters)
+            throws IOException {
+        TreeMap<String, String> sorted = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        sorted.putAll(parameters);
+        return pyramid.getTile(Integer.parseInt(sorted.get(PARAM_LEVEL)), Integer.parseInt(sorted.get(PARAM_COLUMN)),
+                Integer.parseInt(sorted.get(PARAM_ROW)));
+    }
+
+}
@@ -0,0 +1,212 @@
+package org.vaadin.maps.server;
+
+import org.vaadin.maps.ui.layer.WMSLayer;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stack of WMS layers composed into one image on the server. Images of the
+ * layers are fetched in parallel by the {@link TileProxy} and drawn in order
+ * of addition, the first layer at the bottom, so the browser downloads one
+ * image instead of one per layer.
+ *
+ * @author Kamil Morong
+ */
+public class WMSComposite {
+
+    /**
+     * format layer images are requested in, keeps transparency
+     */
+    public static final String LAYER_FORMAT = "image/png";
+
+    private final ArrayList<Member> members = new ArrayList<>();
+
+    public WMSComposite() {
+    }
+
+    public WMSComposite(WMSComposite composite) {
+        members.addAll(composite.members);
+    }
+
+    /**
+     * Adds layer on top of the stack.
+     *
+     * @param baseUrl base URL of the service
+     * @param layers  requested layers
+     * @param styles  requested styles
+     */
+    public void addLayer(String baseUrl, String layers, String styles) {
+        addLayer(baseUrl, layers, styles, 1.0f);
+    }
+
+    /**
+     * Adds layer on top of the stack.
+     *
+     * @param baseUrl base URL of the service
+     * @param layers  requested layers
+     * @param styles  requested styles
+     * @param opacity opacity of the layer from 0 to 1
+     */
+    public void addLayer(String baseUrl, String layers, String styles, float opacity) {
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            throw new IllegalArgumentException("Base URL must not be empty");
+        }
+        if (opacity < 0 || opacity > 1) {
+            throw new IllegalArgumentException("Opacity must be between 0 and 1");
+        }
+        members.add(new Member(baseUrl, layers != null ? layers : "", styles != null ? styles : "", opacity));
+    }
+
+    /**
+     * Adds layer of the same service, layers and styles as the WMS layer on
+     * top of the stack.
+     *
+     * @param layer WMS layer
+     */
+    public void addLayer(WMSLayer layer) {
+        addLayer(layer.getBaseUrl(), layer.getLayers(), layer.getStyles());
+    }
+
+    public List<Member> getMembers() {
+        return Collections.unmodifiableList(members);
+    }
+
+    public boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    /**
+     * Gets string identifying the composite, equal composites have equal
+     * keys.
+     */
+    public String getKey() {
+        StringBuilder key = new StringBuilder();
+        for (Member member : members) {
+            if (key.length() > 0) {
+                key.append('|');
+            }
+            key.append(member.baseUrl).append('#').append(member.layers).append('#').append(member.styles)
+                    .append('#').append(member.opacity);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Builds upstream requests of all layers for the composite request.
+     *
+     * @param parameters GetMap parameters of the composite image
+     * @return normalized upstream requests in stack order
+     */
+    public List<String> getLayerUrls(Map<String, String> parameters) {
+        TreeMap<String, String> layerParameters = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        layerParameters.putAll(parameters);
+        layerParameters.put(WMSConstants.PARAM_FORMAT, LAYER_FORMAT);
+        layerParameters.put(WMSConstants.PARAM_TRANSPARENT, "TRUE");
+
+        ArrayList<String> urls = new ArrayList<>(members.size());
+        for (Member member : members) {
+            layerParameters.put(WMSConstants.PARAM_LAYERS, member.layers);
+            layerParameters.put(WMSConstants.PARAM_STYLES, member.styles);
+            urls.add(TileRequestHandler.buildUpstreamUrl(member.baseUrl, layerParameters));
+        }
+        return urls;
+    }
+
+    /**
+     * Draws layer images over each other.
+     *
+     * @param images images of the layers in stack order
+     * @param width  width of the composite image
+     * @param height height of the composite image
+     * @param format MIME type of the composite image, PNG when not supported
+     * @return composite image
+     * @throws IOException when a layer image can not be decoded
+     */
+    public TileData compose(List<TileData> images, int width, int height, String format) throws IOException {
+        boolean jpeg = "image/jpeg".equalsIgnoreCase(format);
+
+        BufferedImage composite = new BufferedImage(width, height,
+                jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = composite.createGraphics();
+        try {
+            if (jpeg) {
+                // JPEG has no transparency
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+
+            for (int i = 0; i < images.size() && i < members.size(); ++i) {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(images.get(i).getBytes()));
+                if (image == null) {
+                    throw new IOException("Unsupported image of layer " + members.get(i).layers);
+                }
+                graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, members.get(i).opacity));
+                graphics.drawImage(image, 0, 0, width, height, null);
+            }
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(composite, jpeg ? "jpeg" : "png", output);
+        return new TileData(output.toByteArray(), jpeg ? "image/jpeg" : LAYER_FORMAT);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof WMSComposite && getKey().equals(((WMSComposite) obj).getKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return getKey().hashCode();
+    }
+
+    /**
+     * Layer of the composite.
+     */
+    public static class Member {
+
+        private final String baseUrl;
+        private final String layers;
+        private final String styles;
+        private final float opacity;
+
+        private Member(String baseUrl, String layers, String styles, float opacity) {
+            this.baseUrl = baseUrl;
+            this.layers = layers;
+            this.styles = styles;
+            this.opacity = opacity;
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public String getLayers() {
+            return layers;
+        }
+
+        public String getStyles() {
+            return styles;
+        }
+
+        public float getOpacity() {
+            return opacity;
+        }
+
+    }
+
+}
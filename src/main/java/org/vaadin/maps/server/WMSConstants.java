@@ -6,6 +6,7 @@ package org.vaadin.maps.server;
 public interface WMSConstants {
 
     String PARAM_SERVICE_WMS = "SERVICE=WMS";
+    String PARAM_SERVICE = "SERVICE";
     String PARAM_VERSION = "VERSION";
     String PARAM_REQUEST = "REQUEST";
     String PARAM_LAYERS = "LAYERS";
@@ -24,6 +25,8 @@ public interface WMSConstants {
     int DEFAULT_WIDTH = 255;
     int DEFAULT_HEIGHT = 255;
 
+    String SERVICE_WMS = "WMS";
+
     String GET_CAPABILITIES = "GetCapabilities";
     String GET_MAP = "GetMap";
     String GET_FEATURE_INFO = "GetFeatureInfo";
@@ -3,6 +3,9 @@ package org.vaadin.maps.server;
 import com.vaadin.server.ExternalResource;
 import org.vaadin.maps.ui.MapConstants;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * @author Kamil Morong
  */
@@ -18,6 +21,8 @@ public class WMSResource extends ExternalResource implements TileResource {
     private String srs = MapConstants.DEFAULT_CRS;
     private String bbox = "";
     private boolean transparent = false;
+    private boolean proxied = false;
+    private WMSComposite composite = null;
 
     public WMSResource(String baseURL) {
         super(baseURL);
@@ -25,11 +30,20 @@ public class WMSResource extends ExternalResource implements TileResource {
     }
 
     /**
-     * Gets the URL of the external resource.
+     * Gets the URL of the external resource. Proxied and composite resources
+     * are served by the {@link TileRequestHandler}.
      *
      * @return the URL of the external resource.
      */
     public String getURL() {
+        if (composite != null && !composite.isEmpty()) {
+            String sourceId = TileProxy.getInstance().registerComposite(composite);
+            return TileRequestHandler.buildUrl(sourceId, getParameters());
+        }
+        if (proxied) {
+            String sourceId = TileProxy.getInstance().registerSource(baseUrl);
+            return TileRequestHandler.buildUrl(sourceId, getParameters());
+        }
         return buildRequest();
     }
 
@@ -38,30 +52,42 @@ public class WMSResource extends ExternalResource implements TileResource {
         return format;
     }
 
+    /**
+     * Gets GetMap request parameters in request order.
+     */
+    public Map<String, String> getParameters() {
+        LinkedHashMap<String, String> parameters = new LinkedHashMap<>();
+        parameters.put(WMSConstants.PARAM_SERVICE, WMSConstants.SERVICE_WMS);
+        parameters.put(WMSConstants.PARAM_VERSION, version);
+        parameters.put(WMSConstants.PARAM_LAYERS, layers);
+        parameters.put(WMSConstants.PARAM_REQUEST, WMSConstants.GET_MAP);
+        parameters.put(version.startsWith("1.1") ? WMSConstants.PARAM_SRS : WMSConstants.PARAM_CRS, srs);
+        parameters.put(WMSConstants.PARAM_BBOX, bbox);
+        parameters.put(WMSConstants.PARAM_WIDTH, String.valueOf(width));
+        parameters.put(WMSConstants.PARAM_HEIGHT, String.valueOf(height));
+        parameters.put(WMSConstants.PARAM_FORMAT, format);
+        parameters.put(WMSConstants.PARAM_STYLES, styles);
+
+        if (transparent) {
+            parameters.put(WMSConstants.PARAM_TRANSPARENT, "TRUE");
+        }
+
+        return parameters;
+    }
+
     private String buildRequest() {
         StringBuilder builder = new StringBuilder(baseUrl);
         if (!baseUrl.endsWith("?")) {
             builder.append("?");
         }
-        builder.append(WMSConstants.PARAM_SERVICE_WMS);
-        builder.append("&" + WMSConstants.PARAM_VERSION + "=").append(version);
-        builder.append("&" + WMSConstants.PARAM_LAYERS + "=").append(layers);
-        builder.append("&" + WMSConstants.PARAM_REQUEST + "=" + WMSConstants.GET_MAP);
-
-        if (version.startsWith("1.1")) {
-            builder.append("&" + WMSConstants.PARAM_SRS);
-        } else {
-            builder.append("&" + WMSConstants.PARAM_CRS);
-        }
-        builder.append("=").append(srs);
-        builder.append("&" + WMSConstants.PARAM_BBOX + "=").append(bbox);
-        builder.append("&" + WMSConstants.PARAM_WIDTH + "=").append(width);
-        builder.append("&" + WMSConstants.PARAM_HEIGHT + "=").append(height);
-        builder.append("&" + WMSConstants.PARAM_FORMAT + "=").append(format);
-        builder.append("&" + WMSConstants.PARAM_STYLES + "=").append(styles);
 
-        if (transparent) {
-            builder.append("&" + WMSConstants.PARAM_TRANSPARENT + "=" + "TRUE");
+        boolean first = true;
+        for (Map.Entry<String, String> parameter : getParameters().entrySet()) {
+            if (!first) {
+                builder.append("&");
+            }
+            builder.append(parameter.getKey()).append("=").append(parameter.getValue());
+            first = false;
         }
 
         return builder.toString();
@@ -191,4 +217,34 @@ public class WMSResource extends ExternalResource implements TileResource {
         return baseUrl;
     }
 
+    public boolean isProxied() {
+        return proxied;
+    }
+
+    /**
+     * Sets whether the image is fetched by the browser directly from the WMS
+     * server or through the server side {@link TileProxy}, which caches the
+     * images and shares them among all sessions.
+     *
+     * @param proxied true to serve the image through the proxy
+     */
+    public void setProxied(boolean proxied) {
+        this.proxied = proxied;
+    }
+
+    public WMSComposite getComposite() {
+        return composite;
+    }
+
+    /**
+     * Sets the composite of WMS layers, which images are composed into this
+     * image on the server. Base URL, layers and styles of the resource are not
+     * used then.
+     *
+     * @param composite composite of WMS layers or null
+     */
+    public void setComposite(WMSComposite composite) {
+        this.composite = composite;
+    }
+
 }
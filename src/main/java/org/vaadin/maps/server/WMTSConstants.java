@@ -0,0 +1,43 @@
+package org.vaadin.maps.server;
+
+/**
+ * @author Kamil Morong
+ */
+public interface WMTSConstants {
+
+    String PARAM_SERVICE = "SERVICE";
+    String PARAM_VERSION = "VERSION";
+    String PARAM_REQUEST = "REQUEST";
+    String PARAM_LAYER = "LAYER";
+    String PARAM_STYLE = "STYLE";
+    String PARAM_FORMAT = "FORMAT";
+    String PARAM_TILE_MATRIX_SET = "TILEMATRIXSET";
+    String PARAM_TILE_MATRIX = "TILEMATRIX";
+    String PARAM_TILE_ROW = "TILEROW";
+    String PARAM_TILE_COL = "TILECOL";
+
+    String TEMPLATE_LAYER = "{Layer}";
+    String TEMPLATE_STYLE = "{Style}";
+    String TEMPLATE_TILE_MATRIX_SET = "{TileMatrixSet}";
+    String TEMPLATE_TILE_MATRIX = "{TileMatrix}";
+    String TEMPLATE_TILE_ROW = "{TileRow}";
+    String TEMPLATE_TILE_COL = "{TileCol}";
+
+    String SERVICE_WMTS = "WMTS";
+    String DEFAULT_VERSION = "1.0.0";
+    String DEFAULT_FORMAT = "image/png";
+    String DEFAULT_STYLE = "default";
+
+    String GET_TILE = "GetTile";
+
+    /**
+     * standardized rendering pixel size in meters
+     */
+    double PIXEL_SIZE = 0.00028;
+
+    /**
+     * meters per degree on WGS84 equator
+     */
+    double METERS_PER_DEGREE = 6378137.0 * 2.0 * Math.PI / 360.0;
+
+}
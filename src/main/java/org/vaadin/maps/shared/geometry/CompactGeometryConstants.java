@@ -0,0 +1,37 @@
+package org.vaadin.maps.shared.geometry;
+
+/**
+ * Constant values used by the compact geometry format.
+ * <p>
+ * The format is base64 encoded sequence of varints. It starts with signed
+ * precision <i>p</i>, coordinates are quantized to integer multiples of
+ * 2<sup>-p</sup>. A geometry is written as unsigned type followed by
+ * <ul>
+ * <li>point - number of coordinates (0 or 1) and coordinates</li>
+ * <li>line string - number of coordinates and coordinates</li>
+ * <li>polygon - number of rings, each as number of coordinates and
+ * coordinates, the shell first</li>
+ * <li>collections - number of geometries and geometries</li>
+ * </ul>
+ * Each coordinate is written as signed differences of quantized x and y from
+ * the previous coordinate of the whole geometry, the first one from zero.
+ * Signed varints are zigzag encoded.
+ *
+ * @author Kamil Morong
+ */
+public interface CompactGeometryConstants {
+
+    int POINT = 1;
+    int LINE_STRING = 2;
+    int POLYGON = 3;
+    int MULTI_POINT = 4;
+    int MULTI_LINE_STRING = 5;
+    int MULTI_POLYGON = 6;
+    int GEOMETRY_COLLECTION = 7;
+
+    /**
+     * standard base64 alphabet, encoded strings are padded by '='
+     */
+    String BASE64_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+}
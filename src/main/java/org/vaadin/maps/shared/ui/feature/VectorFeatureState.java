@@ -8,7 +8,10 @@ import java.util.Map;
 @SuppressWarnings("serial")
 public class VectorFeatureState extends AbstractFeatureState {
 
-    public String wkb = null;
+    /**
+     * geometry in world coordinates, compact encoded
+     */
+    public String geometry = null;
     public Double centroidX = null;
     public Double centroidY = null;
     public Map<String, String> style = null;
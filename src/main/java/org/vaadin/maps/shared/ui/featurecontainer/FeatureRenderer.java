@@ -0,0 +1,18 @@
+package org.vaadin.maps.shared.ui.featurecontainer;
+
+/**
+ * Renderer of bulk vector features.
+ *
+ * @author Kamil Morong
+ */
+public enum FeatureRenderer {
+    /**
+     * each feature is an SVG element, or VML in old browsers
+     */
+    SVG,
+    /**
+     * features are painted into one canvas, SVG is used when the browser
+     * does not support canvas
+     */
+    CANVAS
+}
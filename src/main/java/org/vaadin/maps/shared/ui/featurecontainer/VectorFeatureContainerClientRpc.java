@@ -0,0 +1,31 @@
+package org.vaadin.maps.shared.ui.featurecontainer;
+
+import com.vaadin.shared.communication.ClientRpc;
+
+/**
+ * @author Kamil Morong
+ */
+public interface VectorFeatureContainerClientRpc extends ClientRpc {
+
+    /**
+     * Adds bulk features, or replaces features of the same identifiers.
+     *
+     * @param ids        feature identifiers
+     * @param geometries geometries in world coordinates, compact encoded
+     * @param styleIds   feature style identifiers
+     */
+    void addFeatures(String[] ids, String[] geometries, int[] styleIds);
+
+    /**
+     * Removes bulk features.
+     *
+     * @param ids feature identifiers
+     */
+    void removeFeatures(String[] ids);
+
+    /**
+     * Removes all bulk features.
+     */
+    void clearFeatures();
+
+}
@@ -1,5 +1,6 @@
 package org.vaadin.maps.shared.ui.featurecontainer;
 
+import com.vaadin.shared.MouseEventDetails;
 import org.vaadin.maps.shared.ui.ClickRpc;
 
 /**
@@ -7,4 +8,13 @@ import org.vaadin.maps.shared.ui.ClickRpc;
  */
 public interface VectorFeatureContainerServerRpc extends AbstractFeatureContainerServerRpc, ClickRpc {
 
+    /**
+     * Click on a bulk feature, resolved by the client hit index.
+     *
+     * @param timestamp    click timestamp
+     * @param mouseDetails mouse event details
+     * @param id           identifier of the topmost bulk feature clicked
+     */
+    void bulkFeatureClick(long timestamp, MouseEventDetails mouseDetails, String id);
+
 }
@@ -0,0 +1,33 @@
+package org.vaadin.maps.shared.ui.featurecontainer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author Kamil Morong
+ */
+@SuppressWarnings("serial")
+public class VectorFeatureContainerState extends AbstractFeatureContainerState {
+
+    /**
+     * styles of bulk features by style identifier
+     */
+    public Map<String, Map<String, String>> featureStyles = new HashMap<>();
+
+    /**
+     * view world ratio, bulk features are drawn untransformed when 0
+     */
+    public double transformRatio = 0.0;
+
+    /**
+     * world coordinates of the view origin
+     */
+    public double originX = 0.0;
+    public double originY = 0.0;
+
+    /**
+     * renderer of bulk features
+     */
+    public FeatureRenderer renderer = FeatureRenderer.SVG;
+
+}
@@ -4,6 +4,12 @@ package org.vaadin.maps.shared.ui.handler;
  * @author Kamil Morong
  */
 public class ZoomHandlerState extends LayerLayoutHandlerState {
+
+    /**
+     * time in milliseconds the mouse wheel must stay still to commit the zoom
+     */
+    public int settleDelay = 250;
+
     {
         primaryStyleName = "v-zoomhandler";
     }
@@ -0,0 +1,19 @@
+package org.vaadin.maps.shared.ui.layer;
+
+import com.vaadin.shared.communication.ClientRpc;
+
+import java.util.List;
+
+/**
+ * @author Kamil Morong
+ */
+public interface TiledLayerClientRpc extends ClientRpc {
+
+    /**
+     * Replaces tiles to be prefetched.
+     *
+     * @param urls tile image URLs in order of priority
+     */
+    void prefetch(List<String> urls);
+
+}
@@ -0,0 +1,12 @@
+package org.vaadin.maps.shared.ui.layer;
+
+import com.vaadin.shared.communication.ServerRpc;
+
+/**
+ * @author Kamil Morong
+ */
+public interface TiledLayerServerRpc extends ServerRpc {
+
+    void requestTiles();
+
+}
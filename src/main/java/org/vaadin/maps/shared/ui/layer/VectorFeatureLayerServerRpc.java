@@ -7,4 +7,10 @@ import com.vaadin.shared.communication.ServerRpc;
  */
 public interface VectorFeatureLayerServerRpc extends ServerRpc {
 
+    /**
+     * Requests bulk features of the current view extent, called after pan and
+     * zoom.
+     */
+    void requestFeatures();
+
 }
@@ -0,0 +1,12 @@
+package org.vaadin.maps.shared.ui.layer;
+
+import org.vaadin.maps.shared.ui.AbstractLayerState;
+
+/**
+ * @author Kamil Morong
+ */
+public class WMTSLayerState extends AbstractLayerState {
+    {
+        primaryStyleName = "v-wmtslayer";
+    }
+}
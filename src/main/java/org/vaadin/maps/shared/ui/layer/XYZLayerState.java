@@ -0,0 +1,12 @@
+package org.vaadin.maps.shared.ui.layer;
+
+import org.vaadin.maps.shared.ui.AbstractLayerState;
+
+/**
+ * @author Kamil Morong
+ */
+public class XYZLayerState extends AbstractLayerState {
+    {
+        primaryStyleName = "v-xyzlayer";
+    }
+}
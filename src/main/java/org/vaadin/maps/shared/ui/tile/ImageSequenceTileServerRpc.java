@@ -19,4 +19,11 @@ public interface ImageSequenceTileServerRpc extends LoadRpc {
 
     public void changed(long timestamp, int index);
 
+    /**
+     * Called when the client playback paused at the end of the range.
+     *
+     * @param index Index of frame
+     */
+    public void paused(long timestamp, int index);
+
 }
@@ -14,6 +14,23 @@ public class ImageSequenceTileState extends AbstractTileState {
     public List<String> sourceTypes = new ArrayList<>();
     public int index = 0;
 
+    public URLReference spriteSheet = null;
+    public int spriteWidth = 0;
+    public int spriteHeight = 0;
+    public int frameWidth = 0;
+    public int frameHeight = 0;
+    public int[] frameX = new int[0];
+    public int[] frameY = new int[0];
+    public int preloadAhead = 10;
+    public int preloadBehind = 2;
+
+    public boolean playing = false;
+    public double fps = 10;
+    public PlaybackMode playbackMode = PlaybackMode.LOOP;
+    public int rangeStart = 0;
+    public int rangeEnd = -1;
+    public int reportInterval = 1000;
+
     {
         primaryStyleName = "v-imagesequencetile";
     }
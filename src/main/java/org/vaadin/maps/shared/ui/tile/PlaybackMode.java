@@ -0,0 +1,21 @@
+package org.vaadin.maps.shared.ui.tile;
+
+/**
+ * Playback mode of image sequence.
+ *
+ * @author Kamil Morong
+ */
+public enum PlaybackMode {
+    /**
+     * plays the range once and pauses at its end
+     */
+    ONCE,
+    /**
+     * starts again from the range start
+     */
+    LOOP,
+    /**
+     * plays the range forward and backward alternately
+     */
+    BOUNCE
+}
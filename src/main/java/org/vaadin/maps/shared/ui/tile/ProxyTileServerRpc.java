@@ -1,5 +1,6 @@
 package org.vaadin.maps.shared.ui.tile;
 
+import com.vaadin.shared.annotations.Delayed;
 import org.vaadin.maps.shared.ui.ClickRpc;
 import org.vaadin.maps.shared.ui.LoadRpc;
 
@@ -10,4 +11,11 @@ public interface ProxyTileServerRpc extends ClickRpc, LoadRpc {
 
     void updateClippedSize(int width, int height);
 
+    /**
+     * Called when the client starts loading the tile image. Delivered with the
+     * next request, usually together with the load event.
+     */
+    @Delayed
+    void request(long timestamp);
+
 }
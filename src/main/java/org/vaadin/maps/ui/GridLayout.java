@@ -656,6 +656,26 @@ public class GridLayout<C extends Component> extends AbstractLayout<C> implement
         }
     }
 
+    /**
+     * Sets the pixel position of the component relative to the top left
+     * corner of the layout.
+     *
+     * @param component the component which position is set, must be a child of
+     *                  this layout.
+     * @param left      the left position in pixels.
+     * @param top       the top position in pixels.
+     */
+    public void setComponentPosition(C component, int left, int top) {
+        ChildComponentData childComponentData = getState().childData.get(component);
+        if (childComponentData == null) {
+            throw new IllegalArgumentException("Component must be a child of this layout");
+        }
+
+        childComponentData.left = left;
+        childComponentData.top = top;
+        markAsDirty();
+    }
+
     @Override
     public void addLayoutClickListener(LayoutClickListener<C> listener) {
         addListener(EventId.LAYOUT_CLICK_EVENT_IDENTIFIER, LayoutClickEvent.class, listener,
@@ -7,4 +7,11 @@ public interface MapConstants {
 
     String DEFAULT_CRS = "EPSG:4326";
 
+    int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * half of the world width in spherical mercator (EPSG:3857)
+     */
+    double MERCATOR_EXTENT = 20037508.342789244;
+
 }
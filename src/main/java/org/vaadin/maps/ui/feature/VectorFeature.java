@@ -7,10 +7,8 @@ import com.vaadin.ui.Component;
 import com.vaadin.util.ReflectTools;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
-import org.vaadin.maps.geometry.Utils;
+import org.vaadin.maps.geometry.CompactGeometryWriter;
 import org.vaadin.maps.server.ViewWorldTransform;
-import org.vaadin.maps.server.ViewWorldTransform.TransformChangeEvent;
-import org.vaadin.maps.server.ViewWorldTransform.TransformChangeListener;
 import org.vaadin.maps.shared.ui.Style;
 import org.vaadin.maps.shared.ui.feature.FeatureServerRpc;
 import org.vaadin.maps.shared.ui.feature.VectorFeatureState;
@@ -20,9 +18,13 @@ import java.io.Serializable;
 import java.lang.reflect.Method;
 
 /**
+ * Interactive vector feature. The geometry is sent to the client once in world
+ * coordinates and projected to the view by the feature container on the
+ * client, so change of the view transform does not resend the feature.
+ *
  * @author Kamil Morong
  */
-public class VectorFeature extends AbstractFeature implements TransformChangeListener {
+public class VectorFeature extends AbstractFeature {
 
     private final FeatureServerRpc rpc = new FeatureServerRpc() {
         @Override
@@ -72,7 +74,7 @@ public class VectorFeature extends AbstractFeature implements TransformChangeLis
 
     public void setGeometry(Geometry geometry) {
         this.geometry = geometry;
-        getState().wkb = Utils.geometryToWKBHex(geometry);
+        getState().geometry = new CompactGeometryWriter().write(geometry);
 
         setGeometryCentroid(this.geometry);
     }
@@ -242,31 +244,15 @@ public class VectorFeature extends AbstractFeature implements TransformChangeLis
         removeListener(MouseOutEvent.class, listener, MouseOutListener.FEATURE_MOUSE_OUT_METHOD);
     }
 
-    @Override
-    public void onTransformChange(TransformChangeEvent event) {
-        transformToView(event.getViewWorldTransform());
-    }
-
-    private Geometry transformGeometryToView(Geometry worldGeometry, ViewWorldTransform viewWorldTransform) {
-        if (worldGeometry != null && viewWorldTransform != null) {
-            Geometry clone = (Geometry) worldGeometry.clone();
-
-            Utils.transformWorldToView(clone, viewWorldTransform);
-            return clone;
-        }
-        return null;
-    }
-
+    /**
+     * Does nothing, the geometry is transformed to the view on the client by
+     * the view world transform of the feature container.
+     *
+     * @param viewWorldTransform ignored
+     * @deprecated the view world transform is applied on the client
+     */
+    @Deprecated
     public void transformToView(ViewWorldTransform viewWorldTransform) {
-        if (viewWorldTransform != null && viewWorldTransform.getViewWorldRatio() != 0) {
-            Geometry viewGeometry = transformGeometryToView(this.geometry, viewWorldTransform);
-
-            getState().wkb = Utils.geometryToWKBHex(viewGeometry);
-            setGeometryCentroid(viewGeometry);
-
-        } else {
-            setGeometry(this.geometry);
-        }
     }
 
     /**
@@ -4,13 +4,67 @@ import com.tilioteo.common.event.MouseEvents;
 import com.vaadin.shared.MouseEventDetails;
 import com.vaadin.ui.Component;
 import com.vaadin.util.ReflectTools;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
+import org.vaadin.maps.geometry.CompactGeometryWriter;
+import org.vaadin.maps.server.Bounds;
+import org.vaadin.maps.server.FeatureTable;
+import org.vaadin.maps.server.LonLat;
+import org.vaadin.maps.server.ViewWorldTransform;
+import org.vaadin.maps.shared.ui.Style;
+import org.vaadin.maps.shared.ui.featurecontainer.FeatureRenderer;
+import org.vaadin.maps.shared.ui.featurecontainer.VectorFeatureContainerClientRpc;
 import org.vaadin.maps.shared.ui.featurecontainer.VectorFeatureContainerServerRpc;
+import org.vaadin.maps.shared.ui.featurecontainer.VectorFeatureContainerState;
+import org.vaadin.maps.ui.StyleUtility;
 import org.vaadin.maps.ui.feature.VectorFeature;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
+ * Container of vector features. Besides interactive {@link VectorFeature}
+ * components the container holds bulk features in a {@link FeatureTable},
+ * which are synchronized to the client in batches of changes and drawn
+ * without own connectors.
+ * <p>
+ * When culling is enabled, only bulk features intersecting the view extent
+ * enlarged by the culling margin are sent to the client. Features are looked
+ * up in an STR-tree of their envelopes, features entering and leaving the
+ * extent are sent as differences.
+ * <p>
+ * Geometries of bulk features are simplified for the view ratio, preserving
+ * topology, within the simplification tolerance in pixels. View ratios are
+ * grouped into scale buckets of power of two, simplified geometries are
+ * cached per bucket and resent only when the view ratio moves to another
+ * bucket.
+ * <p>
+ * Geometries missing in the cache, e.g. all simplified geometries after the
+ * view ratio moved to another bucket, are simplified and encoded in parallel
+ * tasks of a fork-join pool shared by all containers, of as many threads as
+ * processors. The tasks read WKB of the geometries only, results are applied
+ * to the cache and sent by the request thread in one pass.
+ * <p>
+ * Bulk features are rendered as SVG elements by default, or painted into a
+ * canvas by the {@link FeatureRenderer#CANVAS} renderer, which scales to many
+ * more features. Clicks on bulk features are resolved on the client by a
+ * spatial index with either renderer.
+ *
  * @author Kamil Morong
  */
 public class VectorFeatureContainer extends AbstractFeatureContainer<VectorFeature> {
@@ -20,12 +74,542 @@ public class VectorFeatureContainer extends AbstractFeatureContainer<VectorFeatu
         public void click(long timestamp, MouseEventDetails mouseDetails) {
             fireEvent(new ClickEvent(timestamp, VectorFeatureContainer.this, mouseDetails));
         }
+
+        @Override
+        public void bulkFeatureClick(long timestamp, MouseEventDetails mouseDetails, String id) {
+            fireEvent(new ClickEvent(timestamp, VectorFeatureContainer.this, mouseDetails, id));
+        }
+    };
+
+    public static final double DEFAULT_CULLING_MARGIN = 0.5;
+    public static final double DEFAULT_SIMPLIFY_TOLERANCE = 1.0;
+
+    /**
+     * geometries of fewer vertices are not simplified
+     */
+    private static final int SIMPLIFY_MIN_POINTS = 8;
+    /**
+     * number of scale buckets of cached simplified geometries
+     */
+    private static final int MAX_CACHED_BUCKETS = 4;
+    /**
+     * quantum of simplified geometries as binary fraction of the lowest ratio
+     * of the scale bucket
+     */
+    private static final int QUANTIZATION_BITS = 2;
+    /**
+     * number of geometries encoded by one fork-join task
+     */
+    private static final int ENCODING_BATCH_SIZE = 32;
+
+    private final FeatureTable features = new FeatureTable();
+
+    /**
+     * bulk features present on the client
+     */
+    private final HashSet<String> clientIds = new HashSet<>();
+    /**
+     * bulk features changed since the last response
+     */
+    private final LinkedHashSet<String> changedIds = new LinkedHashSet<>();
+    private boolean cleared = false;
+
+    /**
+     * index of bulk feature envelopes, built on demand after any change
+     */
+    private STRtree index = null;
+    private boolean culling = false;
+    private Bounds viewExtent = null;
+    private double cullingMargin = DEFAULT_CULLING_MARGIN;
+
+    private boolean simplifying = true;
+    private double simplifyTolerance = DEFAULT_SIMPLIFY_TOLERANCE;
+    /**
+     * scale bucket of geometries present on the client
+     */
+    private Integer scaleBucket = null;
+    private boolean scaleBucketChanged = false;
+    /**
+     * compact encoded simplified geometries by feature identifier, by scale bucket
+     * in order of access
+     */
+    private final LinkedHashMap<Integer, HashMap<String, String>> simplifiedCache =
+            new LinkedHashMap<Integer, HashMap<String, String>>(MAX_CACHED_BUCKETS + 1, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, HashMap<String, String>> eldest) {
+            return size() > MAX_CACHED_BUCKETS;
+        }
     };
 
     public VectorFeatureContainer() {
         registerRpc(rpc);
     }
 
+    @Override
+    protected VectorFeatureContainerState getState() {
+        return (VectorFeatureContainerState) super.getState();
+    }
+
+    @Override
+    protected VectorFeatureContainerState getState(boolean markAsDirty) {
+        return (VectorFeatureContainerState) super.getState(markAsDirty);
+    }
+
+    /**
+     * Gets the table of bulk features. Changes made directly to the table are
+     * not synchronized to the client.
+     */
+    public FeatureTable getFeatureTable() {
+        return features;
+    }
+
+    /**
+     * Adds the bulk feature, or replaces the bulk feature of the same
+     * identifier.
+     *
+     * @param id         feature identifier
+     * @param geometry   feature geometry in world coordinates
+     * @param styleId    feature style identifier, see
+     *                   {@link #setFeatureStyle(int, Style)}
+     * @param attributes attribute values by name or null
+     */
+    public void addFeature(String id, Geometry geometry, int styleId, Map<String, ?> attributes) {
+        features.put(id, geometry, styleId, attributes);
+        changedIds.add(id);
+        index = null;
+        removeSimplified(id);
+        markAsDirty();
+    }
+
+    /**
+     * Removes the bulk feature.
+     *
+     * @param id feature identifier
+     */
+    public void removeFeature(String id) {
+        if (features.remove(id)) {
+            changedIds.remove(id);
+            index = null;
+            removeSimplified(id);
+            markAsDirty();
+        }
+    }
+
+    /**
+     * Removes all bulk features.
+     */
+    public void clearFeatures() {
+        features.clear();
+        changedIds.clear();
+        cleared = true;
+        index = null;
+        simplifiedCache.clear();
+        markAsDirty();
+    }
+
+    /**
+     * Changes style of the bulk feature.
+     *
+     * @param id      feature identifier
+     * @param styleId feature style identifier
+     */
+    public void setFeatureStyleId(String id, int styleId) {
+        if (features.setStyleId(id, styleId)) {
+            changedIds.add(id);
+            markAsDirty();
+        }
+    }
+
+    /**
+     * Sets the style of bulk features of the style identifier.
+     *
+     * @param styleId style identifier
+     * @param style   the style or null to draw by default style
+     */
+    public void setFeatureStyle(int styleId, Style style) {
+        if (style != null) {
+            getState().featureStyles.put(String.valueOf(styleId), StyleUtility.getStyleMap(style));
+        } else {
+            getState().featureStyles.remove(String.valueOf(styleId));
+        }
+    }
+
+    /**
+     * Sets transform of bulk features from world to view coordinates. Bulk
+     * features are transformed on the client.
+     *
+     * @param viewWorldTransform transform or null
+     */
+    public void setViewWorldTransform(ViewWorldTransform viewWorldTransform) {
+        if (viewWorldTransform != null && viewWorldTransform.getWorld().isValid()) {
+            LonLat topLeft = viewWorldTransform.getWorld().getTopLeft();
+            getState().transformRatio = viewWorldTransform.getViewWorldRatio();
+            getState().originX = topLeft.getLon();
+            getState().originY = topLeft.getLat();
+        } else {
+            getState().transformRatio = 0.0;
+            getState().originX = 0.0;
+            getState().originY = 0.0;
+        }
+        updateScaleBucket();
+    }
+
+    public boolean isSimplifying() {
+        return simplifying;
+    }
+
+    /**
+     * Enables simplification of bulk feature geometries for the view ratio,
+     * enabled by default.
+     *
+     * @param simplifying true to simplify geometries
+     */
+    public void setSimplifying(boolean simplifying) {
+        if (this.simplifying != simplifying) {
+            this.simplifying = simplifying;
+            updateScaleBucket();
+        }
+    }
+
+    public double getSimplifyTolerance() {
+        return simplifyTolerance;
+    }
+
+    /**
+     * Sets maximal distance of simplified geometry from the original geometry.
+     *
+     * @param simplifyTolerance tolerance in pixels of the view
+     */
+    public void setSimplifyTolerance(double simplifyTolerance) {
+        if (simplifyTolerance <= 0) {
+            throw new IllegalArgumentException("Simplification tolerance must be positive");
+        }
+        if (this.simplifyTolerance != simplifyTolerance) {
+            this.simplifyTolerance = simplifyTolerance;
+            simplifiedCache.clear();
+            // resend with the new tolerance
+            scaleBucket = null;
+            updateScaleBucket();
+        }
+    }
+
+    /**
+     * Gets the scale bucket of the view ratio, the bucket contains ratios from
+     * 2^bucket inclusive to 2^(bucket+1) exclusive.
+     */
+    private Integer getScaleBucket() {
+        double ratio = getState(false).transformRatio;
+        if (!simplifying || ratio <= 0) {
+            return null;
+        }
+        return (int) Math.floor(Math.log(ratio) / Math.log(2));
+    }
+
+    private void updateScaleBucket() {
+        Integer bucket = getScaleBucket();
+        if (bucket != null ? !bucket.equals(scaleBucket) : scaleBucket != null) {
+            scaleBucket = bucket;
+            scaleBucketChanged = true;
+            markAsDirty();
+        }
+    }
+
+    private void removeSimplified(String id) {
+        for (HashMap<String, String> simplified : simplifiedCache.values()) {
+            simplified.remove(id);
+        }
+    }
+
+    private boolean isSimplified(String id) {
+        return scaleBucket != null && features.getNumPoints(id) >= SIMPLIFY_MIN_POINTS;
+    }
+
+    public FeatureRenderer getRenderer() {
+        return getState(false).renderer;
+    }
+
+    /**
+     * Sets the renderer of bulk features. Interactive features are always
+     * rendered as SVG elements above bulk features.
+     *
+     * @param renderer the renderer
+     */
+    public void setRenderer(FeatureRenderer renderer) {
+        if (null == renderer) {
+            throw new NullPointerException("Renderer must not be null");
+        }
+        if (getState(false).renderer != renderer) {
+            getState().renderer = renderer;
+        }
+    }
+
+    public boolean isCulling() {
+        return culling;
+    }
+
+    /**
+     * Enables culling of bulk features to the view extent. No bulk features
+     * are sent while the view extent is not known.
+     *
+     * @param culling true to send only features near the view extent
+     */
+    public void setCulling(boolean culling) {
+        if (this.culling != culling) {
+            this.culling = culling;
+            markAsDirty();
+        }
+    }
+
+    public Bounds getViewExtent() {
+        return viewExtent != null ? viewExtent.clone() : null;
+    }
+
+    /**
+     * Sets the world extent of the view, bulk features are culled to the
+     * extent enlarged by the culling margin.
+     *
+     * @param viewExtent world extent of the view or null when not known
+     */
+    public void setViewExtent(Bounds viewExtent) {
+        Bounds extent = viewExtent != null && viewExtent.isValid() ? viewExtent.clone() : null;
+        if (extent != null ? !extent.equals(this.viewExtent) : this.viewExtent != null) {
+            this.viewExtent = extent;
+            markAsDirty();
+        }
+    }
+
+    public double getCullingMargin() {
+        return cullingMargin;
+    }
+
+    /**
+     * Sets the margin around the view extent, in which bulk features are sent
+     * to the client as well, so short pans need no features from the server.
+     *
+     * @param cullingMargin margin as a fraction of the extent width and height
+     *                      on each side
+     */
+    public void setCullingMargin(double cullingMargin) {
+        if (cullingMargin < 0) {
+            throw new IllegalArgumentException("Culling margin must not be negative");
+        }
+        if (this.cullingMargin != cullingMargin) {
+            this.cullingMargin = cullingMargin;
+            markAsDirty();
+        }
+    }
+
+    /**
+     * Gets identifiers of bulk features, which should be present on the
+     * client.
+     */
+    private Collection<String> getVisibleIds() {
+        if (!culling) {
+            return features.getIds();
+        }
+        if (null == viewExtent) {
+            return Collections.emptyList();
+        }
+
+        if (null == index) {
+            index = new STRtree();
+            for (String id : features.getIds()) {
+                index.insert(features.getEnvelope(id), id);
+            }
+        }
+
+        double marginX = viewExtent.getWidth() * cullingMargin;
+        double marginY = viewExtent.getHeight() * cullingMargin;
+        @SuppressWarnings("unchecked")
+        List<String> ids = index.query(new Envelope(viewExtent.getLeft() - marginX,
+                viewExtent.getRight() + marginX, viewExtent.getBottom() - marginY, viewExtent.getTop() + marginY));
+        return ids;
+    }
+
+    @Override
+    public void beforeClientResponse(boolean initial) {
+        super.beforeClientResponse(initial);
+
+        VectorFeatureContainerClientRpc clientRpc = getRpcProxy(VectorFeatureContainerClientRpc.class);
+        if (initial) {
+            // client side is empty
+            clientIds.clear();
+        } else if (cleared) {
+            clientRpc.clearFeatures();
+            clientIds.clear();
+        }
+
+        HashSet<String> visibleIds = new HashSet<>(getVisibleIds());
+
+        ArrayList<String> leaving = new ArrayList<>();
+        for (String id : clientIds) {
+            if (!visibleIds.contains(id)) {
+                leaving.add(id);
+            }
+        }
+        if (!leaving.isEmpty()) {
+            clientIds.removeAll(leaving);
+            clientRpc.removeFeatures(leaving.toArray(new String[leaving.size()]));
+        }
+
+        ArrayList<String> entering = new ArrayList<>();
+        for (String id : visibleIds) {
+            // changed features and features simplified for another scale are
+            // sent again
+            if (!clientIds.contains(id) || changedIds.contains(id)
+                    || (scaleBucketChanged && features.getNumPoints(id) >= SIMPLIFY_MIN_POINTS)) {
+                entering.add(id);
+            }
+        }
+        clientIds.addAll(entering);
+        sendFeatures(clientRpc, entering);
+
+        changedIds.clear();
+        cleared = false;
+        scaleBucketChanged = false;
+    }
+
+    private void sendFeatures(VectorFeatureContainerClientRpc clientRpc, List<String> ids) {
+        if (!ids.isEmpty()) {
+            String[] geometries = new String[ids.size()];
+            int[] styleIds = new int[ids.size()];
+            for (int i = 0; i < geometries.length; ++i) {
+                styleIds[i] = features.getStyleId(ids.get(i));
+            }
+            encodeGeometries(ids, geometries);
+            clientRpc.addFeatures(ids.toArray(new String[geometries.length]), geometries, styleIds);
+        }
+    }
+
+    /**
+     * Gets compact encoded geometries of bulk features, simplified and
+     * quantized for the current scale bucket. Geometries which are not
+     * simplified are not sent again on scale change, so they keep full
+     * precision.
+     *
+     * @param ids        feature identifiers
+     * @param geometries array filled with encoded geometries
+     */
+    private void encodeGeometries(List<String> ids, String[] geometries) {
+        HashMap<String, String> simplified = null;
+        if (scaleBucket != null) {
+            simplified = simplifiedCache.get(scaleBucket);
+            if (null == simplified) {
+                simplified = new HashMap<>();
+                simplifiedCache.put(scaleBucket, simplified);
+            }
+        }
+
+        ArrayList<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < geometries.length; ++i) {
+            String id = ids.get(i);
+            geometries[i] = isSimplified(id) ? simplified.get(id) : null;
+            if (null == geometries[i]) {
+                missing.add(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        byte[][] sources = new byte[missing.size()][];
+        boolean[] simplify = new boolean[sources.length];
+        for (int i = 0; i < sources.length; ++i) {
+            String id = ids.get(missing.get(i));
+            sources[i] = features.getGeometryBytes(id);
+            simplify[i] = isSimplified(id);
+        }
+
+        EncodingTask task = new EncodingTask(sources, simplify, new String[sources.length], 0, sources.length);
+        if (scaleBucket != null) {
+            // at most the tolerance in pixels up to the highest ratio of the bucket
+            task.tolerance = simplifyTolerance / Math.pow(2, scaleBucket + 1);
+            // rounding error at most a quarter of a pixel within the bucket
+            task.precision = scaleBucket + QUANTIZATION_BITS;
+        }
+        // the request thread waits for the pool
+        EncodingPool.instance.invoke(task);
+
+        for (int i = 0; i < sources.length; ++i) {
+            int index = missing.get(i);
+            geometries[index] = task.results[i];
+            if (simplify[i]) {
+                simplified.put(ids.get(index), task.results[i]);
+            }
+        }
+    }
+
+    /**
+     * Holder of the pool of encoding tasks, created on first use. The pool
+     * is not shared with other code of the servlet container.
+     */
+    private static class EncodingPool {
+        private static final ForkJoinPool instance = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Task simplifying and encoding a range of WKB geometries, split in halves
+     * down to {@link #ENCODING_BATCH_SIZE} geometries. It touches no state of
+     * the container, so it may run without the session lock.
+     */
+    private static class EncodingTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final byte[][] sources;
+        private final boolean[] simplify;
+        private final String[] results;
+        private final int from;
+        private final int to;
+        private double tolerance = 0;
+        private int precision = 0;
+
+        private EncodingTask(byte[][] sources, boolean[] simplify, String[] results, int from, int to) {
+            this.sources = sources;
+            this.simplify = simplify;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        private EncodingTask createSubtask(int from, int to) {
+            EncodingTask task = new EncodingTask(sources, simplify, results, from, to);
+            task.tolerance = tolerance;
+            task.precision = precision;
+            return task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ENCODING_BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(createSubtask(from, middle), createSubtask(middle, to));
+                return;
+            }
+
+            // readers and writers are not thread safe
+            WKBReader reader = new WKBReader();
+            CompactGeometryWriter writer = new CompactGeometryWriter();
+            for (int i = from; i < to; ++i) {
+                Geometry geometry;
+                try {
+                    geometry = reader.read(sources[i]);
+                } catch (ParseException e) {
+                    // written by WKBWriter
+                    throw new IllegalStateException(e);
+                }
+                if (simplify[i]) {
+                    geometry = TopologyPreservingSimplifier.simplify(geometry, tolerance);
+                    results[i] = writer.write(geometry, precision);
+                } else {
+                    results[i] = writer.write(geometry);
+                }
+            }
+        }
+    }
+
     /**
      * Adds the container click listener.
      *
@@ -70,13 +654,15 @@ public class VectorFeatureContainer extends AbstractFeatureContainer<VectorFeatu
      */
     public static class ClickEvent extends MouseEvents.ClickEvent {
 
+        private final String bulkFeatureId;
+
         /**
          * New instance of text change event.
          *
          * @param source the Source of the event.
          */
         public ClickEvent(long timestamp, Component source) {
-            super(timestamp, source, null);
+            this(timestamp, source, null, null);
         }
 
         /**
@@ -86,7 +672,28 @@ public class VectorFeatureContainer extends AbstractFeatureContainer<VectorFeatu
          * @param details Details about the mouse click
          */
         public ClickEvent(long timestamp, Component source, MouseEventDetails details) {
+            this(timestamp, source, details, null);
+        }
+
+        /**
+         * Constructor of a click on a bulk feature
+         *
+         * @param source        The source where the click took place
+         * @param details       Details about the mouse click
+         * @param bulkFeatureId identifier of the clicked bulk feature
+         */
+        public ClickEvent(long timestamp, Component source, MouseEventDetails details, String bulkFeatureId) {
             super(timestamp, source, details);
+            this.bulkFeatureId = bulkFeatureId;
+        }
+
+        /**
+         * Gets identifier of the topmost bulk feature clicked.
+         *
+         * @return feature identifier or null when no bulk feature was clicked
+         */
+        public String getBulkFeatureId() {
+            return bulkFeatureId;
         }
 
         /**
@@ -40,6 +40,20 @@ public class ZoomHandler extends NavigateHandler {
         return (ZoomHandlerState) super.getState();
     }
 
+    public int getSettleDelay() {
+        return getState().settleDelay;
+    }
+
+    /**
+     * Sets the time the mouse wheel must stay still before the zoom of the
+     * gesture is applied. Until then the zoom is only previewed on the client.
+     *
+     * @param settleDelay delay in milliseconds
+     */
+    public void setSettleDelay(int settleDelay) {
+        getState().settleDelay = settleDelay;
+    }
+
     /**
      * Adds the zoom change listener.
      *
@@ -4,13 +4,18 @@ import com.tilioteo.common.event.MouseEvents.ClickEvent;
 import com.tilioteo.common.event.MouseEvents.ClickListener;
 import com.vaadin.shared.EventId;
 import com.vaadin.ui.Component;
+import com.vaadin.ui.HasComponents.ComponentAttachEvent;
+import com.vaadin.ui.HasComponents.ComponentAttachListener;
 import org.vaadin.maps.event.LayoutEvents;
 import org.vaadin.maps.event.LayoutEvents.LayoutClickEvent;
 import org.vaadin.maps.event.LayoutEvents.LayoutClickListener;
+import org.vaadin.maps.server.TileMetrics;
 import org.vaadin.maps.ui.GridLayout;
 import org.vaadin.maps.ui.MeasuredSizeHandler;
+import org.vaadin.maps.ui.tile.AbstractProxyTile;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 
 /**
  * @author Kamil Morong
@@ -29,6 +34,17 @@ public abstract class GridLayer<C extends Component> extends AbstractLayer<GridL
         }
     };
 
+    private final ComponentAttachListener metricsAttachListener = new ComponentAttachListener() {
+        @Override
+        public void componentAttachedToContainer(ComponentAttachEvent event) {
+            if (event.getAttachedComponent() instanceof AbstractProxyTile) {
+                ((AbstractProxyTile<?>) event.getAttachedComponent()).setMetrics(metrics);
+            }
+        }
+    };
+
+    private TileMetrics metrics = null;
+
     public GridLayer() {
         setContent(grid);
     }
@@ -42,6 +58,31 @@ public abstract class GridLayer<C extends Component> extends AbstractLayer<GridL
         return grid;
     }
 
+    public TileMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets metrics to record load latency and errors of the layer tiles.
+     *
+     * @param metrics tile metrics or null to stop recording
+     */
+    public void setMetrics(TileMetrics metrics) {
+        if (this.metrics == null && metrics != null) {
+            grid.addComponentAttachListener(metricsAttachListener);
+        } else if (this.metrics != null && metrics == null) {
+            grid.removeComponentAttachListener(metricsAttachListener);
+        }
+        this.metrics = metrics;
+
+        for (Iterator<C> iterator = grid.typedIterator(); iterator.hasNext(); ) {
+            C tile = iterator.next();
+            if (tile instanceof AbstractProxyTile) {
+                ((AbstractProxyTile<?>) tile).setMetrics(metrics);
+            }
+        }
+    }
+
     /**
      * Add a click listener to the component. The listener is called whenever
      * the user clicks inside the component. Depending on the content the event
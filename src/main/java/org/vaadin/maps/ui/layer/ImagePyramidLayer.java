@@ -0,0 +1,193 @@
+package org.vaadin.maps.ui.layer;
+
+import com.vaadin.server.Sizeable.Unit;
+import org.vaadin.maps.server.Bounds;
+import org.vaadin.maps.server.ImagePyramid;
+import org.vaadin.maps.server.TileIndex;
+import org.vaadin.maps.server.TileMetrics;
+import org.vaadin.maps.server.TileProxy;
+import org.vaadin.maps.server.TileRequestHandler;
+import org.vaadin.maps.ui.tile.ImageTile;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Layer of a large raster image served as tiles of an {@link ImagePyramid}.
+ * Only tiles in the view are transferred, at the pyramid level nearest to the
+ * current view ratio, scaled to the view.
+ * <p>
+ * The image is placed into image bounds in world coordinates, by default one
+ * world unit per image pixel with the origin at the bottom left corner.
+ *
+ * @author Kamil Morong
+ */
+public class ImagePyramidLayer extends TiledLayer<ImageTile> {
+
+    private ImagePyramid pyramid = null;
+    private String sourceId = null;
+    private Bounds imageBounds = null;
+
+    public ImagePyramidLayer() {
+        super();
+    }
+
+    public ImagePyramidLayer(ImagePyramid pyramid) {
+        this();
+        setPyramid(pyramid);
+    }
+
+    @Override
+    public boolean isBase() {
+        return true;
+    }
+
+    @Override
+    public boolean isFixed() {
+        return false;
+    }
+
+    public ImagePyramid getPyramid() {
+        return pyramid;
+    }
+
+    public void setPyramid(ImagePyramid pyramid) {
+        this.pyramid = pyramid;
+        if (pyramid != null) {
+            sourceId = TileProxy.getInstance().registerPyramid(pyramid);
+            if (imageBounds == null) {
+                imageBounds = new Bounds(0, 0, pyramid.getWidth(), pyramid.getHeight());
+            }
+            setTileGrid(pyramid.getTileSize(), pyramid.getTileSize(), imageBounds.getTopLeft());
+            updateSourceMetrics();
+        } else {
+            sourceId = null;
+        }
+        clearTiles();
+        updateTiles();
+    }
+
+    public Bounds getImageBounds() {
+        return imageBounds != null ? imageBounds.clone() : null;
+    }
+
+    /**
+     * Sets world bounds of the image.
+     *
+     * @param imageBounds bounds of the image
+     */
+    public void setImageBounds(Bounds imageBounds) {
+        if (imageBounds == null || !imageBounds.isValid() || imageBounds.getWidth() <= 0
+                || imageBounds.getHeight() <= 0) {
+            throw new IllegalArgumentException("Invalid image bounds");
+        }
+        this.imageBounds = imageBounds.clone();
+        if (pyramid != null) {
+            setTileGrid(pyramid.getTileSize(), pyramid.getTileSize(), imageBounds.getTopLeft());
+            clearTiles();
+            updateTiles();
+        }
+    }
+
+    /**
+     * Sets metrics of the layer tiles, served tile bytes are recorded as well.
+     *
+     * @param metrics tile metrics or null to stop recording
+     */
+    @Override
+    public void setMetrics(TileMetrics metrics) {
+        super.setMetrics(metrics);
+        updateSourceMetrics();
+    }
+
+    private void updateSourceMetrics() {
+        if (pyramid != null && getMetrics() != null) {
+            TileProxy.getInstance().setPyramidMetrics(pyramid, getMetrics());
+        }
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        TileRequestHandler.register(getSession());
+    }
+
+    /**
+     * Gets the resolution of tiles at given pyramid level.
+     *
+     * @param level pyramid level
+     * @return world units per tile pixel
+     */
+    public double getResolution(int level) {
+        return imageBounds.getWidth() / pyramid.getWidth() * pyramid.getSubsampling(level);
+    }
+
+    /**
+     * Gets the pyramid level which resolution is nearest to the view ratio.
+     *
+     * @param ratio view world ratio
+     * @return pyramid level
+     */
+    public int getLevel(double ratio) {
+        int level = pyramid.getMaxLevel()
+                + (int) Math.round(Math.log(getResolution(pyramid.getMaxLevel()) * ratio) / Math.log(2));
+        return Math.max(0, Math.min(pyramid.getMaxLevel(), level));
+    }
+
+    @Override
+    protected double getTileResolution(double ratio) {
+        return getResolution(getLevel(ratio));
+    }
+
+    @Override
+    protected void updateTiles() {
+        if (pyramid != null) {
+            super.updateTiles();
+        }
+    }
+
+    @Override
+    protected double getZoomRatio(double ratio, boolean zoomIn) {
+        int level = getLevel(ratio) + (zoomIn ? 1 : -1);
+        return level >= 0 && level <= pyramid.getMaxLevel() ? 1 / getResolution(level) : 0;
+    }
+
+    @Override
+    protected ImageTile createTile(TileIndex index, Bounds bounds, int width, int height) {
+        if (getForLayer() == null) {
+            return null;
+        }
+
+        String url = getTileUrl(index, bounds, getForLayer().getViewWorldTransform().getViewWorldRatio());
+        if (url == null) {
+            return null;
+        }
+
+        ImageTile tile = new ImageTile(url);
+        tile.setWidth(width, Unit.PIXELS);
+        tile.setHeight(height, Unit.PIXELS);
+
+        return tile;
+    }
+
+    @Override
+    protected String getTileUrl(TileIndex index, Bounds bounds, double ratio) {
+        if (ratio == 0 || sourceId == null) {
+            return null;
+        }
+
+        int level = getLevel(ratio);
+        int column = index.getColumn();
+        int row = index.getRow();
+        if (column < 0 || row < 0 || column >= pyramid.getColumns(level) || row >= pyramid.getRows(level)) {
+            return null;
+        }
+
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put(TileRequestHandler.PARAM_LEVEL, String.valueOf(level));
+        parameters.put(TileRequestHandler.PARAM_COLUMN, String.valueOf(column));
+        parameters.put(TileRequestHandler.PARAM_ROW, String.valueOf(row));
+        return TileRequestHandler.buildUrl(sourceId, parameters);
+    }
+
+}
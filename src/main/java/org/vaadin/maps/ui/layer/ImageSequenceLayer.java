@@ -2,6 +2,7 @@ package org.vaadin.maps.ui.layer;
 
 import com.vaadin.ui.Component.Focusable;
 import org.vaadin.maps.shared.ui.layer.ImageSequenceLayerState;
+import org.vaadin.maps.shared.ui.tile.PlaybackMode;
 import org.vaadin.maps.ui.tile.ImageSequenceTile;
 import org.vaadin.maps.ui.tile.ImageSequenceTile.ChangeListener;
 import org.vaadin.maps.ui.tile.ImageSequenceTile.ClickListener;
@@ -71,6 +72,23 @@ public class ImageSequenceLayer extends AbstractLayer<ImageSequenceTile> impleme
         tile.clear();
     }
 
+    /**
+     * Sets sprite sheet of frames laid out in a grid instead of tile URLs, see
+     * {@link ImageSequenceTile#setSpriteSheet(String, int, int, int, int)}.
+     */
+    public void setSpriteSheet(String url, int frameWidth, int frameHeight, int columns, int frameCount) {
+        tile.setSpriteSheet(url, frameWidth, frameHeight, columns, frameCount);
+    }
+
+    /**
+     * Sets packed frame atlas instead of tile URLs, see
+     * {@link ImageSequenceTile#setSpriteSheet(String, int, int, int, int, int[], int[])}.
+     */
+    public void setSpriteSheet(String url, int spriteWidth, int spriteHeight, int frameWidth, int frameHeight,
+                               int[] frameX, int[] frameY) {
+        tile.setSpriteSheet(url, spriteWidth, spriteHeight, frameWidth, frameHeight, frameX, frameY);
+    }
+
     public int getTileIndex() {
         return tile.getIndex();
     }
@@ -83,6 +101,65 @@ public class ImageSequenceLayer extends AbstractLayer<ImageSequenceTile> impleme
         return tile.getTilesCount();
     }
 
+    /**
+     * Starts playback of the sequence by the client, see
+     * {@link ImageSequenceTile#play()}.
+     */
+    public void play() {
+        tile.play();
+    }
+
+    public void pause() {
+        tile.pause();
+    }
+
+    public boolean isPlaying() {
+        return tile.isPlaying();
+    }
+
+    public double getFps() {
+        return tile.getFps();
+    }
+
+    public void setFps(double fps) {
+        tile.setFps(fps);
+    }
+
+    public PlaybackMode getPlaybackMode() {
+        return tile.getPlaybackMode();
+    }
+
+    public void setPlaybackMode(PlaybackMode playbackMode) {
+        tile.setPlaybackMode(playbackMode);
+    }
+
+    public void setPlaybackRange(int start, int end) {
+        tile.setPlaybackRange(start, end);
+    }
+
+    public void setReportInterval(int reportInterval) {
+        tile.setReportInterval(reportInterval);
+    }
+
+    public int getPreloadAhead() {
+        return tile.getPreloadAhead();
+    }
+
+    public int getPreloadBehind() {
+        return tile.getPreloadBehind();
+    }
+
+    /**
+     * Sets the window of images preloaded around the current index, see
+     * {@link ImageSequenceTile#setPreloadWindow(int, int)}.
+     *
+     * @param ahead  number of images after the current one
+     * @param behind number of images before the current one
+     */
+    public void setPreloadWindow(int ahead, int behind) {
+        tile.setPreloadWindow(ahead, behind);
+    }
+
     public void nextTile() {
         int index = getTileIndex();
 
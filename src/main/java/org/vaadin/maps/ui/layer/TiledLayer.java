@@ -0,0 +1,439 @@
+package org.vaadin.maps.ui.layer;
+
+import com.vaadin.ui.Component;
+import org.vaadin.maps.server.Bounds;
+import org.vaadin.maps.server.LonLat;
+import org.vaadin.maps.server.Size;
+import org.vaadin.maps.server.TileIndex;
+import org.vaadin.maps.shared.ui.layer.TiledLayerClientRpc;
+import org.vaadin.maps.shared.ui.layer.TiledLayerServerRpc;
+import org.vaadin.maps.ui.GridLayout;
+import org.vaadin.maps.ui.MapConstants;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+/**
+ * Grid layer composed of equally sized tiles. The tile grid is fixed to the
+ * tile origin, so panning adds only tiles which come into view and removes
+ * those which left it. Loaded tiles are kept until the view scale changes.
+ *
+ * @author Kamil Morong
+ */
+public abstract class TiledLayer<C extends Component> extends GridLayer<C> {
+
+    /**
+     * view scales of one zoom in and zoom out step of the zoom handler
+     */
+    public static final double ZOOM_IN_SCALE = 0.8;
+    public static final double ZOOM_OUT_SCALE = 1.25;
+
+    private final HashMap<TileIndex, C> tiles = new HashMap<>();
+    private final Size visible = new Size();
+
+    private int tileWidth = MapConstants.DEFAULT_TILE_SIZE;
+    private int tileHeight = MapConstants.DEFAULT_TILE_SIZE;
+
+    /**
+     * user defined origin of tile grid
+     */
+    private LonLat tileOrigin = null;
+    /**
+     * origin of tile grid in use
+     */
+    private LonLat gridOrigin = null;
+    /**
+     * world coordinate of the layer top left corner when the tiles were
+     * placed for the current view ratio
+     */
+    private LonLat anchor = null;
+    private double gridRatio = 0.0;
+
+    private int prefetchRing = 0;
+    private boolean prefetchZoom = false;
+
+    private final TiledLayerServerRpc tiledRpc = new TiledLayerServerRpc() {
+        @Override
+        public void requestTiles() {
+            updateTiles();
+        }
+    };
+
+    public TiledLayer() {
+        super();
+        registerRpc(tiledRpc);
+    }
+
+    private static int floorMod(int x, int y) {
+        int m = x % y;
+        return m < 0 ? m + y : m;
+    }
+
+    /**
+     * Creates a new tile covering given world bounds.
+     *
+     * @param index  position of the tile in the tile grid
+     * @param bounds world bounds of the tile
+     * @param width  width of the tile in pixels
+     * @param height height of the tile in pixels
+     * @return new tile or null when there is no tile at the index
+     */
+    protected abstract C createTile(TileIndex index, Bounds bounds, int width, int height);
+
+    /**
+     * Gets the resolution of tile images, in world units per image pixel,
+     * used for the given view ratio. Tiles are scaled to fit the view when
+     * the resolution does not match the view ratio. By default the tiles are
+     * created for the view ratio exactly.
+     *
+     * @param ratio view world ratio
+     * @return resolution of tile images
+     */
+    protected double getTileResolution(double ratio) {
+        return 1 / ratio;
+    }
+
+    /**
+     * Gets URL of the tile image to be prefetched by the client. Layers which
+     * do not support prefetching return null.
+     *
+     * @param index  position of the tile in the tile grid
+     * @param bounds world bounds of the tile
+     * @param ratio  view world ratio the tile is shown at
+     * @return URL of the tile image or null
+     */
+    protected String getTileUrl(TileIndex index, Bounds bounds, double ratio) {
+        return null;
+    }
+
+    /**
+     * Gets the view ratio of the next zoom step. Layers with discrete zoom
+     * levels return the ratio of the next level.
+     *
+     * @param ratio  current view world ratio
+     * @param zoomIn true for zoom in, false for zoom out
+     * @return view world ratio or zero when there is no next level
+     */
+    protected double getZoomRatio(double ratio, boolean zoomIn) {
+        return ratio / (zoomIn ? ZOOM_IN_SCALE : ZOOM_OUT_SCALE);
+    }
+
+    /**
+     * Returns true when the layer shows single tile covering the whole view
+     * instead of the tile grid.
+     */
+    public boolean isSingleTile() {
+        return false;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public void setTileSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+        if (tileWidth != width || tileHeight != height) {
+            tileWidth = width;
+            tileHeight = height;
+            clearTiles();
+            updateTiles();
+        }
+    }
+
+    public LonLat getTileOrigin() {
+        return tileOrigin;
+    }
+
+    /**
+     * Sets the world coordinate of top left corner of the tile grid. When not
+     * set, the default tile origin of the map CRS is used.
+     *
+     * @param tileOrigin top left corner of the tile grid
+     */
+    public void setTileOrigin(LonLat tileOrigin) {
+        this.tileOrigin = tileOrigin;
+        gridOrigin = null;
+        clearTiles();
+        updateTiles();
+    }
+
+    /**
+     * Sets tile size and origin of the tile grid without updating tiles, for
+     * layers which switch tile grids by view ratio. Present tiles must be
+     * cleared.
+     *
+     * @param width      tile width in pixels
+     * @param height     tile height in pixels
+     * @param tileOrigin top left corner of the tile grid
+     */
+    protected void setTileGrid(int width, int height, LonLat tileOrigin) {
+        tileWidth = width;
+        tileHeight = height;
+        this.tileOrigin = tileOrigin;
+        gridOrigin = null;
+    }
+
+    public int getPrefetchRing() {
+        return prefetchRing;
+    }
+
+    /**
+     * Sets number of tile rings around the view, which are prefetched by the
+     * client after the visible tiles are loaded.
+     *
+     * @param prefetchRing number of rings, 0 disables prefetching
+     */
+    public void setPrefetchRing(int prefetchRing) {
+        if (prefetchRing < 0) {
+            throw new IllegalArgumentException("Prefetch ring must not be negative");
+        }
+        this.prefetchRing = prefetchRing;
+    }
+
+    public boolean isPrefetchZoom() {
+        return prefetchZoom;
+    }
+
+    /**
+     * Sets whether tiles of the next zoom in and zoom out step are prefetched
+     * by the client, after the tiles around the view.
+     *
+     * @param prefetchZoom true to prefetch tiles of adjacent zoom steps
+     */
+    public void setPrefetchZoom(boolean prefetchZoom) {
+        this.prefetchZoom = prefetchZoom;
+    }
+
+    protected Size getVisible() {
+        return visible;
+    }
+
+    /**
+     * Gets origin of the tile grid used when no tile origin is set. It is the
+     * top left corner of the world of geographic and spherical mercator CRS,
+     * origin of coordinates of other CRS. It never depends on the view, so
+     * tiles of all sessions are equal and their URLs can be cached.
+     *
+     * @return top left corner of the tile grid
+     */
+    protected LonLat getDefaultTileOrigin() {
+        String crs = getForLayer() != null ? getForLayer().getCRS() : null;
+        if (null == crs) {
+            crs = MapConstants.DEFAULT_CRS;
+        }
+        crs = crs.trim().toUpperCase();
+
+        if ("EPSG:4326".equals(crs) || "CRS:84".equals(crs)) {
+            return new LonLat(-180, 90);
+        }
+        if ("EPSG:3857".equals(crs) || "EPSG:900913".equals(crs) || "EPSG:102100".equals(crs)) {
+            return new LonLat(-MapConstants.MERCATOR_EXTENT, MapConstants.MERCATOR_EXTENT);
+        }
+        return new LonLat(0, 0);
+    }
+
+    /**
+     * Removes all tiles from the grid. Tile positions remain valid for the
+     * current view ratio.
+     */
+    protected void clearTiles() {
+        getGrid().removeAllComponents();
+        tiles.clear();
+    }
+
+    /**
+     * Removes all tiles and forgets current tile placement. Client side shift
+     * of the grid must be reset as well.
+     */
+    protected void resetTiles() {
+        clearTiles();
+        anchor = null;
+        gridRatio = 0.0;
+    }
+
+    /**
+     * Updates tile grid to cover visible extent. Tiles out of view are
+     * removed, missing tiles are created, present tiles are kept.
+     */
+    protected void updateTiles() {
+        if (isSingleTile() || getForLayer() == null || !visible.isValid()) {
+            return;
+        }
+
+        Bounds extent = getForLayer().getExtent();
+        double ratio = getForLayer().getViewWorldTransform().getViewWorldRatio();
+        if (extent == null || !extent.isValid() || ratio == 0) {
+            return;
+        }
+
+        if (ratio != gridRatio || anchor == null) {
+            clearTiles();
+            gridRatio = ratio;
+            anchor = extent.getTopLeft();
+        }
+
+        if (gridOrigin == null) {
+            gridOrigin = tileOrigin != null ? tileOrigin : getDefaultTileOrigin();
+        }
+
+        GridLayout<C> grid = getGrid();
+
+        double worldWidth = tileWidth * getTileResolution(ratio);
+        double worldHeight = tileHeight * getTileResolution(ratio);
+
+        // size of tiles in the view in pixels
+        double viewTileWidth = worldWidth * ratio;
+        double viewTileHeight = worldHeight * ratio;
+
+        // grid cells are reused cyclically, grid dimensions must exceed
+        // number of tiles covering the view
+        int columns = (int) (visible.getWidth() / viewTileWidth) + 2;
+        int rows = (int) (visible.getHeight() / viewTileHeight) + 2;
+        if (columns > grid.getColumns() || rows > grid.getRows()) {
+            clearTiles();
+            grid.setColumns(Math.max(columns, grid.getColumns()));
+            grid.setRows(Math.max(rows, grid.getRows()));
+        }
+        columns = grid.getColumns();
+        rows = grid.getRows();
+
+        // offset of grid origin relative to layer top left corner in pixels
+        long originX = Math.round((gridOrigin.getLon() - anchor.getLon()) * ratio);
+        long originY = Math.round((anchor.getLat() - gridOrigin.getLat()) * ratio);
+
+        // visible area relative to grid origin in pixels
+        long viewX = Math.round((extent.getLeft() - anchor.getLon()) * ratio) - originX;
+        long viewY = Math.round((anchor.getLat() - extent.getTop()) * ratio) - originY;
+
+        int firstColumn = (int) Math.floor(viewX / viewTileWidth);
+        int lastColumn = (int) Math.floor((viewX + visible.getWidth() - 1) / viewTileWidth);
+        int firstRow = (int) Math.floor(viewY / viewTileHeight);
+        int lastRow = (int) Math.floor((viewY + visible.getHeight() - 1) / viewTileHeight);
+
+        // remove tiles out of view first to free grid cells
+        for (Iterator<Entry<TileIndex, C>> iterator = tiles.entrySet().iterator(); iterator.hasNext(); ) {
+            Entry<TileIndex, C> entry = iterator.next();
+            TileIndex index = entry.getKey();
+            if (index.getColumn() < firstColumn || index.getColumn() > lastColumn || index.getRow() < firstRow
+                    || index.getRow() > lastRow) {
+                grid.removeComponent(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        for (int row = firstRow; row <= lastRow; ++row) {
+            for (int column = firstColumn; column <= lastColumn; ++column) {
+                TileIndex index = new TileIndex(column, row);
+                if (!tiles.containsKey(index)) {
+                    Bounds bounds = getTileBounds(column, row, worldWidth, worldHeight);
+
+                    // adjacent scaled tiles must not leave gaps
+                    long x = Math.round(column * viewTileWidth);
+                    long y = Math.round(row * viewTileHeight);
+                    int width = (int) (Math.round((column + 1) * viewTileWidth) - x);
+                    int height = (int) (Math.round((row + 1) * viewTileHeight) - y);
+
+                    C tile = createTile(index, bounds, width, height);
+                    if (tile != null) {
+                        grid.addComponent(tile, floorMod(column, columns), floorMod(row, rows));
+                        grid.setComponentPosition(tile, (int) (originX + x), (int) (originY + y));
+                        tiles.put(index, tile);
+                    }
+                }
+            }
+        }
+
+        if (prefetchRing > 0 || prefetchZoom) {
+            prefetchTiles(extent, ratio, firstColumn, lastColumn, firstRow, lastRow);
+        }
+    }
+
+    private Bounds getTileBounds(int column, int row, double worldWidth, double worldHeight) {
+        double left = gridOrigin.getLon() + column * worldWidth;
+        double top = gridOrigin.getLat() - row * worldHeight;
+        return new Bounds(left, top - worldHeight, left + worldWidth, top);
+    }
+
+    /**
+     * Sends URLs of tiles around the view and of adjacent zoom steps to the
+     * client. The client loads them into browser cache at low priority and
+     * drops them on next pan or zoom.
+     */
+    private void prefetchTiles(Bounds extent, double ratio, int firstColumn, int lastColumn, int firstRow,
+                               int lastRow) {
+        ArrayList<String> urls = new ArrayList<>();
+
+        double worldWidth = tileWidth * getTileResolution(ratio);
+        double worldHeight = tileHeight * getTileResolution(ratio);
+
+        // nearest rings first
+        for (int ring = 1; ring <= prefetchRing; ++ring) {
+            for (int row = firstRow - ring; row <= lastRow + ring; ++row) {
+                for (int column = firstColumn - ring; column <= lastColumn + ring; ++column) {
+                    if (row == firstRow - ring || row == lastRow + ring || column == firstColumn - ring
+                            || column == lastColumn + ring) {
+                        addTileUrl(urls, column, row, worldWidth, worldHeight, ratio);
+                    }
+                }
+            }
+        }
+
+        if (prefetchZoom) {
+            addZoomTileUrls(urls, extent, getZoomRatio(ratio, true));
+            addZoomTileUrls(urls, extent, getZoomRatio(ratio, false));
+        }
+
+        getRpcProxy(TiledLayerClientRpc.class).prefetch(urls);
+    }
+
+    private void addZoomTileUrls(ArrayList<String> urls, Bounds extent, double ratio) {
+        if (ratio <= 0) {
+            return;
+        }
+
+        double worldWidth = tileWidth * getTileResolution(ratio);
+        double worldHeight = tileHeight * getTileResolution(ratio);
+
+        // zooming keeps center of the view
+        LonLat center = extent.getCenter();
+        double halfWidth = visible.getWidth() / ratio / 2;
+        double halfHeight = visible.getHeight() / ratio / 2;
+
+        int firstColumn = (int) Math.floor((center.getLon() - halfWidth - gridOrigin.getLon()) / worldWidth);
+        int lastColumn = (int) Math.floor((center.getLon() + halfWidth - gridOrigin.getLon()) / worldWidth);
+        int firstRow = (int) Math.floor((gridOrigin.getLat() - center.getLat() - halfHeight) / worldHeight);
+        int lastRow = (int) Math.floor((gridOrigin.getLat() - center.getLat() + halfHeight) / worldHeight);
+
+        for (int row = firstRow; row <= lastRow; ++row) {
+            for (int column = firstColumn; column <= lastColumn; ++column) {
+                addTileUrl(urls, column, row, worldWidth, worldHeight, ratio);
+            }
+        }
+    }
+
+    private void addTileUrl(ArrayList<String> urls, int column, int row, double worldWidth, double worldHeight,
+                            double ratio) {
+        String url = getTileUrl(new TileIndex(column, row), getTileBounds(column, row, worldWidth, worldHeight),
+                ratio);
+        if (url != null) {
+            urls.add(url);
+        }
+    }
+
+    @Override
+    public void sizeChanged(int oldWidth, int oldHeight, int newWidth, int newHeight) {
+        visible.setWidth(newWidth);
+        visible.setHeight(newHeight);
+
+        updateTiles();
+    }
+
+}
@@ -1,29 +1,62 @@
 package org.vaadin.maps.ui.layer;
 
 import com.vaadin.ui.Component.Focusable;
+import com.vividsolutions.jts.geom.Geometry;
+import org.vaadin.maps.server.FeatureTable;
+import org.vaadin.maps.server.ViewWorldTransform.TransformChangeEvent;
+import org.vaadin.maps.server.ViewWorldTransform.TransformChangeListener;
 import org.vaadin.maps.shared.ui.Style;
+import org.vaadin.maps.shared.ui.featurecontainer.FeatureRenderer;
 import org.vaadin.maps.shared.ui.layer.VectorFeatureLayerServerRpc;
 import org.vaadin.maps.shared.ui.layer.VectorFeatureLayerState;
+import org.vaadin.maps.ui.MeasuredSizeHandler;
 import org.vaadin.maps.ui.feature.VectorFeature;
 import org.vaadin.maps.ui.featurecontainer.VectorFeatureContainer;
 import org.vaadin.maps.ui.featurecontainer.VectorFeatureContainer.ClickListener;
 
 import java.util.Iterator;
+import java.util.Map;
 
 /**
+ * Layer of vector features. Few interactive features are added as
+ * {@link VectorFeature} components, many non-interactive features are added
+ * as bulk features, which are stored in columns of a {@link FeatureTable} and
+ * drawn by the layer container connector.
+ * <p>
+ * Geometries of all features are sent in world coordinates, the layer only
+ * passes the view world transform to the container and the client projects
+ * the features. Bulk features are culled to the view extent, see
+ * {@link VectorFeatureContainer}, the extent is updated after each pan, zoom
+ * and resize. Geometries of bulk features are simplified for the view ratio.
+ *
  * @author Kamil Morong
  */
-public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer> implements Focusable {
+public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer>
+        implements Focusable, MeasuredSizeHandler {
 
     private final VectorFeatureLayerServerRpc rpc = new VectorFeatureLayerServerRpc() {
         /*
          * @Override public void click(MouseEventDetails mouseDetails) {
          * fireEvent(new ClickEvent(VectorFeatureLayer.this, mouseDetails)); }
          */
+
+        @Override
+        public void requestFeatures() {
+            updateViewExtent();
+        }
+    };
+
+    private final TransformChangeListener transformChangeListener = new TransformChangeListener() {
+        @Override
+        public void onTransformChange(TransformChangeEvent event) {
+            getContent().setViewWorldTransform(event.getViewWorldTransform());
+            updateViewExtent();
+        }
     };
 
     private Style style = null;
     private Style hoverStyle = null;
+    private boolean culling = true;
 
     public VectorFeatureLayer() {
         registerRpc(rpc);
@@ -53,6 +86,7 @@ public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer> im
 
     public void setFixed(boolean fixed) {
         getState().fixed = fixed;
+        updateViewExtent();
     }
 
     @Override
@@ -78,12 +112,7 @@ public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer> im
     public void addComponent(VectorFeature feature) {
         getContent().addComponent(feature);
 
-        if (getForLayer() != null) {
-            feature.transformToView(getForLayer().getViewWorldTransform());
-        }
-
         setInheritedStyles(feature);
-        setTransformChangeListener(feature);
     }
 
     /**
@@ -97,7 +126,6 @@ public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer> im
         getContent().addComponent(feature, index);
 
         setInheritedStyles(feature);
-        setTransformChangeListener(feature);
     }
 
     /**
@@ -110,13 +138,6 @@ public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer> im
 
         for (VectorFeature feature : features) {
             setInheritedStyles(feature);
-            setTransformChangeListener(feature);
-        }
-    }
-
-    private void setTransformChangeListener(VectorFeature feature) {
-        if (getForLayer() != null) {
-            getForLayer().addTransformChangeListener(feature);
         }
     }
 
@@ -180,6 +201,8 @@ public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer> im
      */
     public void replaceComponent(VectorFeature oldFeature, VectorFeature newFeature) {
         getContent().replaceComponent(oldFeature, newFeature);
+
+        setInheritedStyles(newFeature);
     }
 
     /**
@@ -203,6 +226,173 @@ public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer> im
         return getContent().getComponent(index);
     }
 
+    /**
+     * Gets the table of bulk features. Changes made directly to the table are
+     * not synchronized to the client.
+     *
+     * @return the table of bulk features
+     */
+    public FeatureTable getFeatureTable() {
+        return getContent().getFeatureTable();
+    }
+
+    /**
+     * Adds the bulk feature, or replaces the bulk feature of the same
+     * identifier. Bulk features are drawn by style of the style identifier and
+     * fire no events.
+     *
+     * @param id       feature identifier
+     * @param geometry feature geometry in world coordinates
+     * @param styleId  feature style identifier
+     */
+    public void addBulkFeature(String id, Geometry geometry, int styleId) {
+        getContent().addFeature(id, geometry, styleId, null);
+    }
+
+    /**
+     * Adds the bulk feature with attributes, or replaces the bulk feature of
+     * the same identifier. Attributes are kept on the server only.
+     *
+     * @param id         feature identifier
+     * @param geometry   feature geometry in world coordinates
+     * @param styleId    feature style identifier
+     * @param attributes attribute values by name
+     */
+    public void addBulkFeature(String id, Geometry geometry, int styleId, Map<String, ?> attributes) {
+        getContent().addFeature(id, geometry, styleId, attributes);
+    }
+
+    /**
+     * Removes the bulk feature from this layer.
+     *
+     * @param id feature identifier
+     */
+    public void removeBulkFeature(String id) {
+        getContent().removeFeature(id);
+    }
+
+    /**
+     * Removes all bulk features from this layer.
+     */
+    public void removeAllBulkFeatures() {
+        getContent().clearFeatures();
+    }
+
+    /**
+     * Changes style of the bulk feature.
+     *
+     * @param id      feature identifier
+     * @param styleId feature style identifier
+     */
+    public void setBulkFeatureStyleId(String id, int styleId) {
+        getContent().setFeatureStyleId(id, styleId);
+    }
+
+    /**
+     * Gets the number of bulk features.
+     *
+     * @return the number of bulk features
+     */
+    public int getBulkFeatureCount() {
+        return getContent().getFeatureTable().size();
+    }
+
+    /**
+     * Sets the style of bulk features of the style identifier.
+     *
+     * @param styleId style identifier
+     * @param style   the style or null to draw by default style
+     */
+    public void setBulkFeatureStyle(int styleId, Style style) {
+        getContent().setFeatureStyle(styleId, style);
+    }
+
+    public FeatureRenderer getRenderer() {
+        return getContent().getRenderer();
+    }
+
+    /**
+     * Sets the renderer of bulk features of the layer, SVG by default.
+     * Canvas renderer paints all bulk features into one canvas, so it suits
+     * layers of many thousands of features.
+     *
+     * @param renderer the renderer
+     */
+    public void setRenderer(FeatureRenderer renderer) {
+        getContent().setRenderer(renderer);
+    }
+
+    public boolean isCulling() {
+        return culling;
+    }
+
+    /**
+     * Enables culling of bulk features to the view extent, enabled by
+     * default. Culling does not apply to fixed layers.
+     *
+     * @param culling true to send only bulk features near the view extent
+     */
+    public void setCulling(boolean culling) {
+        this.culling = culling;
+        updateViewExtent();
+    }
+
+    public double getCullingMargin() {
+        return getContent().getCullingMargin();
+    }
+
+    /**
+     * Sets the margin around the view extent, in which bulk features are sent
+     * to the client as well.
+     *
+     * @param cullingMargin margin as a fraction of the extent width and height
+     *                      on each side
+     */
+    public void setCullingMargin(double cullingMargin) {
+        getContent().setCullingMargin(cullingMargin);
+    }
+
+    public boolean isSimplifying() {
+        return getContent().isSimplifying();
+    }
+
+    /**
+     * Enables simplification of bulk feature geometries for the view ratio,
+     * enabled by default.
+     *
+     * @param simplifying true to simplify geometries
+     */
+    public void setSimplifying(boolean simplifying) {
+        getContent().setSimplifying(simplifying);
+    }
+
+    public double getSimplifyTolerance() {
+        return getContent().getSimplifyTolerance();
+    }
+
+    /**
+     * Sets maximal distance of simplified bulk feature geometries from the
+     * original geometries.
+     *
+     * @param simplifyTolerance tolerance in pixels of the view
+     */
+    public void setSimplifyTolerance(double simplifyTolerance) {
+        getContent().setSimplifyTolerance(simplifyTolerance);
+    }
+
+    private void updateViewExtent() {
+        // called from the constructor before the content is set
+        if (getContent() != null) {
+            getContent().setCulling(culling && !isFixed());
+            getContent().setViewExtent(getForLayer() != null ? getForLayer().getExtent() : null);
+        }
+    }
+
+    @Override
+    public void sizeChanged(int oldWidth, int oldHeight, int newWidth, int newHeight) {
+        updateViewExtent();
+    }
+
     /**
      * Adds the feature container click listener.
      *
@@ -259,16 +449,19 @@ public class VectorFeatureLayer extends AbstractLayer<VectorFeatureContainer> im
 
     @Override
     public void setForLayer(ForLayer forLayer) {
+        if (getForLayer() != null) {
+            getForLayer().removeTransformChangeListener(transformChangeListener);
+        }
+
         super.setForLayer(forLayer);
 
         if (forLayer != null) {
-            // update previously created childs
-            Iterator<VectorFeature> features = featureIterator();
-            while (features.hasNext()) {
-                VectorFeature feature = features.next();
-                feature.transformToView(forLayer.getViewWorldTransform());
-            }
+            forLayer.addTransformChangeListener(transformChangeListener);
+            getContent().setViewWorldTransform(forLayer.getViewWorldTransform());
+        } else {
+            getContent().setViewWorldTransform(null);
         }
+        updateViewExtent();
     }
 
 }
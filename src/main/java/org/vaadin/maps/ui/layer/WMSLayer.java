@@ -1,8 +1,16 @@
 package org.vaadin.maps.ui.layer;
 
+import com.vaadin.server.Sizeable.Unit;
 import org.vaadin.maps.server.Bounds;
+import org.vaadin.maps.server.LonLat;
+import org.vaadin.maps.server.Pixel;
 import org.vaadin.maps.server.Size;
+import org.vaadin.maps.server.TileIndex;
+import org.vaadin.maps.server.TileMetrics;
+import org.vaadin.maps.server.TileProxy;
+import org.vaadin.maps.server.WMSComposite;
 import org.vaadin.maps.server.WMSConstants;
+import org.vaadin.maps.server.WMSResource;
 import org.vaadin.maps.shared.ui.layer.WMSLayerServerRpc;
 import org.vaadin.maps.shared.ui.layer.WMSLayerState;
 import org.vaadin.maps.ui.MapConstants;
@@ -11,15 +19,28 @@ import org.vaadin.maps.ui.tile.WMSTile;
 /**
  * @author Kamil Morong
  */
-public class WMSLayer extends GridLayer<WMSTile> {
+public class WMSLayer extends TiledLayer<WMSTile> {
+
+    public static final double DEFAULT_BUFFER_RATIO = 2.0;
 
     private String baseUrl = "";
     private String format = WMSConstants.DEFAULT_FORMAT;
     private String styles = "";
     private String layers = "";
+    private boolean proxied = false;
+    private WMSComposite composite = null;
+    private double[] resolutions = null;
+    private Pixel tilePosition = null;
+
+    private double bufferRatio = DEFAULT_BUFFER_RATIO;
+    private double resolutionTolerance = 0.0;
+    /**
+     * world bounds and resolution of the single tile image shown
+     */
+    private Bounds imageBounds = null;
+    private double imageResolution = 0.0;
 
     private Size tileSize = new Size(WMSConstants.DEFAULT_WIDTH, WMSConstants.DEFAULT_HEIGHT);
-    private Size visible = new Size();
 
     private Bounds bounds = new Bounds();
 
@@ -62,6 +83,7 @@ public class WMSLayer extends GridLayer<WMSTile> {
     public void setBaseUrl(String baseUrl) {
         if (!this.baseUrl.equals(baseUrl)) {
             this.baseUrl = baseUrl;
+            updateSourceMetrics();
             rebuildTiles();
         }
     }
@@ -90,66 +112,367 @@ public class WMSLayer extends GridLayer<WMSTile> {
         this.layers = layers;
     }
 
+    public boolean isProxied() {
+        return proxied;
+    }
+
+    /**
+     * Sets whether tile images are fetched through the server side tile
+     * proxy, see {@link org.vaadin.maps.server.TileProxy}.
+     *
+     * @param proxied true to serve tiles through the proxy
+     */
+    public void setProxied(boolean proxied) {
+        if (this.proxied != proxied) {
+            this.proxied = proxied;
+            updateSourceMetrics();
+            rebuildTiles();
+        }
+    }
+
+    /**
+     * Sets metrics of the layer tiles. When the tiles are proxied, bytes and
+     * cache hits of the tile proxy are recorded as well.
+     *
+     * @param metrics tile metrics or null to stop recording
+     */
+    @Override
+    public void setMetrics(TileMetrics metrics) {
+        super.setMetrics(metrics);
+        updateSourceMetrics();
+    }
+
+    private void updateSourceMetrics() {
+        if (getMetrics() != null) {
+            if (composite != null) {
+                TileProxy.getInstance().setCompositeMetrics(composite, getMetrics());
+            } else if (proxied && baseUrl != null && !baseUrl.isEmpty()) {
+                TileProxy.getInstance().setSourceMetrics(baseUrl, getMetrics());
+            }
+        }
+    }
+
+    public WMSComposite getComposite() {
+        return composite != null ? new WMSComposite(composite) : null;
+    }
+
+    /**
+     * Sets stack of WMS layers composed into one image on the server, instead
+     * of the layers of this layer's service. The browser then downloads one
+     * image for all the layers. Layers of the composite should not be added
+     * to the map.
+     *
+     * @param composite composite of WMS layers or null to request the layers
+     *                  of this layer
+     */
+    public void setComposite(WMSComposite composite) {
+        this.composite = composite != null && !composite.isEmpty() ? new WMSComposite(composite) : null;
+        updateSourceMetrics();
+        rebuildTiles();
+    }
+
+    private boolean hasSource() {
+        return composite != null || (baseUrl != null && !baseUrl.isEmpty());
+    }
+
+    public double[] getResolutions() {
+        return resolutions != null ? resolutions.clone() : null;
+    }
+
+    /**
+     * Sets resolutions, in world units per pixel, the map images are
+     * requested in. The view resolution is snapped to the nearest one and
+     * images are scaled to the view, image bounds are aligned to the tile
+     * grid. Equal views then produce equal requests, which can be served from
+     * caches. When no tile origin is set, the default tile origin of the map
+     * CRS is used, as for the tiled mode.
+     *
+     * @param resolutions resolutions or null to request images in the exact
+     *                    view resolution
+     */
+    public void setResolutions(double... resolutions) {
+        if (resolutions != null) {
+            for (double resolution : resolutions) {
+                if (resolution <= 0) {
+                    throw new IllegalArgumentException("Resolutions must be positive");
+                }
+            }
+        }
+        this.resolutions = resolutions != null && resolutions.length > 0 ? resolutions.clone() : null;
+        rebuildTiles();
+    }
+
+    /**
+     * Gets the resolution images are requested in for the view ratio.
+     *
+     * @param ratio view world ratio
+     * @return world units per image pixel
+     */
+    protected double getRequestResolution(double ratio) {
+        double exact = 1 / ratio;
+        if (resolutions == null) {
+            return exact;
+        }
+
+        double nearest = exact;
+        double distance = Double.MAX_VALUE;
+        for (double resolution : resolutions) {
+            double d = Math.abs(Math.log(resolution / exact));
+            if (d < distance) {
+                distance = d;
+                nearest = resolution;
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    protected double getTileResolution(double ratio) {
+        return getRequestResolution(ratio);
+    }
+
+    public double getBufferRatio() {
+        return bufferRatio;
+    }
+
+    /**
+     * Sets size of the single tile relative to the view. The view can be
+     * panned within the tile and zoomed out until the tile no longer covers
+     * it without requesting a new image.
+     *
+     * @param bufferRatio ratio of the tile size to the view size, at least 1
+     */
+    public void setBufferRatio(double bufferRatio) {
+        if (bufferRatio < 1) {
+            throw new IllegalArgumentException("Buffer ratio must be at least 1");
+        }
+        if (this.bufferRatio != bufferRatio) {
+            this.bufferRatio = bufferRatio;
+            if (isSingleTile()) {
+                rebuildTiles();
+            }
+        }
+    }
+
+    public double getResolutionTolerance() {
+        return resolutionTolerance;
+    }
+
+    /**
+     * Sets how much the single tile image may be magnified after zoom in
+     * before a new image is requested, e.g. 0.25 keeps the image for one zoom
+     * step of the zoom handler. Zero requests a new image on every zoom in.
+     *
+     * @param resolutionTolerance allowed magnification above 1
+     */
+    public void setResolutionTolerance(double resolutionTolerance) {
+        if (resolutionTolerance < 0) {
+            throw new IllegalArgumentException("Resolution tolerance must not be negative");
+        }
+        this.resolutionTolerance = resolutionTolerance;
+    }
+
     private void rebuildTiles() {
 
-        getGrid().removeAllComponents();
+        if (!isSingleTile()) {
+            clearTiles();
+            updateTiles();
+            return;
+        }
 
-        if (baseUrl != null && !baseUrl.isEmpty() && visible.isValid()) {
+        getGrid().removeAllComponents();
 
-            if (getState().singleTile) {
-                getGrid().setRows(1);
-                getGrid().setColumns(1);
+        Size visible = getVisible();
+        if (hasSource() && visible.isValid()) {
+            getGrid().setRows(1);
+            getGrid().setColumns(1);
 
-                tileSize.setWidth(2 * visible.getWidth());
-                tileSize.setHeight(2 * visible.getHeight());
+            tileSize.setWidth((int) Math.round(bufferRatio * visible.getWidth()));
+            tileSize.setHeight((int) Math.round(bufferRatio * visible.getHeight()));
 
-                WMSTile tile = createTile();
+            WMSTile tile = createTile();
 
-                getGrid().addComponent(tile);
+            getGrid().addComponent(tile);
+            if (tilePosition != null) {
+                // client centers tiles without position
+                getGrid().setComponentPosition(tile, tilePosition.getX(), tilePosition.getY());
             }
         }
     }
 
     private void requestSingleTile(int width, int height, int shiftX, int shiftY) {
-        rebuildTiles();
+        WMSTile tile = getSingleTile();
+        if (tile != null && isTileValid()) {
+            // keep current image, only place it to the new view
+            bounds = getForLayer().getExtent();
+            placeTile(tile, getForLayer().getViewWorldTransform().getViewWorldRatio());
+            getGrid().setComponentPosition(tile, tilePosition.getX(), tilePosition.getY());
+        } else {
+            rebuildTiles();
+        }
+    }
+
+    private WMSTile getSingleTile() {
+        if (getGrid().getComponentCount() == 1) {
+            return getGrid().typedIterator().next();
+        }
+        return null;
+    }
+
+    /**
+     * Returns true when the single tile image covers the view and is not
+     * magnified beyond the resolution tolerance.
+     */
+    private boolean isTileValid() {
+        if (imageBounds == null || getForLayer() == null || !isSingleTile()) {
+            return false;
+        }
+
+        Bounds extent = getForLayer().getExtent();
+        double ratio = getForLayer().getViewWorldTransform().getViewWorldRatio();
+        if (extent == null || !extent.isValid() || ratio == 0) {
+            return false;
+        }
+
+        // half a pixel is not visible
+        double margin = 0.5 / ratio;
+        return imageBounds.getLeft() <= extent.getLeft() + margin
+                && imageBounds.getRight() >= extent.getRight() - margin
+                && imageBounds.getBottom() <= extent.getBottom() + margin
+                && imageBounds.getTop() >= extent.getTop() - margin
+                && imageResolution * ratio <= 1 + resolutionTolerance + 1e-9;
     }
 
     private WMSTile createTile() {
-        String crs = MapConstants.DEFAULT_CRS;
+        double ratio = 0;
+        tilePosition = null;
+        imageBounds = null;
         if (getForLayer() != null) {
-            if (getForLayer().getCRS() != null) {
-                crs = getForLayer().getCRS();
-            }
             bounds = getForLayer().getExtent();
+            ratio = getForLayer().getViewWorldTransform().getViewWorldRatio();
+        }
+
+        Bounds area = bounds.scale(bufferRatio);
+        if (ratio == 0 || !bounds.isValid()) {
+            return createTile(area, tileSize.getWidth(), tileSize.getHeight());
         }
 
+        double resolution = getRequestResolution(ratio);
+        if (resolutions != null) {
+            // align image bounds to the tile grid of the snapped resolution
+            double stepX = getTileWidth() * resolution;
+            double stepY = getTileHeight() * resolution;
+            LonLat origin = getTileOrigin() != null ? getTileOrigin() : getDefaultTileOrigin();
+
+            area = new Bounds(origin.getLon() + Math.floor((area.getLeft() - origin.getLon()) / stepX) * stepX,
+                    origin.getLat() + Math.floor((area.getBottom() - origin.getLat()) / stepY) * stepY,
+                    origin.getLon() + Math.ceil((area.getRight() - origin.getLon()) / stepX) * stepX,
+                    origin.getLat() + Math.ceil((area.getTop() - origin.getLat()) / stepY) * stepY);
+        }
+
+        WMSTile tile = createTile(area, (int) Math.round(area.getWidth() / resolution),
+                (int) Math.round(area.getHeight() / resolution));
+
+        imageBounds = area;
+        imageResolution = resolution;
+        placeTile(tile, ratio);
+
+        return tile;
+    }
+
+    /**
+     * Scales the single tile image to the view and places it relative to view
+     * top left corner.
+     */
+    private void placeTile(WMSTile tile, double ratio) {
+        tile.setWidth((float) Math.round(imageBounds.getWidth() * ratio), Unit.PIXELS);
+        tile.setHeight((float) Math.round(imageBounds.getHeight() * ratio), Unit.PIXELS);
+        tilePosition = new Pixel((int) Math.round((imageBounds.getLeft() - bounds.getLeft()) * ratio),
+                (int) Math.round((bounds.getTop() - imageBounds.getTop()) * ratio));
+    }
+
+    private String getCRS() {
+        if (getForLayer() != null && getForLayer().getCRS() != null) {
+            return getForLayer().getCRS();
+        }
+        return MapConstants.DEFAULT_CRS;
+    }
+
+    private WMSTile createTile(Bounds bounds, int width, int height) {
         WMSTile tile = new WMSTile(baseUrl);
         tile.setLayers(layers);
-        tile.setWidth(tileSize.getWidth());
-        tile.setHeight(tileSize.getHeight());
-        tile.setSRS(crs);
+        tile.setWidth(width);
+        tile.setHeight(height);
+        tile.setSRS(getCRS());
         tile.setStyles(styles);
         tile.setFormat(format);
-        tile.setBBox(bounds.scale(2).toBBOX());
+        tile.setBBox(bounds.toBBOX());
+        tile.setProxied(proxied);
+        tile.setComposite(composite);
+
+        return tile;
+    }
 
+    @Override
+    protected void updateTiles() {
+        if (hasSource()) {
+            super.updateTiles();
+        }
+    }
+
+    @Override
+    protected WMSTile createTile(TileIndex index, Bounds bounds, int width, int height) {
+        WMSTile tile = createTile(bounds, getTileWidth(), getTileHeight());
+        if (width != getTileWidth() || height != getTileHeight()) {
+            // image of snapped resolution scaled to the view
+            tile.setWidth((float) width, Unit.PIXELS);
+            tile.setHeight((float) height, Unit.PIXELS);
+        }
         return tile;
     }
 
+    @Override
+    protected String getTileUrl(TileIndex index, Bounds bounds, double ratio) {
+        WMSResource resource = new WMSResource(baseUrl);
+        resource.setLayers(layers);
+        resource.setWidth(getTileWidth());
+        resource.setHeight(getTileHeight());
+        resource.setSRS(getCRS());
+        resource.setStyles(styles);
+        resource.setFormat(format);
+        resource.setBBox(bounds.toBBOX());
+        resource.setProxied(proxied);
+        resource.setComposite(composite);
+
+        return resource.getURL();
+    }
+
+    @Override
     public boolean isSingleTile() {
         return getState().singleTile;
     }
 
-    /*
-     * public void setSingleTile(boolean singleTile) { if (getState().singleTile
-     * != singleTile) { getState().singleTile = singleTile; rebuildTiles(); } }
+    /**
+     * Switches between single tile mode, where one image larger than the view
+     * by the buffer ratio is requested, and tiled mode, where the view is covered by fixed
+     * grid of tiles.
+     *
+     * @param singleTile true to request single tile
      */
+    public void setSingleTile(boolean singleTile) {
+        if (getState().singleTile != singleTile) {
+            getState().singleTile = singleTile;
+            resetTiles();
+            rebuildTiles();
+        }
+    }
 
     @Override
     public void sizeChanged(int oldWidth, int oldHeight, int newWidth, int newHeight) {
-        visible.setWidth(newWidth);
-        visible.setHeight(newHeight);
+        super.sizeChanged(oldWidth, oldHeight, newWidth, newHeight);
 
-        if ((oldWidth <= 0 && newWidth > oldWidth) || (oldHeight <= 0 && newHeight > oldHeight)) {
+        if (isSingleTile()
+                && ((oldWidth <= 0 && newWidth > oldWidth) || (oldHeight <= 0 && newHeight > oldHeight))) {
             rebuildTiles();
         }
     }
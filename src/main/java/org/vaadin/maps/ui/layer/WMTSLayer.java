@@ -0,0 +1,259 @@
+package org.vaadin.maps.ui.layer;
+
+import com.vaadin.server.Sizeable.Unit;
+import org.vaadin.maps.server.Bounds;
+import org.vaadin.maps.server.TileIndex;
+import org.vaadin.maps.server.TileMatrix;
+import org.vaadin.maps.server.TileMatrixSet;
+import org.vaadin.maps.server.TileRequestHandler;
+import org.vaadin.maps.server.WMTSConstants;
+import org.vaadin.maps.shared.ui.layer.WMTSLayerState;
+import org.vaadin.maps.ui.tile.ImageTile;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Layer of tiles served by Web Map Tile Service. Tiles are placed by the tile
+ * matrix nearest to the current view ratio and scaled to the view. Tiles are
+ * requested by KVP GetTile requests on base URL, or by RESTful resource URL
+ * template when set, e.g.
+ * <code>http://host/wmts/{Layer}/{Style}/{TileMatrixSet}/{TileMatrix}/{TileRow}/{TileCol}.png</code>
+ * .
+ *
+ * @author Kamil Morong
+ */
+public class WMTSLayer extends TiledLayer<ImageTile> {
+
+    private String baseUrl = "";
+    private String resourceUrl = "";
+    private String layer = "";
+    private String style = WMTSConstants.DEFAULT_STYLE;
+    private String format = WMTSConstants.DEFAULT_FORMAT;
+
+    private TileMatrixSet tileMatrixSet = null;
+    private TileMatrix tileMatrix = null;
+
+    public WMTSLayer() {
+        super();
+    }
+
+    public WMTSLayer(String baseUrl, String layer, TileMatrixSet tileMatrixSet) {
+        this();
+        this.baseUrl = baseUrl;
+        this.layer = layer;
+        setTileMatrixSet(tileMatrixSet);
+    }
+
+    @Override
+    protected WMTSLayerState getState() {
+        return (WMTSLayerState) super.getState();
+    }
+
+    @Override
+    public boolean isBase() {
+        return true;
+    }
+
+    @Override
+    public boolean isFixed() {
+        return false;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Sets base URL of KVP GetTile requests.
+     *
+     * @param baseUrl base URL of the service
+     */
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl != null ? baseUrl : "";
+        refreshTiles();
+    }
+
+    public String getResourceUrl() {
+        return resourceUrl;
+    }
+
+    /**
+     * Sets RESTful resource URL template. When set, it is used instead of KVP
+     * requests on base URL.
+     *
+     * @param resourceUrl resource URL template
+     */
+    public void setResourceUrl(String resourceUrl) {
+        this.resourceUrl = resourceUrl != null ? resourceUrl : "";
+        refreshTiles();
+    }
+
+    public String getLayer() {
+        return layer;
+    }
+
+    public void setLayer(String layer) {
+        this.layer = layer;
+        refreshTiles();
+    }
+
+    public String getStyle() {
+        return style;
+    }
+
+    public void setStyle(String style) {
+        this.style = style;
+        refreshTiles();
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public void setFormat(String format) {
+        this.format = format;
+        refreshTiles();
+    }
+
+    public TileMatrixSet getTileMatrixSet() {
+        return tileMatrixSet;
+    }
+
+    public void setTileMatrixSet(TileMatrixSet tileMatrixSet) {
+        this.tileMatrixSet = tileMatrixSet;
+        tileMatrix = null;
+        refreshTiles();
+    }
+
+    /**
+     * Gets the tile matrix shown in current view.
+     *
+     * @return tile matrix or null when the layer is not in a map
+     */
+    public TileMatrix getTileMatrix() {
+        if (tileMatrixSet != null && getForLayer() != null) {
+            double ratio = getForLayer().getViewWorldTransform().getViewWorldRatio();
+            if (ratio != 0) {
+                return tileMatrixSet.getMatrix(ratio);
+            }
+        }
+        return null;
+    }
+
+    private boolean hasSource() {
+        return tileMatrixSet != null && (!resourceUrl.isEmpty() || !baseUrl.isEmpty());
+    }
+
+    private void refreshTiles() {
+        clearTiles();
+        updateTiles();
+    }
+
+    @Override
+    protected double getTileResolution(double ratio) {
+        return tileMatrixSet.getResolution(tileMatrixSet.getMatrix(ratio));
+    }
+
+    @Override
+    protected void updateTiles() {
+        if (!hasSource()) {
+            return;
+        }
+
+        TileMatrix matrix = getTileMatrix();
+        if (matrix != null && matrix != tileMatrix) {
+            // levels may differ in origin and tile size
+            tileMatrix = matrix;
+            clearTiles();
+            setTileGrid(matrix.getTileWidth(), matrix.getTileHeight(), matrix.getTopLeft());
+        }
+
+        super.updateTiles();
+    }
+
+    @Override
+    protected double getZoomRatio(double ratio, boolean zoomIn) {
+        // nearest level of finer or coarser resolution
+        double resolution = getTileResolution(ratio);
+        double next = 0;
+        for (TileMatrix matrix : tileMatrixSet.getMatrices()) {
+            double r = tileMatrixSet.getResolution(matrix);
+            if (zoomIn ? r < resolution && r > next : r > resolution && (next == 0 || r < next)) {
+                next = r;
+            }
+        }
+        return next > 0 ? 1 / next : 0;
+    }
+
+    @Override
+    protected ImageTile createTile(TileIndex index, Bounds bounds, int width, int height) {
+        if (tileMatrix == null || !isInMatrix(tileMatrix, index)) {
+            return null;
+        }
+
+        ImageTile tile = new ImageTile(buildUrl(tileMatrix, index.getColumn(), index.getRow()));
+        tile.setWidth(width, Unit.PIXELS);
+        tile.setHeight(height, Unit.PIXELS);
+
+        return tile;
+    }
+
+    @Override
+    protected String getTileUrl(TileIndex index, Bounds bounds, double ratio) {
+        TileMatrix matrix = tileMatrixSet.getMatrix(ratio);
+        // tile grid is laid out by the current matrix
+        if (tileMatrix == null || matrix.getTileWidth() != tileMatrix.getTileWidth()
+                || matrix.getTileHeight() != tileMatrix.getTileHeight()
+                || !matrix.getTopLeft().equals(tileMatrix.getTopLeft()) || !isInMatrix(matrix, index)) {
+            return null;
+        }
+        return buildUrl(matrix, index.getColumn(), index.getRow());
+    }
+
+    private boolean isInMatrix(TileMatrix matrix, TileIndex index) {
+        return index.getColumn() >= 0 && index.getRow() >= 0 && index.getColumn() < matrix.getMatrixWidth()
+                && index.getRow() < matrix.getMatrixHeight();
+    }
+
+    /**
+     * Builds GetTile URL of the tile.
+     *
+     * @param matrix tile matrix
+     * @param column tile column
+     * @param row    tile row
+     * @return URL of the tile image
+     */
+    protected String buildUrl(TileMatrix matrix, int column, int row) {
+        if (!resourceUrl.isEmpty()) {
+            return resourceUrl.replace(WMTSConstants.TEMPLATE_LAYER, layer)
+                    .replace(WMTSConstants.TEMPLATE_STYLE, style)
+                    .replace(WMTSConstants.TEMPLATE_TILE_MATRIX_SET, tileMatrixSet.getIdentifier())
+                    .replace(WMTSConstants.TEMPLATE_TILE_MATRIX, matrix.getIdentifier())
+                    .replace(WMTSConstants.TEMPLATE_TILE_ROW, String.valueOf(row))
+                    .replace(WMTSConstants.TEMPLATE_TILE_COL, String.valueOf(column));
+        }
+
+        Map<String, String> parameters = new LinkedHashMap<>();
+        parameters.put(WMTSConstants.PARAM_SERVICE, WMTSConstants.SERVICE_WMTS);
+        parameters.put(WMTSConstants.PARAM_REQUEST, WMTSConstants.GET_TILE);
+        parameters.put(WMTSConstants.PARAM_VERSION, WMTSConstants.DEFAULT_VERSION);
+        parameters.put(WMTSConstants.PARAM_LAYER, layer);
+        parameters.put(WMTSConstants.PARAM_STYLE, style);
+        parameters.put(WMTSConstants.PARAM_FORMAT, format);
+        parameters.put(WMTSConstants.PARAM_TILE_MATRIX_SET, tileMatrixSet.getIdentifier());
+        parameters.put(WMTSConstants.PARAM_TILE_MATRIX, matrix.getIdentifier());
+        parameters.put(WMTSConstants.PARAM_TILE_ROW, String.valueOf(row));
+        parameters.put(WMTSConstants.PARAM_TILE_COL, String.valueOf(column));
+
+        StringBuilder url = new StringBuilder(baseUrl);
+        if (!baseUrl.contains("?")) {
+            url.append("?");
+        } else if (!baseUrl.endsWith("?") && !baseUrl.endsWith("&")) {
+            url.append("&");
+        }
+        // sorted parameters make equal tiles share browser cache entries
+        return url.append(TileRequestHandler.normalizeQuery(parameters)).toString();
+    }
+
+}
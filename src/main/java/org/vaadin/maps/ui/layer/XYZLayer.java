@@ -0,0 +1,300 @@
+package org.vaadin.maps.ui.layer;
+
+import com.vaadin.server.Sizeable.Unit;
+import org.vaadin.maps.server.Bounds;
+import org.vaadin.maps.server.TileIndex;
+import org.vaadin.maps.shared.ui.layer.XYZLayerState;
+import org.vaadin.maps.ui.MapConstants;
+import org.vaadin.maps.ui.tile.ImageTile;
+
+/**
+ * Layer of pre-rendered tiles addressed by zoom level, column and row, as
+ * served by slippy map (XYZ) and TMS tile servers. Tile URLs are built from
+ * template, e.g. <code>http://{s}.tile.example.org/{z}/{x}/{y}.png</code>,
+ * where
+ * <ul>
+ * <li><code>{z}</code> is zoom level,</li>
+ * <li><code>{x}</code> is column,</li>
+ * <li><code>{y}</code> is row counted from top (from bottom in TMS mode),</li>
+ * <li><code>{-y}</code> is row counted from bottom,</li>
+ * <li><code>{s}</code> is one of subdomains.</li>
+ * </ul>
+ * Zoom level 0 covers the world bounds by one tile width, each next level
+ * halves the resolution. The level nearest to the current view ratio is
+ * shown, its tiles are scaled to the view.
+ *
+ * @author Kamil Morong
+ */
+public class XYZLayer extends TiledLayer<ImageTile> {
+
+    public static final int DEFAULT_MAX_ZOOM = 18;
+
+    private String urlTemplate = "";
+    private String[] subdomains = {"a", "b", "c"};
+    private boolean tms = false;
+    private boolean wrapX = true;
+
+    private int minZoom = 0;
+    private int maxZoom = DEFAULT_MAX_ZOOM;
+
+    private Bounds worldBounds;
+
+    public XYZLayer() {
+        super();
+        setWorldBounds(new Bounds(-MapConstants.MERCATOR_EXTENT, -MapConstants.MERCATOR_EXTENT,
+                MapConstants.MERCATOR_EXTENT, MapConstants.MERCATOR_EXTENT));
+    }
+
+    public XYZLayer(String urlTemplate) {
+        this();
+        setUrlTemplate(urlTemplate);
+    }
+
+    private static int floorMod(int x, int y) {
+        int m = x % y;
+        return m < 0 ? m + y : m;
+    }
+
+    @Override
+    protected XYZLayerState getState() {
+        return (XYZLayerState) super.getState();
+    }
+
+    @Override
+    public boolean isBase() {
+        return true;
+    }
+
+    @Override
+    public boolean isFixed() {
+        return false;
+    }
+
+    public String getUrlTemplate() {
+        return urlTemplate;
+    }
+
+    public void setUrlTemplate(String urlTemplate) {
+        if (urlTemplate == null) {
+            urlTemplate = "";
+        }
+        if (!this.urlTemplate.equals(urlTemplate)) {
+            this.urlTemplate = urlTemplate;
+            clearTiles();
+            updateTiles();
+        }
+    }
+
+    public String[] getSubdomains() {
+        return subdomains.clone();
+    }
+
+    /**
+     * Sets subdomains substituted for <code>{s}</code> in the URL template.
+     * Each tile is always requested from the same subdomain, so the browser
+     * cache is effective, while neighbour tiles are spread over all of them.
+     *
+     * @param subdomains subdomains to rotate through
+     */
+    public void setSubdomains(String... subdomains) {
+        this.subdomains = subdomains != null ? subdomains.clone() : new String[0];
+        clearTiles();
+        updateTiles();
+    }
+
+    public boolean isTms() {
+        return tms;
+    }
+
+    /**
+     * Sets whether rows are counted from bottom, as defined by Tile Map
+     * Service specification.
+     *
+     * @param tms true for TMS row order
+     */
+    public void setTms(boolean tms) {
+        if (this.tms != tms) {
+            this.tms = tms;
+            clearTiles();
+            updateTiles();
+        }
+    }
+
+    public boolean isWrapX() {
+        return wrapX;
+    }
+
+    /**
+     * Sets whether the tiles repeat horizontally beyond the world bounds.
+     *
+     * @param wrapX true to repeat the world horizontally
+     */
+    public void setWrapX(boolean wrapX) {
+        if (this.wrapX != wrapX) {
+            this.wrapX = wrapX;
+            clearTiles();
+            updateTiles();
+        }
+    }
+
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    /**
+     * Sets range of zoom levels provided by the tile server. Out of the range
+     * tiles of the nearest level are scaled.
+     *
+     * @param minZoom minimum zoom level
+     * @param maxZoom maximum zoom level
+     */
+    public void setZoomRange(int minZoom, int maxZoom) {
+        if (minZoom < 0 || maxZoom < minZoom || maxZoom > 30) {
+            throw new IllegalArgumentException("Invalid zoom range");
+        }
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        clearTiles();
+        updateTiles();
+    }
+
+    public Bounds getWorldBounds() {
+        return worldBounds.clone();
+    }
+
+    /**
+     * Sets the world bounds of the tile scheme. Top left corner is the origin
+     * of the tile grid, the width is covered by one tile at zoom level 0.
+     * Defaults to spherical mercator bounds.
+     *
+     * @param worldBounds bounds of the tile scheme
+     */
+    public void setWorldBounds(Bounds worldBounds) {
+        if (worldBounds == null || !worldBounds.isValid() || worldBounds.getWidth() <= 0) {
+            throw new IllegalArgumentException("Invalid world bounds");
+        }
+        this.worldBounds = worldBounds.clone();
+        setTileOrigin(worldBounds.getTopLeft());
+    }
+
+    /**
+     * Gets the resolution of tiles at given zoom level.
+     *
+     * @param zoom zoom level
+     * @return world units per tile pixel
+     */
+    public double getResolution(int zoom) {
+        return worldBounds.getWidth() / getTileWidth() / (1L << zoom);
+    }
+
+    /**
+     * Gets the zoom level which resolution is nearest to the view ratio.
+     *
+     * @param ratio view world ratio
+     * @return zoom level within the zoom range
+     */
+    public int getZoomLevel(double ratio) {
+        int zoom = (int) Math.round(Math.log(getResolution(0) * ratio) / Math.log(2));
+        return Math.max(minZoom, Math.min(maxZoom, zoom));
+    }
+
+    /**
+     * Gets the zoom level shown in current view.
+     *
+     * @return zoom level or -1 when the layer is not in a map
+     */
+    public int getZoomLevel() {
+        if (getForLayer() != null) {
+            double ratio = getForLayer().getViewWorldTransform().getViewWorldRatio();
+            if (ratio != 0) {
+                return getZoomLevel(ratio);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected double getTileResolution(double ratio) {
+        return getResolution(getZoomLevel(ratio));
+    }
+
+    @Override
+    protected void updateTiles() {
+        if (!urlTemplate.isEmpty()) {
+            super.updateTiles();
+        }
+    }
+
+    @Override
+    protected double getZoomRatio(double ratio, boolean zoomIn) {
+        int zoom = getZoomLevel(ratio) + (zoomIn ? 1 : -1);
+        return zoom >= minZoom && zoom <= maxZoom ? 1 / getResolution(zoom) : 0;
+    }
+
+    @Override
+    protected ImageTile createTile(TileIndex index, Bounds bounds, int width, int height) {
+        if (getForLayer() == null) {
+            return null;
+        }
+
+        String url = getTileUrl(index, bounds, getForLayer().getViewWorldTransform().getViewWorldRatio());
+        if (url == null) {
+            return null;
+        }
+
+        ImageTile tile = new ImageTile(url);
+        tile.setWidth(width, Unit.PIXELS);
+        tile.setHeight(height, Unit.PIXELS);
+
+        return tile;
+    }
+
+    @Override
+    protected String getTileUrl(TileIndex index, Bounds bounds, double ratio) {
+        if (ratio == 0) {
+            return null;
+        }
+
+        int zoom = getZoomLevel(ratio);
+        int columns = 1 << zoom;
+        int rows = (int) Math.ceil(worldBounds.getHeight() / (getResolution(zoom) * getTileHeight()) - 1e-9);
+
+        int x = index.getColumn();
+        int y = index.getRow();
+        if (y < 0 || y >= rows) {
+            return null;
+        }
+        if (wrapX) {
+            x = floorMod(x, columns);
+        } else if (x < 0 || x >= columns) {
+            return null;
+        }
+
+        return buildUrl(zoom, x, y, rows);
+    }
+
+    /**
+     * Builds the tile URL from template.
+     *
+     * @param zoom zoom level
+     * @param x    column
+     * @param y    row counted from top
+     * @param rows number of rows at the zoom level
+     * @return URL of the tile image
+     */
+    protected String buildUrl(int zoom, int x, int y, int rows) {
+        String url = urlTemplate.replace("{z}", String.valueOf(zoom)).replace("{x}", String.valueOf(x))
+                .replace("{-y}", String.valueOf(rows - 1 - y))
+                .replace("{y}", String.valueOf(tms ? rows - 1 - y : y));
+
+        if (subdomains.length > 0) {
+            url = url.replace("{s}", subdomains[floorMod(x + y, subdomains.length)]);
+        }
+        return url;
+    }
+
+}
@@ -6,6 +6,7 @@ import com.tilioteo.common.event.TimekeepingComponentEvent;
 import com.vaadin.shared.EventId;
 import com.vaadin.shared.MouseEventDetails;
 import com.vaadin.util.ReflectTools;
+import org.vaadin.maps.server.TileMetrics;
 import org.vaadin.maps.server.TileResource;
 import org.vaadin.maps.shared.ui.tile.ProxyTileServerRpc;
 import org.vaadin.maps.shared.ui.tile.ProxyTileState;
@@ -20,17 +21,38 @@ public abstract class AbstractProxyTile<T extends TileResource> extends Abstract
 
     private int clippedWidth = 0;
     private int clippedHeight = 0;
+    private TileMetrics metrics = null;
+    /**
+     * client time the image started loading at
+     */
+    private long requestTimestamp = 0;
     protected final ProxyTileServerRpc rpc = new ProxyTileServerRpc() {
         @Override
         public void load(long timestamp) {
+            if (metrics != null) {
+                metrics.recordLoad(requestTimestamp > 0 ? timestamp - requestTimestamp : -1);
+            }
+            requestTimestamp = 0;
             fireEvent(new LoadEvent(timestamp, AbstractProxyTile.this));
         }
 
         @Override
         public void error(long timestamp) {
+            if (metrics != null) {
+                metrics.recordError();
+            }
+            requestTimestamp = 0;
             fireEvent(new ErrorEvent(timestamp, AbstractProxyTile.this));
         }
 
+        @Override
+        public void request(long timestamp) {
+            if (metrics != null) {
+                metrics.recordRequest();
+            }
+            requestTimestamp = timestamp;
+        }
+
         @Override
         public void click(long timestamp, MouseEventDetails mouseDetails) {
             fireEvent(new ClickEvent(timestamp, AbstractProxyTile.this, mouseDetails));
@@ -97,6 +119,19 @@ public abstract class AbstractProxyTile<T extends TileResource> extends Abstract
         return clippedHeight;
     }
 
+    public TileMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets metrics to record load latency and errors of the tile image.
+     *
+     * @param metrics tile metrics or null
+     */
+    public void setMetrics(TileMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     protected abstract void clippedSizeChanged(int oldWidth, int oldHeight, int newWidth, int newHeight);
 
     /**
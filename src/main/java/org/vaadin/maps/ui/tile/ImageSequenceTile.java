@@ -10,9 +10,12 @@ import com.vaadin.shared.EventId;
 import com.vaadin.shared.MouseEventDetails;
 import com.vaadin.shared.communication.URLReference;
 import com.vaadin.ui.Component;
+import com.vaadin.ui.UI;
 import com.vaadin.util.ReflectTools;
+import elemental.json.JsonObject;
 import org.vaadin.maps.shared.ui.tile.ImageSequenceTileServerRpc;
 import org.vaadin.maps.shared.ui.tile.ImageSequenceTileState;
+import org.vaadin.maps.shared.ui.tile.PlaybackMode;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
@@ -38,6 +41,18 @@ public class ImageSequenceTile extends AbstractTile {
 
         @Override
         public void changed(long timestamp, int index) {
+            // client already shows the image
+            getState(false).index = index;
+            updateDiffState("index", index);
+            fireEvent(new ChangeEvent(timestamp, ImageSequenceTile.this, index));
+        }
+
+        @Override
+        public void paused(long timestamp, int index) {
+            getState(false).playing = false;
+            getState(false).index = index;
+            updateDiffState("playing", false);
+            updateDiffState("index", index);
             fireEvent(new ChangeEvent(timestamp, ImageSequenceTile.this, index));
         }
 
@@ -49,6 +64,29 @@ public class ImageSequenceTile extends AbstractTile {
 
     private final LinkedList<Resource> resources = new LinkedList<>();
 
+    /**
+     * Marks the value reported by client as already known by it, so it is
+     * not sent back with a later state change.
+     */
+    private void updateDiffState(String key, int value) {
+        JsonObject diffState = getDiffState();
+        if (diffState != null) {
+            diffState.put(key, value);
+        }
+    }
+
+    private void updateDiffState(String key, boolean value) {
+        JsonObject diffState = getDiffState();
+        if (diffState != null) {
+            diffState.put(key, value);
+        }
+    }
+
+    private JsonObject getDiffState() {
+        UI ui = getUI();
+        return ui != null ? ui.getConnectorTracker().getDiffState(this) : null;
+    }
+
     public ImageSequenceTile() {
         registerRpc(rpc);
     }
@@ -58,6 +96,11 @@ public class ImageSequenceTile extends AbstractTile {
         return (ImageSequenceTileState) super.getState();
     }
 
+    @Override
+    protected ImageSequenceTileState getState(boolean markAsDirty) {
+        return (ImageSequenceTileState) super.getState(markAsDirty);
+    }
+
     public void addResource(String url) {
         ExternalResource source = new ExternalResource(url);
         addSource(source);
@@ -69,6 +112,7 @@ public class ImageSequenceTile extends AbstractTile {
     }
 
     protected void addSource(Resource source) {
+        clearSpriteSheet();
         resources.add(source);
 
         List<URLReference> sources = getState().sources;
@@ -81,6 +125,90 @@ public class ImageSequenceTile extends AbstractTile {
 
         getState().sources.clear();
         getState().sourceTypes.clear();
+        clearSpriteSheet();
+    }
+
+    /**
+     * Sets sprite sheet of frames laid out in a grid, row by row. The sheet
+     * replaces image URLs of the sequence, all frames are loaded by one
+     * request and switched without network access. Suitable for short
+     * sequences of small frames.
+     *
+     * @param url         sprite sheet URL
+     * @param frameWidth  width of a frame in pixels
+     * @param frameHeight height of a frame in pixels
+     * @param columns     number of frames in a row
+     * @param frameCount  number of frames
+     */
+    public void setSpriteSheet(String url, int frameWidth, int frameHeight, int columns, int frameCount) {
+        if (columns <= 0 || frameCount <= 0) {
+            throw new IllegalArgumentException("Number of columns and frames must be positive");
+        }
+        int[] frameX = new int[frameCount];
+        int[] frameY = new int[frameCount];
+        for (int i = 0; i < frameCount; ++i) {
+            frameX[i] = i % columns * frameWidth;
+            frameY[i] = i / columns * frameHeight;
+        }
+        int rows = (frameCount + columns - 1) / columns;
+        setSpriteSheet(url, Math.min(columns, frameCount) * frameWidth, rows * frameHeight, frameWidth, frameHeight,
+                frameX, frameY);
+    }
+
+    /**
+     * Sets packed frame atlas. Frames are of the same size and placed at
+     * arbitrary offsets of the atlas.
+     *
+     * @param url          atlas URL
+     * @param spriteWidth  width of the atlas in pixels
+     * @param spriteHeight height of the atlas in pixels
+     * @param frameWidth   width of a frame in pixels
+     * @param frameHeight  height of a frame in pixels
+     * @param frameX       left offsets of frames in sequence order
+     * @param frameY       top offsets of frames in sequence order
+     */
+    public void setSpriteSheet(String url, int spriteWidth, int spriteHeight, int frameWidth, int frameHeight,
+                               int[] frameX, int[] frameY) {
+        if (frameWidth <= 0 || frameHeight <= 0 || spriteWidth < frameWidth || spriteHeight < frameHeight) {
+            throw new IllegalArgumentException("Invalid sprite sheet dimensions");
+        }
+        if (frameX == null || frameY == null || frameX.length != frameY.length || frameX.length == 0) {
+            throw new IllegalArgumentException("Frame offsets must be given for each frame");
+        }
+        for (int i = 0; i < frameX.length; ++i) {
+            if (frameX[i] < 0 || frameY[i] < 0 || frameX[i] + frameWidth > spriteWidth
+                    || frameY[i] + frameHeight > spriteHeight) {
+                throw new IllegalArgumentException("Frame " + i + " is out of the sprite sheet");
+            }
+        }
+
+        resources.clear();
+        getState().sources.clear();
+        getState().sourceTypes.clear();
+
+        ExternalResource source = new ExternalResource(url);
+        ImageSequenceTileState state = getState();
+        state.spriteSheet = new ResourceReference(source, this, "spritesheet");
+        state.spriteWidth = spriteWidth;
+        state.spriteHeight = spriteHeight;
+        state.frameWidth = frameWidth;
+        state.frameHeight = frameHeight;
+        state.frameX = frameX.clone();
+        state.frameY = frameY.clone();
+        state.index = 0;
+    }
+
+    public boolean isSpriteSheet() {
+        return getState(false).spriteSheet != null;
+    }
+
+    private void clearSpriteSheet() {
+        if (isSpriteSheet()) {
+            ImageSequenceTileState state = getState();
+            state.spriteSheet = null;
+            state.frameX = new int[0];
+            state.frameY = new int[0];
+        }
     }
 
     public int getIndex() {
@@ -92,7 +220,115 @@ public class ImageSequenceTile extends AbstractTile {
     }
 
     public int getTilesCount() {
-        return resources.size();
+        return isSpriteSheet() ? getState(false).frameX.length : resources.size();
+    }
+
+    /**
+     * Starts playback of the sequence by the client. The server is notified
+     * of the current index by {@link ChangeEvent} at most once per report
+     * interval and when the playback pauses.
+     */
+    public void play() {
+        getState().playing = true;
+    }
+
+    public void pause() {
+        getState().playing = false;
+    }
+
+    public boolean isPlaying() {
+        return getState(false).playing;
+    }
+
+    public double getFps() {
+        return getState(false).fps;
+    }
+
+    /**
+     * Sets playback speed.
+     *
+     * @param fps frames per second
+     */
+    public void setFps(double fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive");
+        }
+        getState().fps = fps;
+    }
+
+    public PlaybackMode getPlaybackMode() {
+        return getState(false).playbackMode;
+    }
+
+    public void setPlaybackMode(PlaybackMode playbackMode) {
+        if (playbackMode == null) {
+            throw new IllegalArgumentException("Playback mode must not be null");
+        }
+        getState().playbackMode = playbackMode;
+    }
+
+    public int getRangeStart() {
+        return getState(false).rangeStart;
+    }
+
+    public int getRangeEnd() {
+        return getState(false).rangeEnd;
+    }
+
+    /**
+     * Sets range of images played.
+     *
+     * @param start index of the first image
+     * @param end   index of the last image, negative for the last image of the
+     *              sequence
+     */
+    public void setPlaybackRange(int start, int end) {
+        if (start < 0 || end >= 0 && end < start) {
+            throw new IllegalArgumentException("Invalid playback range");
+        }
+        getState().rangeStart = start;
+        getState().rangeEnd = end;
+    }
+
+    public int getReportInterval() {
+        return getState(false).reportInterval;
+    }
+
+    /**
+     * Sets minimum interval of index reports to the server while playing.
+     *
+     * @param reportInterval interval in milliseconds
+     */
+    public void setReportInterval(int reportInterval) {
+        if (reportInterval < 0) {
+            throw new IllegalArgumentException("Report interval must not be negative");
+        }
+        getState().reportInterval = reportInterval;
+    }
+
+    public int getPreloadAhead() {
+        return getState(false).preloadAhead;
+    }
+
+    public int getPreloadBehind() {
+        return getState(false).preloadBehind;
+    }
+
+    /**
+     * Sets the window of images preloaded by the browser around the current
+     * index. Images out of the window are released. Load of each new window
+     * is reported by {@link LoadEvent} or {@link ErrorEvent}, while playing
+     * only the last load is reported together with the index.
+     *
+     * @param ahead  number of images after the current one
+     * @param behind number of images before the current one
+     */
+    public void setPreloadWindow(int ahead, int behind) {
+        if (ahead < 0 || behind < 0) {
+            throw new IllegalArgumentException("Preload window must not be negative");
+        }
+        getState().preloadAhead = ahead;
+        getState().preloadBehind = behind;
     }
 
     /**
@@ -248,7 +484,8 @@ public class ImageSequenceTile extends AbstractTile {
     }
 
     /**
-     * Load event. This event is thrown, when the image sequence is loaded.
+     * Load event. This event is thrown, when the images of the preload window
+     * are loaded.
      */
     public static class LoadEvent extends TimekeepingComponentEvent {
 
@@ -273,8 +510,8 @@ public class ImageSequenceTile extends AbstractTile {
     }
 
     /**
-     * Error event. This event is thrown, when the image sequence loading
-     * failed.
+     * Error event. This event is thrown, when loading of some image of the
+     * preload window failed.
      */
     public static class ErrorEvent extends TimekeepingComponentEvent {
 
@@ -1,5 +1,8 @@
 package org.vaadin.maps.ui.tile;
 
+import org.vaadin.maps.server.TileProxy;
+import org.vaadin.maps.server.TileRequestHandler;
+import org.vaadin.maps.server.WMSComposite;
 import org.vaadin.maps.server.WMSResource;
 
 /**
@@ -100,6 +103,52 @@ public class WMSTile extends AbstractProxyTile<WMSResource> {
         return resource.getBaseUrl();
     }
 
+    public boolean isProxied() {
+        return resource.isProxied();
+    }
+
+    public void setProxied(boolean proxied) {
+        resource.setProxied(proxied);
+        if (proxied && isAttached()) {
+            TileRequestHandler.register(getSession());
+        }
+        updateSource();
+    }
+
+    public WMSComposite getComposite() {
+        return resource.getComposite();
+    }
+
+    public void setComposite(WMSComposite composite) {
+        resource.setComposite(composite);
+        if (composite != null && isAttached()) {
+            TileRequestHandler.register(getSession());
+        }
+        updateSource();
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+
+        if (isProxied() || getComposite() != null) {
+            TileRequestHandler.register(getSession());
+        }
+    }
+
+    @Override
+    public void detach() {
+        if (isProxied() && getComposite() == null) {
+            // tile left the view, its upstream fetch is not needed by this
+            // session
+            TileProxy.getInstance().cancel(
+                    TileRequestHandler.buildUpstreamUrl(resource.getBaseUrl(), resource.getParameters()),
+                    getSession());
+        }
+
+        super.detach();
+    }
+
     public ClippedSizeHandler getSizeHandler() {
         return sizeHandler;
     }
@@ -0,0 +1,125 @@
+package org.vaadin.maps.client.drawing;
+
+import org.junit.Test;
+import org.vaadin.maps.client.geometry.Geometry;
+import org.vaadin.maps.client.geometry.wkt.WKTReader;
+import org.vaadin.maps.client.io.ParseException;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Grid index queries and exact hit testing of their candidates.
+ *
+ * @author Kamil Morong
+ */
+public class GridIndexTest {
+
+    private static Geometry read(String wkt) throws ParseException {
+        return new WKTReader().read(wkt);
+    }
+
+    private static void assertItems(List<String> actual, String... expected) {
+        assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(actual));
+    }
+
+    /**
+     * Gets the last inserted item hit at the position, like the topmost
+     * drawn feature.
+     */
+    private static String hit(GridIndex<String> index, List<String> order, List<Geometry> geometries,
+                              double x, double y) {
+        String result = null;
+        for (String item : index.query(x, y)) {
+            int i = order.indexOf(item);
+            if ((null == result || i > order.indexOf(result))
+                    && Utils.hitTest(geometries.get(i), x, y, 2, 0)) {
+                result = item;
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void itemsAreFoundInOverlappedCells() {
+        GridIndex<String> index = new GridIndex<>(10);
+        index.insert("a", 1, 1, 8, 8);
+        index.insert("b", 5, 5, 25, 15);
+        index.insert("c", -15, -15, -12, -12);
+
+        assertItems(index.query(2, 2), "a", "b");
+        assertItems(index.query(22, 12), "b");
+        assertItems(index.query(-13, -13), "c");
+        assertItems(index.query(50, 50));
+    }
+
+    @Test
+    public void rectangleQueryListsItemsOnce() {
+        GridIndex<String> index = new GridIndex<>(10);
+        index.insert("a", 1, 1, 38, 38);
+        index.insert("b", 100, 100, 110, 110);
+
+        assertEquals(Arrays.asList("a"), index.query(0, 0, 15, 15));
+        // more cells than occupied are queried by listing all items
+        List<String> items = index.query(-1000, -1000, 1000, 1000);
+        assertEquals(2, items.size());
+        assertItems(items, "a", "b");
+    }
+
+    @Test
+    public void largeItemsAreFoundEverywhere() {
+        GridIndex<String> index = new GridIndex<>(1);
+        index.insert("large", 0, 0, 1000, 1000);
+        index.insert("small", 0, 0, 1, 1);
+
+        assertItems(index.query(500, 500), "large");
+        assertItems(index.query(0.5, 0.5), "large", "small");
+        assertItems(index.query(5000, 5000, 5001, 5001), "large");
+
+        index.clear();
+        assertItems(index.query(0.5, 0.5));
+    }
+
+    @Test
+    public void topmostHitFeatureIsResolved() throws ParseException {
+        List<String> order = Arrays.asList("polygon", "line", "point");
+        List<Geometry> geometries = Arrays.asList(
+                read("POLYGON ((0 0, 100 0, 100 100, 0 100, 0 0), (40 40, 60 40, 60 60, 40 60, 40 40))"),
+                read("LINESTRING (0 50, 100 50)"),
+                read("POINT (80 80)"));
+
+        GridIndex<String> index = new GridIndex<>();
+        for (int i = 0; i < order.size(); ++i) {
+            double[] bounds = Utils.getBounds(geometries.get(i));
+            index.insert(order.get(i), bounds[0] - 2, bounds[1] - 2, bounds[2] + 2, bounds[3] + 2);
+        }
+
+        assertEquals("polygon", hit(index, order, geometries, 20, 20));
+        assertEquals("line", hit(index, order, geometries, 20, 51));
+        assertEquals("point", hit(index, order, geometries, 81, 79));
+        // the hole is not filled
+        assertNull(hit(index, order, geometries, 50, 45));
+        // edge of the hole is still drawn
+        assertEquals("polygon", hit(index, order, geometries, 41, 45));
+        assertNull(hit(index, order, geometries, 150, 150));
+    }
+
+    @Test
+    public void linesAndPointsAreHitWithinTolerance() throws ParseException {
+        Geometry line = read("LINESTRING (0 0, 10 0)");
+        assertTrue(Utils.hitTest(line, 5, 2, 2, 0));
+        assertFalse(Utils.hitTest(line, 5, 3, 2, 0));
+        assertFalse(Utils.hitTest(line, 13, 0, 2, 0));
+
+        Geometry point = read("POINT (0 0)");
+        assertTrue(Utils.hitTest(point, 0, 5, 2, 3));
+        assertFalse(Utils.hitTest(point, 0, 6, 2, 3));
+    }
+
+}
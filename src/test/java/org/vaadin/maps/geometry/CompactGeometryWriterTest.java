@@ -0,0 +1,149 @@
+package org.vaadin.maps.geometry;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.WKTReader;
+import org.junit.Test;
+import org.vaadin.maps.client.geometry.compact.CompactGeometryReader;
+import org.vaadin.maps.client.io.ParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trips of the compact format from the server writer to the client
+ * reader.
+ *
+ * @author Kamil Morong
+ */
+public class CompactGeometryWriterTest {
+
+    private static final String[] GEOMETRIES = {
+            "POINT (1 2)",
+            "POINT EMPTY",
+            "LINESTRING (0 0, 10.5 -3.25, -7 12)",
+            "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0), (2 2, 4 2, 4 4, 2 2))",
+            "POLYGON EMPTY",
+            "MULTIPOINT ((1 1), (-2 3))",
+            "MULTILINESTRING ((0 0, 1 1), (2 2, 3 5, 8 13))",
+            "MULTIPOLYGON (((0 0, 1 0, 1 1, 0 0)), ((5 5, 6 5, 6 6, 5 5)))",
+            "GEOMETRYCOLLECTION (POINT (1 1), LINESTRING (0 0, 2 2), GEOMETRYCOLLECTION (POINT (3 4)))",
+    };
+
+    private final CompactGeometryWriter writer = new CompactGeometryWriter();
+    private final CompactGeometryReader reader = new CompactGeometryReader();
+
+    private static Geometry readWKT(String wkt) {
+        try {
+            return new WKTReader().read(wkt);
+        } catch (com.vividsolutions.jts.io.ParseException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static void assertGeometryEquals(Geometry expected, org.vaadin.maps.client.geometry.Geometry actual,
+                                             double tolerance) {
+        assertEquals(expected.getGeometryType(), actual.getGeometryType());
+        assertEquals(expected.getNumGeometries(), actual.getNumGeometries());
+
+        if (expected instanceof Polygon && !expected.isEmpty()) {
+            org.vaadin.maps.client.geometry.Polygon polygon = (org.vaadin.maps.client.geometry.Polygon) actual;
+            assertEquals(((Polygon) expected).getNumInteriorRing(), polygon.getNumHoles());
+            assertCoordinatesEqual(((Polygon) expected).getExteriorRing().getCoordinates(),
+                    polygon.getShell().getCoordinates(), tolerance);
+            for (int i = 0; i < polygon.getNumHoles(); ++i) {
+                assertCoordinatesEqual(((Polygon) expected).getInteriorRingN(i).getCoordinates(),
+                        polygon.getHole(i).getCoordinates(), tolerance);
+            }
+        } else if (expected.getNumGeometries() > 1 || !expected.getGeometryType().equals(
+                expected.getGeometryN(0).getGeometryType())) {
+            for (int i = 0; i < expected.getNumGeometries(); ++i) {
+                assertGeometryEquals(expected.getGeometryN(i), actual.getGeometry(i), tolerance);
+            }
+        } else {
+            assertCoordinatesEqual(expected.getCoordinates(), actual.getCoordinates(), tolerance);
+        }
+    }
+
+    private static void assertCoordinatesEqual(com.vividsolutions.jts.geom.Coordinate[] expected,
+                                               org.vaadin.maps.client.geometry.Coordinate[] actual,
+                                               double tolerance) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i) {
+            assertEquals(expected[i].x, actual[i].x, tolerance);
+            assertEquals(expected[i].y, actual[i].y, tolerance);
+        }
+    }
+
+    @Test
+    public void geometriesAreReadAsWritten() throws ParseException {
+        for (String wkt : GEOMETRIES) {
+            Geometry geometry = readWKT(wkt);
+            String compact = writer.write(geometry);
+
+            assertEquals(wkt, 0, compact.length() % 4);
+            assertGeometryEquals(geometry, reader.read(compact), 0);
+        }
+    }
+
+    @Test
+    public void nullIsWrittenAsNull() throws ParseException {
+        assertNull(writer.write(null));
+        assertNull(writer.write(null, 0));
+        assertNull(reader.read(null));
+    }
+
+    @Test
+    public void coordinatesAreQuantizedToPrecision() throws ParseException {
+        Geometry geometry = readWKT("LINESTRING (0.3 0.7, 10.2 -4.6, 10.26 -4.6)");
+
+        assertGeometryEquals(readWKT("LINESTRING (0 1, 10 -5, 10 -5)"), reader.read(writer.write(geometry, 0)),
+                0);
+        assertGeometryEquals(readWKT("LINESTRING (0.25 0.75, 10.25 -4.5, 10.25 -4.5)"),
+                reader.read(writer.write(geometry, 2)), 0);
+        assertGeometryEquals(geometry, reader.read(writer.write(geometry, 10)), 1.0 / 1024);
+    }
+
+    @Test
+    public void largeCoordinatesKeepFullPrecision() throws ParseException {
+        // web mercator near the antimeridian
+        Geometry geometry = readWKT("POLYGON ((-20037508.342789244 20037508.342789244, "
+                + "20037508.342789244 20037508.342789244, 20037508.342789244 -20037508.342789244, "
+                + "-20037508.342789244 20037508.342789244))");
+
+        assertGeometryEquals(geometry, reader.read(writer.write(geometry)), 20037508.342789244 / (1 << 29));
+        // precision is lowered to keep quantized coordinates exact doubles
+        assertGeometryEquals(geometry, reader.read(writer.write(geometry, 64)), 1e-6);
+    }
+
+    @Test
+    public void everyPaddingIsRead() throws ParseException {
+        StringBuilder wkt = new StringBuilder("LINESTRING (0 0");
+        for (int i = 1; i <= 6; ++i) {
+            wkt.append(", ").append(i * 1000).append(" ").append(i);
+            Geometry geometry = readWKT(wkt + ")");
+
+            assertGeometryEquals(geometry, reader.read(writer.write(geometry, 0)), 0);
+        }
+    }
+
+    @Test
+    public void invalidInputIsRefused() {
+        String compact = writer.write(readWKT("LINESTRING (0 0, 10 10)"));
+
+        assertRefused(compact.substring(0, compact.length() - 4));
+        assertRefused("!" + compact.substring(1));
+        assertRefused("AA==");
+    }
+
+    private void assertRefused(String compact) {
+        try {
+            reader.read(compact);
+            fail("Invalid geometry " + compact + " must be refused");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+}
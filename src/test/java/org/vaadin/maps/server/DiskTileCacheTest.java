@@ -0,0 +1,200 @@
+package org.vaadin.maps.server;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kamil Morong
+ */
+public class DiskTileCacheTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private DiskTileCache cache;
+
+    private static TileData createTile(String key, int size) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) key.hashCode());
+        return new TileData(bytes, "image/png");
+    }
+
+    private static void assertTile(String key, int size, TileData data) {
+        assertNotNull(key, data);
+        assertEquals("image/png", data.getMimeType());
+        assertArrayEquals(key, createTile(key, size).getBytes(), data.getBytes());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    private File getFile() {
+        return new File(folder.getRoot(), "tiles.cache");
+    }
+
+    @Test
+    public void storedTileIsRead() throws IOException {
+        cache = new DiskTileCache(getFile(), 1024 * 1024, 64, 4);
+
+        cache.put("a", createTile("a", 100));
+        cache.put("b", createTile("b", 200));
+
+        assertTile("a", 100, cache.get("a"));
+        assertTile("b", 200, cache.get("b"));
+        assertNull(cache.get("c"));
+        assertEquals(2, cache.getTileCount());
+    }
+
+    @Test
+    public void replacedTileIsReadAsNew() throws IOException {
+        cache = new DiskTileCache(getFile(), 1024 * 1024, 64, 4);
+
+        cache.put("a", createTile("a", 100));
+        cache.put("a", createTile("a", 300));
+
+        assertTile("a", 300, cache.get("a"));
+        assertEquals(1, cache.getTileCount());
+    }
+
+    @Test
+    public void tilesAreKeptAfterReopen() throws IOException {
+        cache = new DiskTileCache(getFile(), 1024 * 1024, 64, 4);
+        for (int i = 0; i < 20; ++i) {
+            cache.put("tile" + i, createTile("tile" + i, 100 + i));
+        }
+        cache.close();
+
+        // stored capacity and segments are kept
+        cache = new DiskTileCache(getFile(), 1024 * 1024, 16, 1);
+        assertEquals(64, cache.getCapacity());
+        assertEquals(4, cache.getSegmentCount());
+        assertEquals(20, cache.getTileCount());
+        for (int i = 0; i < 20; ++i) {
+            assertTile("tile" + i, 100 + i, cache.get("tile" + i));
+        }
+    }
+
+    @Test
+    public void expiredTileIsNotServed() throws Exception {
+        cache = new DiskTileCache(getFile(), 1024 * 1024, 64, 4);
+        cache.setMaxAge(1);
+
+        cache.put("a", createTile("a", 100));
+        Thread.sleep(10);
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void recentlyReadTileIsNotEvicted() throws Exception {
+        cache = new DiskTileCache(getFile(), 8000, 256, 1);
+
+        for (int i = 0; i < 20; ++i) {
+            cache.put("tile" + i, createTile("tile" + i, 200));
+        }
+        Thread.sleep(5);
+        assertNotNull(cache.get("tile0"));
+        Thread.sleep(5);
+        for (int i = 20; i < 40; ++i) {
+            cache.put("tile" + i, createTile("tile" + i, 200));
+        }
+
+        assertTile("tile0", 200, cache.get("tile0"));
+        assertNull(cache.get("tile1"));
+        assertTrue(cache.getSize() <= 6000);
+    }
+
+    @Test
+    public void compactionReclaimsRemovedRecords() throws IOException {
+        cache = new DiskTileCache(getFile(), 1024 * 1024, 64, 4);
+        for (int i = 0; i < 10; ++i) {
+            cache.put("tile" + i, createTile("tile" + i, 1000));
+        }
+        for (int i = 0; i < 10; i += 2) {
+            cache.put("tile" + i, createTile("tile" + i, 500));
+        }
+        long fileSize = getFile().length();
+
+        cache.compact();
+
+        assertEquals(cache.getSize(), cache.getDataSize());
+        assertEquals(fileSize - 5 * (1000 + 26), getFile().length());
+        for (int i = 0; i < 10; ++i) {
+            assertTile("tile" + i, i % 2 == 0 ? 500 : 1000, cache.get("tile" + i));
+        }
+
+        cache.close();
+        cache = new DiskTileCache(getFile(), 1024 * 1024, 64, 4);
+        assertEquals(10, cache.getTileCount());
+        assertTile("tile9", 1000, cache.get("tile9"));
+    }
+
+    @Test
+    public void dataSizeIsLimitedWhileTilesAreStoredConcurrently() throws Exception {
+        final long maxSize = 64 * 1024;
+        cache = new DiskTileCache(getFile(), maxSize, 1024, 4);
+
+        final CopyOnWriteArrayList<Throwable> errors = new CopyOnWriteArrayList<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            final Random random = new Random(t);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 2000; ++i) {
+                            String key = "tile" + random.nextInt(200);
+                            int size = 100 + key.length();
+                            if (random.nextBoolean()) {
+                                cache.put(key, createTile(key, size));
+                            } else {
+                                TileData data = cache.get(key);
+                                if (data != null) {
+                                    assertTile(key, size, data);
+                                }
+                            }
+                            assertTrue(cache.getDataSize() <= maxSize);
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(errors.toString(), 0, errors.size());
+        assertTrue(cache.getSize() <= maxSize);
+
+        cache.compact();
+        assertEquals(cache.getSize(), cache.getDataSize());
+        for (int i = 0; i < 200; ++i) {
+            String key = "tile" + i;
+            TileData data = cache.get(key);
+            if (data != null) {
+                assertTile(key, 100 + key.length(), data);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.vaadin.maps.server;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kamil Morong
+ */
+public class FeatureTableTest {
+
+    private static Geometry read(String wkt) throws ParseException {
+        return new WKTReader().read(wkt);
+    }
+
+    private static Map<String, Object> attributes(Object... namesAndValues) {
+        Map<String, Object> attributes = new HashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            attributes.put((String) namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return attributes;
+    }
+
+    @Test
+    public void storedFeatureIsRead() throws ParseException {
+        FeatureTable table = new FeatureTable();
+        Geometry line = read("LINESTRING (0 0, 10 5, 20 0)");
+        table.put("a", line, 3, attributes("name", "road", "lanes", 2));
+
+        assertEquals(1, table.size());
+        assertTrue(table.contains("a"));
+        assertTrue(line.equalsExact(table.getGeometry("a")));
+        assertEquals(line.getEnvelopeInternal(), table.getEnvelope("a"));
+        assertEquals(3, table.getNumPoints("a"));
+        assertEquals(3, table.getStyleId("a"));
+        assertEquals("road", table.getAttribute("a", "name"));
+        assertEquals(2, table.getAttribute("a", "lanes"));
+        assertNull(table.getAttribute("a", "width"));
+
+        assertFalse(table.contains("b"));
+        assertNull(table.getGeometry("b"));
+        assertNull(table.getGeometryBytes("b"));
+        assertNull(table.getEnvelope("b"));
+        assertEquals(0, table.getNumPoints("b"));
+        assertEquals(0, table.getStyleId("b"));
+    }
+
+    @Test
+    public void replacedFeatureKeepsOnlyNewAttributes() throws ParseException {
+        FeatureTable table = new FeatureTable();
+        table.put("a", read("POINT (1 1)"), 1, attributes("name", "old", "kind", "x"));
+        table.put("a", read("POINT (2 2)"), 2, attributes("name", "new"));
+
+        assertEquals(1, table.size());
+        assertTrue(read("POINT (2 2)").equalsExact(table.getGeometry("a")));
+        assertEquals(2, table.getStyleId("a"));
+        assertEquals("new", table.getAttribute("a", "name"));
+        assertNull(table.getAttribute("a", "kind"));
+        assertEquals(new HashSet<>(Arrays.asList("name", "kind")), new HashSet<>(table.getAttributeNames()));
+    }
+
+    @Test
+    public void removalMovesLastRow() throws ParseException {
+        FeatureTable table = new FeatureTable();
+        table.put("a", read("POINT (1 1)"), 1, attributes("name", "a"));
+        table.put("b", read("POINT (2 2)"), 2, attributes("name", "b"));
+        table.put("c", read("LINESTRING (3 3, 4 4)"), 3, attributes("name", "c"));
+
+        assertTrue(table.remove("a"));
+        assertFalse(table.remove("a"));
+
+        assertEquals(2, table.size());
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), new HashSet<>(table.getIds()));
+        assertTrue(read("LINESTRING (3 3, 4 4)").equalsExact(table.getGeometry("c")));
+        assertEquals(2, table.getNumPoints("c"));
+        assertEquals(3, table.getStyleId("c"));
+        assertEquals("c", table.getAttribute("c", "name"));
+        assertEquals("b", table.getAttribute("b", "name"));
+
+        // the moved row is still addressed by its identifier
+        assertTrue(table.setStyleId("c", 5));
+        assertEquals(5, table.getStyleId("c"));
+        assertEquals(2, table.getStyleId("b"));
+        assertFalse(table.setStyleId("a", 5));
+    }
+
+    @Test
+    public void columnsGrowWithFeatures() throws ParseException {
+        FeatureTable table = new FeatureTable();
+        for (int i = 0; i < 200; ++i) {
+            Map<String, Object> attributes = i == 100 ? attributes("late", i) : attributes("index", i);
+            table.put("f" + i, read("POINT (" + i + " " + i + ")"), i, attributes);
+        }
+
+        assertEquals(200, table.size());
+        for (int i = 0; i < 200; ++i) {
+            assertEquals(i, table.getStyleId("f" + i));
+            assertEquals(i, table.getEnvelope("f" + i).getMinX(), 0);
+            assertEquals(i == 100 ? null : i, table.getAttribute("f" + i, "index"));
+            assertEquals(i == 100 ? i : null, table.getAttribute("f" + i, "late"));
+        }
+
+        for (int i = 0; i < 200; i += 2) {
+            table.remove("f" + i);
+        }
+        assertEquals(100, table.size());
+        assertEquals(199, table.getAttribute("f199", "index"));
+        assertEquals(199, table.getStyleId("f199"));
+    }
+
+    @Test
+    public void clearedTableIsEmpty() throws ParseException {
+        FeatureTable table = new FeatureTable();
+        table.put("a", read("POINT (1 1)"), 1, attributes("name", "a"));
+        table.put("b", read("POINT (2 2)"), 2, null);
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(Collections.emptyList(), table.getIds());
+        assertEquals(Collections.emptyList(), table.getAttributeNames());
+        assertFalse(table.contains("a"));
+
+        table.put("b", read("POINT (3 3)"), 3, null);
+        assertEquals(Collections.singletonList("b"), table.getIds());
+        assertNull(table.getAttribute("b", "name"));
+    }
+
+}
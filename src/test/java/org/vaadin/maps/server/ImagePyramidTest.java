@@ -0,0 +1,235 @@
+package org.vaadin.maps.server;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Kamil Morong
+ */
+public class ImagePyramidTest {
+
+    private static final int TILE_SIZE = 16;
+    private static final int RED = 0xffff0000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Store counting stored tiles, storing can be slowed down.
+     */
+    private static class CountingStore implements TileCache {
+
+        private final MemoryTileCache cache = new MemoryTileCache();
+        private final AtomicInteger puts = new AtomicInteger();
+        private volatile long putDelay = 0;
+
+        @Override
+        public TileData get(String key) {
+            return cache.get(key);
+        }
+
+        @Override
+        public void put(String key, TileData data) {
+            puts.incrementAndGet();
+            if (putDelay > 0) {
+                try {
+                    Thread.sleep(putDelay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            cache.put(key, data);
+        }
+
+        @Override
+        public void clear() {
+            cache.clear();
+        }
+    }
+
+    private File createImage(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.RED);
+            graphics.fillRect(0, 0, width, height);
+        } finally {
+            graphics.dispose();
+        }
+        File file = folder.newFile("image.png");
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    private File createGradient(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                image.setRGB(x, y, (x * 5 % 256) << 16 | (y * 7 % 256) << 8 | (x + y) % 256);
+            }
+        }
+        File file = folder.newFile("gradient.png");
+        ImageIO.write(image, "png", file);
+        return file;
+    }
+
+    private static BufferedImage decode(TileData data) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(data.getBytes()));
+    }
+
+    @Test
+    public void levelsCoverTheImage() throws IOException {
+        ImagePyramid pyramid = new ImagePyramid(createImage(50, 20), new MemoryTileCache(), TILE_SIZE);
+
+        assertEquals(50, pyramid.getWidth());
+        assertEquals(20, pyramid.getHeight());
+        assertEquals(2, pyramid.getMaxLevel());
+        assertEquals(4, pyramid.getSubsampling(0));
+        assertEquals(1, pyramid.getColumns(0));
+        assertEquals(1, pyramid.getRows(0));
+        assertEquals(2, pyramid.getColumns(1));
+        assertEquals(1, pyramid.getRows(1));
+        assertEquals(4, pyramid.getColumns(2));
+        assertEquals(2, pyramid.getRows(2));
+
+        assertNull(pyramid.getTile(2, 4, 0));
+        assertNull(pyramid.getTile(3, 0, 0));
+        assertNull(pyramid.getTile(0, -1, 0));
+    }
+
+    @Test
+    public void buildStoresAllTiles() throws IOException {
+        CountingStore store = new CountingStore();
+        ImagePyramid pyramid = new ImagePyramid(createImage(50, 20), store, TILE_SIZE);
+
+        pyramid.build();
+        assertEquals(1 + 2 + 8, store.puts.get());
+
+        // all tiles are served from the store
+        for (int level = 0; level <= pyramid.getMaxLevel(); ++level) {
+            for (int row = 0; row < pyramid.getRows(level); ++row) {
+                for (int column = 0; column < pyramid.getColumns(level); ++column) {
+                    assertNotNull(pyramid.getTile(level, column, row));
+                }
+            }
+        }
+        assertEquals(11, store.puts.get());
+    }
+
+    @Test
+    public void edgeTilesArePadded() throws IOException {
+        ImagePyramid pyramid = new ImagePyramid(createImage(50, 20), new MemoryTileCache(), TILE_SIZE);
+        pyramid.build();
+
+        BufferedImage tile = decode(pyramid.getTile(2, 3, 1));
+        assertEquals(TILE_SIZE, tile.getWidth());
+        assertEquals(TILE_SIZE, tile.getHeight());
+        assertEquals(RED, tile.getRGB(1, 3));
+        assertEquals(0, tile.getRGB(2, 3) >>> 24);
+        assertEquals(0, tile.getRGB(1, 4) >>> 24);
+
+        // 13 x 5 pixels of the whole image at the lowest level
+        tile = decode(pyramid.getTile(0, 0, 0));
+        assertEquals(RED, tile.getRGB(12, 4));
+        assertEquals(0, tile.getRGB(13, 4) >>> 24);
+        assertEquals(0, tile.getRGB(12, 5) >>> 24);
+
+        pyramid = new ImagePyramid(pyramid.getFile(), new MemoryTileCache(), TILE_SIZE);
+        pyramid.setFormat(ImagePyramid.FORMAT_JPEG);
+        tile = decode(pyramid.getTile(0, 0, 0));
+        // nearly white, JPEG is lossy
+        Color margin = new Color(tile.getRGB(15, 15));
+        assertTrue(margin.toString(), margin.getRed() > 224 && margin.getGreen() > 224 && margin.getBlue() > 224);
+    }
+
+    @Test
+    public void builtTilesMatchTilesRenderedOnDemand() throws IOException {
+        File file = createGradient(70, 40);
+        ImagePyramid built = new ImagePyramid(file, new MemoryTileCache(), TILE_SIZE);
+        built.build();
+        ImagePyramid rendered = new ImagePyramid(file, new MemoryTileCache(), TILE_SIZE);
+
+        int level = built.getMaxLevel();
+        for (int row = 0; row < built.getRows(level); ++row) {
+            for (int column = 0; column < built.getColumns(level); ++column) {
+                assertArrayEquals(rendered.getTile(level, column, row).getBytes(),
+                        built.getTile(level, column, row).getBytes());
+            }
+        }
+    }
+
+    @Test
+    public void storedTilesAreReused() throws IOException {
+        File file = createImage(50, 20);
+        CountingStore store = new CountingStore();
+        new ImagePyramid(file, store, TILE_SIZE).build();
+        assertEquals(11, store.puts.get());
+
+        ImagePyramid pyramid = new ImagePyramid(file, store, TILE_SIZE);
+        pyramid.build();
+        assertNotNull(pyramid.getTile(1, 1, 0));
+        assertEquals(11, store.puts.get());
+
+        // other format does not share tiles
+        pyramid.setFormat(ImagePyramid.FORMAT_JPEG);
+        assertNotNull(pyramid.getTile(1, 1, 0));
+        assertEquals(12, store.puts.get());
+
+        // evicted tile is rendered again
+        store.clear();
+        pyramid.setFormat(ImagePyramid.FORMAT_PNG);
+        assertNotNull(pyramid.getTile(1, 1, 0));
+        assertEquals(13, store.puts.get());
+    }
+
+    @Test
+    public void concurrentRequestsRenderMissingTileOnce() throws Exception {
+        CountingStore store = new CountingStore();
+        store.putDelay = 200;
+        final ImagePyramid pyramid = new ImagePyramid(createImage(50, 20), store, TILE_SIZE);
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CopyOnWriteArrayList<Throwable> errors = new CopyOnWriteArrayList<>();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        assertNotNull(pyramid.getTile(2, 1, 1));
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(errors.toString(), 0, errors.size());
+        assertEquals(1, store.puts.get());
+    }
+
+}
@@ -0,0 +1,215 @@
+package org.vaadin.maps.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Kamil Morong
+ */
+public class TileFetcherTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private BlockingFetcher fetcher;
+
+    @Before
+    public void setUp() {
+        fetcher = new BlockingFetcher();
+    }
+
+    @After
+    public void tearDown() {
+        fetcher.release.release(1000);
+        fetcher.shutdown();
+    }
+
+    @Test
+    public void concurrentFetchesOfHostAreLimited() throws Exception {
+        fetcher.setHostLimit(2);
+
+        List<Future<TileData>> fetches = new ArrayList<>();
+        for (int i = 0; i < 6; ++i) {
+            fetches.add(fetcher.fetch("http://a.example.com/tile?i=" + i));
+        }
+        assertTrue(fetcher.awaitLoads(2));
+        assertNoMoreLoads(2);
+
+        fetcher.release.release(6);
+        for (Future<TileData> fetch : fetches) {
+            fetch.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(6, fetcher.loaded.size());
+        assertEquals(2, fetcher.maxRunning.get());
+    }
+
+    @Test
+    public void hostsAreLimitedSeparately() throws Exception {
+        fetcher.setHostLimit(1);
+
+        fetcher.fetch("http://a.example.com/tile?i=0");
+        fetcher.fetch("http://a.example.com/tile?i=1");
+        fetcher.fetch("http://b.example.com/tile?i=0");
+
+        assertTrue(fetcher.awaitLoads(2));
+        assertNoMoreLoads(2);
+        assertTrue(fetcher.loaded.contains("http://b.example.com/tile?i=0"));
+    }
+
+    @Test
+    public void cancelledWaitingFetchIsDropped() throws Exception {
+        fetcher.setHostLimit(1);
+
+        Future<TileData> first = fetcher.fetch("http://a.example.com/tile?i=0");
+        Future<TileData> second = fetcher.fetch("http://a.example.com/tile?i=1");
+        Future<TileData> third = fetcher.fetch("http://a.example.com/tile?i=2");
+        assertTrue(fetcher.awaitLoads(1));
+
+        assertTrue(second.cancel(false));
+        fetcher.release.release(2);
+        first.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        third.get(TIMEOUT, TimeUnit.MILLISECONDS);
+
+        assertFalse(fetcher.loaded.contains("http://a.example.com/tile?i=1"));
+        assertEquals(2, fetcher.loaded.size());
+    }
+
+    @Test
+    public void cancelledRunningFetchKeepsHostSlot() throws Exception {
+        fetcher.setHostLimit(1);
+
+        Future<TileData> first = fetcher.fetch("http://a.example.com/tile?i=0");
+        Future<TileData> second = fetcher.fetch("http://a.example.com/tile?i=1");
+        assertTrue(fetcher.awaitLoads(1));
+
+        // the thread still loads the first tile
+        assertTrue(first.cancel(false));
+        assertNoMoreLoads(1);
+
+        fetcher.release.release(2);
+        second.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertEquals(1, fetcher.maxRunning.get());
+    }
+
+    @Test
+    public void cancelledFetchIsNotRetried() throws Exception {
+        final CountDownLatch attempted = new CountDownLatch(1);
+        final AtomicInteger attempts = new AtomicInteger();
+        TileFetcher failing = new TileFetcher(2) {
+            @Override
+            protected TileData load(String url) throws IOException {
+                if (url.endsWith("fail")) {
+                    attempts.incrementAndGet();
+                    attempted.countDown();
+                    throw new FetchException("Unavailable", true);
+                }
+                return new TileData(new byte[0], "image/png");
+            }
+        };
+        try {
+            failing.setHostLimit(1);
+            failing.setMaxRetries(3);
+            failing.setRetryDelay(200);
+
+            Future<TileData> fetch = failing.fetch("http://a.example.com/fail");
+            Future<TileData> next = failing.fetch("http://a.example.com/next");
+            assertTrue(attempted.await(TIMEOUT, TimeUnit.MILLISECONDS));
+            fetch.cancel(false);
+
+            // starts when the cancelled fetch left its thread
+            next.get(TIMEOUT, TimeUnit.MILLISECONDS);
+            // past the first retry delay
+            Thread.sleep(300);
+            assertEquals(1, attempts.get());
+        } finally {
+            failing.shutdown();
+        }
+    }
+
+    @Test
+    public void rejectedFetchIsNotRetried() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        TileFetcher failing = new TileFetcher(1) {
+            @Override
+            protected TileData load(String url) throws IOException {
+                attempts.incrementAndGet();
+                throw new FetchException("Not found", false);
+            }
+        };
+        try {
+            failing.setRetryDelay(1);
+            Future<TileData> fetch = failing.fetch("http://a.example.com/tile");
+            try {
+                fetch.get(TIMEOUT, TimeUnit.MILLISECONDS);
+                fail("Rejected fetch must fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TileFetcher.FetchException);
+            }
+            assertEquals(1, attempts.get());
+        } finally {
+            failing.shutdown();
+        }
+    }
+
+    private void assertNoMoreLoads(int count) throws InterruptedException {
+        Thread.sleep(200);
+        assertEquals(count, fetcher.loaded.size());
+    }
+
+    /**
+     * Fetcher which loads tiles as permitted by the test.
+     */
+    private static class BlockingFetcher extends TileFetcher {
+
+        private final Semaphore release = new Semaphore(0);
+        private final Semaphore started = new Semaphore(0);
+        private final CopyOnWriteArrayList<String> loaded = new CopyOnWriteArrayList<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        private BlockingFetcher() {
+            super(8);
+            setRetryDelay(1);
+        }
+
+        private boolean awaitLoads(int count) throws InterruptedException {
+            return started.tryAcquire(count, TIMEOUT, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected TileData load(String url) throws IOException {
+            int current = running.incrementAndGet();
+            synchronized (maxRunning) {
+                maxRunning.set(Math.max(maxRunning.get(), current));
+            }
+            loaded.add(url);
+            started.release();
+            try {
+                release.acquire();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+            return new TileData(new byte[]{1}, "image/png");
+        }
+
+    }
+
+}
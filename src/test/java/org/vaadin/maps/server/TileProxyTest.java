@@ -0,0 +1,339 @@
+package org.vaadin.maps.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Kamil Morong
+ */
+public class TileProxyTest {
+
+    private static final String URL = "http://a.example.com/wms?LAYERS=base";
+    private static final long TIMEOUT = 5000;
+    private static final String SESSION = "session";
+    private static final String OTHER_SESSION = "other session";
+
+    private final CopyOnWriteArrayList<String> fetched = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<Future<TileData>> fetches = new CopyOnWriteArrayList<>();
+    private final Semaphore fetchStarted = new Semaphore(0);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * fetches wait for the release in their own thread
+     */
+    private volatile boolean blocking = false;
+
+    private TileProxy proxy;
+    private WMSComposite composite;
+
+    private static TileData createImage(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", output);
+        return new TileData(output.toByteArray(), "image/png");
+    }
+
+    private static Map<String, String> getMapParameters(String width, String height) {
+        TreeMap<String, String> parameters = new TreeMap<>();
+        parameters.put(WMSConstants.PARAM_BBOX, "0,0,1,1");
+        parameters.put(WMSConstants.PARAM_WIDTH, width);
+        parameters.put(WMSConstants.PARAM_HEIGHT, height);
+        parameters.put(WMSConstants.PARAM_FORMAT, "image/png");
+        return parameters;
+    }
+
+    @Before
+    public void setUp() {
+        proxy = new TileProxy(new MemoryTileCache(), new TileFetcher(1)) {
+            @Override
+            protected Future<TileData> fetch(final String url) {
+                fetched.add(url);
+                final boolean wait = blocking;
+                FutureTask<TileData> fetch = new FutureTask<>(new Callable<TileData>() {
+                    @Override
+                    public TileData call() throws Exception {
+                        if (wait) {
+                            release.await();
+                        }
+                        if (url.endsWith("fail")) {
+                            throw new IOException("Unavailable");
+                        }
+                        return createImage(4, 4);
+                    }
+                });
+                fetches.add(fetch);
+                if (wait) {
+                    new Thread(fetch).start();
+                } else {
+                    fetch.run();
+                }
+                fetchStarted.release();
+                return fetch;
+            }
+        };
+
+        composite = new WMSComposite();
+        composite.addLayer("http://a.example.com/wms", "base", "");
+        composite.addLayer("http://b.example.com/wms", "roads", "", 0.5f);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    public void cachedTileIsNotFetchedAgain() throws IOException {
+        TileData data = proxy.getTile(URL);
+
+        assertSame(data, proxy.getTile(URL));
+        assertEquals(1, fetched.size());
+    }
+
+    @Test
+    public void concurrentRequestsShareOneFetch() throws Exception {
+        blocking = true;
+
+        Request[] requests = {new Request(), new Request(), new Request()};
+        for (Request request : requests) {
+            request.start();
+        }
+        assertTrue(fetchStarted.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+        // let the other requests join the fetch
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Request request : requests) {
+            request.join(TIMEOUT);
+            assertNull(request.error);
+            assertSame(requests[0].data, request.data);
+        }
+        assertEquals(1, fetched.size());
+    }
+
+    @Test
+    public void cancelledTileFailsItsRequest() throws Exception {
+        blocking = true;
+
+        Request request = new Request();
+        request.start();
+        assertTrue(fetchStarted.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        proxy.cancel(URL, SESSION);
+        request.join(TIMEOUT);
+        assertTrue(fetches.get(0).isCancelled());
+        assertNull(request.data);
+        assertNotNull(request.error);
+
+        // the cancelled tile is neither pending nor cached
+        blocking = false;
+        assertNotNull(proxy.getTile(URL));
+        assertEquals(2, fetched.size());
+    }
+
+    @Test
+    public void tileOfOtherSessionIsNotCancelled() throws Exception {
+        blocking = true;
+
+        Request request = new Request(URL, OTHER_SESSION);
+        request.start();
+        assertTrue(fetchStarted.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        proxy.cancel(URL, SESSION);
+        assertFalse(fetches.get(0).isCancelled());
+        release.countDown();
+
+        request.join(TIMEOUT);
+        assertNotNull(request.data);
+    }
+
+    @Test
+    public void tileJoinedByOtherSessionIsNotCancelled() throws Exception {
+        blocking = true;
+
+        Request first = new Request();
+        Request second = new Request(URL, OTHER_SESSION);
+        first.start();
+        assertTrue(fetchStarted.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+        second.start();
+        Thread.sleep(200);
+
+        proxy.cancel(URL, SESSION);
+        assertFalse(fetches.get(0).isCancelled());
+        release.countDown();
+
+        first.join(TIMEOUT);
+        second.join(TIMEOUT);
+        assertNotNull(first.data);
+        assertSame(first.data, second.data);
+        assertEquals(1, fetched.size());
+    }
+
+    @Test
+    public void abandonedRequestDoesNotKeepTile() throws Exception {
+        blocking = true;
+
+        Request first = new Request();
+        Request second = new Request(URL, OTHER_SESSION);
+        first.start();
+        assertTrue(fetchStarted.tryAcquire(TIMEOUT, TimeUnit.MILLISECONDS));
+        second.start();
+        Thread.sleep(200);
+
+        // the request of the other session stops waiting
+        second.interrupt();
+        second.join(TIMEOUT);
+        assertNotNull(second.error);
+
+        proxy.cancel(URL, SESSION);
+        first.join(TIMEOUT);
+        assertTrue(fetches.get(0).isCancelled());
+        assertNotNull(first.error);
+    }
+
+    @Test
+    public void failedTileDoesNotLeaveOthersPending() throws Exception {
+        String good = "http://a.example.com/wms?LAYERS=good";
+        try {
+            proxy.getTiles(Arrays.asList("http://a.example.com/wms?LAYERS=fail", good));
+            fail("Failed tile must fail the request");
+        } catch (IOException e) {
+            assertEquals("Unavailable", e.getMessage());
+        }
+
+        // owner of a pending tile would load it in this thread
+        Request request = new Request(good);
+        request.start();
+        request.join(TIMEOUT);
+        assertNotNull(request.data);
+    }
+
+    @Test
+    public void joinedTileIsLoadedAfterFailure() throws Exception {
+        blocking = true;
+        final String good = "http://a.example.com/wms?LAYERS=good";
+
+        Request composite = new Request() {
+            @Override
+            public void run() {
+                try {
+                    proxy.getTiles(Arrays.asList("http://a.example.com/wms?LAYERS=fail", good));
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        };
+        composite.start();
+        assertTrue(fetchStarted.tryAcquire(2, TIMEOUT, TimeUnit.MILLISECONDS));
+        Request request = new Request(good);
+        request.start();
+        // let the request join the tile
+        Thread.sleep(200);
+        release.countDown();
+
+        composite.join(TIMEOUT);
+        request.join(TIMEOUT);
+        assertNotNull(composite.error);
+        assertNull(request.error);
+        assertNotNull(request.data);
+        assertEquals(2, fetched.size());
+    }
+
+    @Test
+    public void compositeIsComposedOfAllLayers() throws IOException {
+        TileData data = proxy.getCompositeTile(composite, getMapParameters("16", "8"), null);
+
+        assertEquals(2, fetched.size());
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(data.getBytes()));
+        assertEquals(16, image.getWidth());
+        assertEquals(8, image.getHeight());
+    }
+
+    @Test
+    public void oversizedCompositeIsRefused() throws IOException {
+        assertRefused(getMapParameters("100000", "100000"));
+        assertRefused(getMapParameters(String.valueOf(TileProxy.DEFAULT_MAX_IMAGE_SIZE + 1), "1"));
+        assertRefused(getMapParameters("8000", "8000"));
+
+        proxy.setMaxImageSize(8);
+        assertRefused(getMapParameters("16", "8"));
+        assertEquals(0, fetched.size());
+    }
+
+    @Test
+    public void invalidCompositeSizeIsRefused() throws IOException {
+        assertRefused(getMapParameters("0", "8"));
+        assertRefused(getMapParameters("-8", "8"));
+        assertRefused(getMapParameters("abc", "8"));
+        assertRefused(new TreeMap<String, String>());
+        assertEquals(0, fetched.size());
+    }
+
+    private void assertRefused(Map<String, String> parameters) throws IOException {
+        try {
+            proxy.getCompositeTile(composite, parameters, null);
+            fail("Composite image " + parameters + " must be refused");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("composite image"));
+        }
+    }
+
+    /**
+     * Tile request of its own thread.
+     */
+    private class Request extends Thread {
+
+        private final String url;
+        private final Object requester;
+        protected volatile TileData data;
+        protected volatile IOException error;
+
+        private Request() {
+            this(URL);
+        }
+
+        private Request(String url) {
+            this(url, SESSION);
+        }
+
+        private Request(String url, Object requester) {
+            this.url = url;
+            this.requester = requester;
+        }
+
+        @Override
+        public void run() {
+            try {
+                data = proxy.getTile(url, null, requester);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+
+    }
+
+}